@@ -28,12 +28,13 @@ import org.eniware.edge.dao.BatchableDao;
  * 
  * @param <T>
  *  
- * @version 1.4
+ * @version 1.5
  */
 public abstract class AbstractBatchableJdbcDao<T> extends JdbcDaoSupport implements BatchableDao<T> {
 
 	private TransactionTemplate transactionTemplate;
 	private String sqlForUpdateSuffix = " FOR UPDATE";
+	private SqlDialect sqlDialect;
 
 	/**
 	 * A class-level logger.
@@ -199,4 +200,33 @@ public abstract class AbstractBatchableJdbcDao<T> extends JdbcDaoSupport impleme
 		this.sqlForUpdateSuffix = sqlForUpdateSuffix;
 	}
 
+	/**
+	 * Get the SQL dialect.
+	 * 
+	 * @return the dialect, or {@literal null} if not configured
+	 * @since 1.5
+	 */
+	public SqlDialect getSqlDialect() {
+		return sqlDialect;
+	}
+
+	/**
+	 * Set the SQL dialect to use.
+	 * 
+	 * <p>
+	 * When configured, the {@code sqlForUpdateSuffix} is set to the dialect's
+	 * suffix.
+	 * </p>
+	 * 
+	 * @param sqlDialect
+	 *        the dialect to use
+	 * @since 1.5
+	 */
+	public void setSqlDialect(SqlDialect sqlDialect) {
+		this.sqlDialect = sqlDialect;
+		if ( sqlDialect != null ) {
+			this.sqlForUpdateSuffix = sqlDialect.getForUpdateSuffix();
+		}
+	}
+
 }
@@ -49,7 +49,7 @@ import org.eniware.util.OptionalService;
  * version, etc.
  * </p>
  * 
- * @version 1.5
+ * @version 1.6
  * @param <T>
  *        the domain object type managed by this DAO
  */
@@ -68,6 +68,7 @@ public abstract class AbstractJdbcDao<T> extends JdbcDaoSupport implements JdbcD
 	private MessageSource messageSource = null;
 	private String sqlForUpdateSuffix = " FOR UPDATE";
 	private OptionalService<EventAdmin> eventAdmin;
+	private SqlDialect sqlDialect;
 
 	private final Map<String, String> sqlResourceCache = new HashMap<String, String>(10);
 
@@ -75,6 +76,8 @@ public abstract class AbstractJdbcDao<T> extends JdbcDaoSupport implements JdbcD
 	 * Initialize this class after properties are set.
 	 */
 	public void init() {
+		applySqlDialect();
+
 		// verify database table exists, and if not create it
 		verifyDatabaseExists(this.schemaName, this.tableName, this.initSqlResource);
 
@@ -93,6 +96,31 @@ public abstract class AbstractJdbcDao<T> extends JdbcDaoSupport implements JdbcD
 		}
 	}
 
+	/**
+	 * Switch the configured SQL resource names to the configured
+	 * {@code sqlDialect}, if any.
+	 */
+	private void applySqlDialect() {
+		if ( sqlDialect == null ) {
+			return;
+		}
+		this.sqlResourcePrefix = StandardSqlDialect.resourceName(sqlDialect, this.sqlResourcePrefix);
+		if ( this.initSqlResource != null && this.initSqlResource.getFilename() != null ) {
+			String name = this.initSqlResource.getFilename();
+			String dialectName = StandardSqlDialect.resourceName(sqlDialect, name);
+			if ( !name.equals(dialectName) ) {
+				try {
+					this.initSqlResource = this.initSqlResource.createRelative(dialectName);
+				} catch ( IOException e ) {
+					throw new RuntimeException("Unable to resolve " + sqlDialect.getName()
+							+ " SQL resource " + dialectName, e);
+				}
+			}
+		}
+		log.debug("Using {} SQL dialect with resource prefix {}", sqlDialect.getName(),
+				this.sqlResourcePrefix);
+	}
+
 	/**
 	 * Insert a new domain object.
 	 * 
@@ -707,4 +735,36 @@ public abstract class AbstractJdbcDao<T> extends JdbcDaoSupport implements JdbcD
 		this.eventAdmin = eventAdmin;
 	}
 
+	/**
+	 * Get the SQL dialect.
+	 * 
+	 * @return the dialect, or {@literal null} if not configured
+	 * @since 1.6
+	 */
+	public SqlDialect getSqlDialect() {
+		return sqlDialect;
+	}
+
+	/**
+	 * Set the SQL dialect to use.
+	 * 
+	 * <p>
+	 * When configured, the {@code sqlResourcePrefix} and
+	 * {@code initSqlResource} names have their dialect prefix replaced by the
+	 * dialect's name when {@link #init()} is called, and the
+	 * {@code sqlForUpdateSuffix} is set to the dialect's suffix. Defaults to
+	 * {@literal null}, which uses the configured names as-is.
+	 * </p>
+	 * 
+	 * @param sqlDialect
+	 *        the dialect to use
+	 * @since 1.6
+	 */
+	public void setSqlDialect(SqlDialect sqlDialect) {
+		this.sqlDialect = sqlDialect;
+		if ( sqlDialect != null ) {
+			this.sqlForUpdateSuffix = sqlDialect.getForUpdateSuffix();
+		}
+	}
+
 }
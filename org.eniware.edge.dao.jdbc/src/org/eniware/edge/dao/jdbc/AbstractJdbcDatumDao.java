@@ -6,20 +6,37 @@
 
 package org.eniware.edge.dao.jdbc;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.osgi.service.event.Event;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.eniware.edge.Mock;
+import org.eniware.edge.dao.BasicBatchResult;
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
 import org.eniware.edge.dao.DatumDao;
 import org.eniware.edge.domain.Datum;
 
@@ -27,7 +44,14 @@ import org.eniware.edge.domain.Datum;
  * Abstract DAO implementation with support for DAOs that need to manage
  * "upload" tasks.
  * 
- * @version 1.3
+ * <p>
+ * If a {@link DatumTablePartitions} is configured via
+ * {@link #setTablePartitions(DatumTablePartitions)} and enabled, datum are
+ * stored in time-partitioned tables, and old data is removed by dropping whole
+ * partitions where possible.
+ * </p>
+ * 
+ * @version 1.9
  * @param <T>
  *        the domain object type managed by this DAO
  */
@@ -44,8 +68,144 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	public static final String SQL_RESOURCE_UPDATE_UPLOADED = "update-upload";
 	public static final String SQL_RESOURCE_UPDATE_DATA = "update-data";
 
+	/**
+	 * The SQL resource for inserting a new datum or updating an existing datum
+	 * whose data has changed, in a single statement.
+	 * 
+	 * @since 1.5
+	 */
+	public static final String SQL_RESOURCE_UPSERT = "upsert";
+
+	/**
+	 * The SQL resource for creating a new partition table, with a
+	 * {@link DatumTablePartitions#TABLE_PLACEHOLDER} placeholder for the table
+	 * name.
+	 * 
+	 * @since 1.8
+	 */
+	public static final String SQL_RESOURCE_PARTITION_INIT = "partition-init";
+
+	/**
+	 * The SQL resource for finding the upload and creation dates of uploaded
+	 * datum older than a given date, ordered by upload then creation date.
+	 * 
+	 * @since 1.9
+	 */
+	public static final String SQL_RESOURCE_FIND_DELETE_OLD_CHUNK = "find-delete-old-chunk";
+
+	/**
+	 * The SQL resource for deleting one chunk of uploaded datum older than a
+	 * given date.
+	 * 
+	 * @since 1.9
+	 */
+	public static final String SQL_RESOURCE_DELETE_OLD_CHUNK = "delete-old-chunk";
+
+	/** The default value for the {@code deleteChunkPauseMs} property. */
+	public static final long DEFAULT_DELETE_CHUNK_PAUSE_MS = 100;
+
 	private int maxFetchForUpload = DEFAULT_MAX_FETCH_FOR_UPLOAD;
 	private boolean ignoreMockData = true;
+	private DatumTablePartitions tablePartitions;
+	private int deleteChunkSize = 0;
+	private long deleteChunkPauseMs = DEFAULT_DELETE_CHUNK_PAUSE_MS;
+	private final DeleteMetrics deleteMetrics = new DeleteMetrics();
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * If partitioning is enabled, this configures the {@code tablePartitions}
+	 * with this DAO's table and {@link #SQL_RESOURCE_PARTITION_INIT} SQL.
+	 * </p>
+	 * 
+	 * @since 1.8
+	 */
+	@Override
+	public void init() {
+		super.init();
+		if ( isPartitioned() ) {
+			tablePartitions.setSchemaName(getSchemaName());
+			tablePartitions.setTableName(getTableName());
+			tablePartitions.setPartitionInitSql(getSqlResource(SQL_RESOURCE_PARTITION_INIT));
+		}
+	}
+
+	/**
+	 * Test if time-partitioned tables are enabled.
+	 * 
+	 * @return {@literal true} if a {@code tablePartitions} is configured and
+	 *         enabled
+	 * @since 1.8
+	 */
+	protected boolean isPartitioned() {
+		return (tablePartitions != null && tablePartitions.isEnabled());
+	}
+
+	/**
+	 * Get a SQL resource for a datum with a given creation date.
+	 * 
+	 * <p>
+	 * If partitioning is not enabled this returns the same value as
+	 * {@link #getSqlResource(String)}. Otherwise the SQL is rewritten to refer
+	 * to the partition table for {@code created}. When {@code create} is
+	 * {@literal true} the partition table will be created if it does not
+	 * exist; otherwise the base table will be used if the partition table does
+	 * not exist.
+	 * </p>
+	 * 
+	 * @param classPathResource
+	 *        the SQL resource name
+	 * @param created
+	 *        the datum creation date, or {@literal null} for the current date
+	 * @param create
+	 *        {@literal true} to create the partition table if needed
+	 * @return the SQL
+	 * @since 1.8
+	 */
+	protected String getSqlResource(String classPathResource, Date created, boolean create) {
+		String sql = getSqlResource(classPathResource);
+		if ( !isPartitioned() ) {
+			return sql;
+		}
+		Date date = (created == null ? new Date() : created);
+		String table = (create ? tablePartitions.tableForDate(date)
+				: tablePartitions.existingTableForDate(date));
+		return tablePartitions.sqlForTable(sql, table);
+	}
+
+	/**
+	 * Group datum by the SQL to execute for each, according to the partition
+	 * table each datum belongs to.
+	 * 
+	 * @param classPathResource
+	 *        the SQL resource name
+	 * @param datums
+	 *        the datum to group
+	 * @param create
+	 *        {@literal true} to create partition tables if needed
+	 * @return the grouped datum, in the order of the first datum of each group
+	 * @see #getSqlResource(String, Date, boolean)
+	 */
+	private Map<String, List<T>> groupBySql(String classPathResource, Collection<T> datums,
+			boolean create) {
+		Map<String, List<T>> result = new LinkedHashMap<String, List<T>>(4);
+		if ( !isPartitioned() ) {
+			result.put(getSqlResource(classPathResource),
+					(datums instanceof List ? (List<T>) datums : new ArrayList<T>(datums)));
+			return result;
+		}
+		for ( T datum : datums ) {
+			String sql = getSqlResource(classPathResource, datum.getCreated(), create);
+			List<T> list = result.get(sql);
+			if ( list == null ) {
+				list = new ArrayList<T>(datums.size());
+				result.put(sql, list);
+			}
+			list.add(datum);
+		}
+		return result;
+	}
 
 	/**
 	 * Execute a SQL update to delete data that has already been "uploaded" and
@@ -66,26 +226,147 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	 * ON u.power_datum_id = pd.id WHERE pd.created < ?)
 	 * </pre>
 	 * 
+	 * <p>
+	 * If partitioning is enabled, ended partitions that contain only rows
+	 * uploaded before the delete date are dropped first, and then the SQL is
+	 * executed against the base table and all remaining partitions.
+	 * </p>
+	 * 
+	 * <p>
+	 * If {@code deleteChunkSize} is greater than {@literal 0} then rows are
+	 * deleted in bounded chunks using the
+	 * {@link #SQL_RESOURCE_DELETE_OLD_CHUNK} SQL instead, so that no single
+	 * statement holds locks on a large number of rows. For the chunks to be
+	 * committed individually this method should not be invoked within a
+	 * transaction. The results are added to {@link #getDeleteMetrics()}.
+	 * </p>
+	 * 
 	 * @param hours
 	 *        the number of hours hold to delete
 	 * @return the number of rows deleted
 	 */
 	protected int deleteUploadedDataOlderThanHours(final int hours) {
+		final long start = System.currentTimeMillis();
+		final String sql = getSqlResource(deleteChunkSize > 0 ? SQL_RESOURCE_DELETE_OLD_CHUNK
+				: SQL_RESOURCE_DELETE_OLD);
+		final String findSql = (deleteChunkSize > 0
+				? getSqlResource(SQL_RESOURCE_FIND_DELETE_OLD_CHUNK) : null);
+		final Calendar c = Calendar.getInstance();
+		c.add(Calendar.HOUR, -hours);
+		final int[] chunks = new int[] { 0 };
+		int result;
+		if ( !isPartitioned() ) {
+			result = deleteUploadedData(sql, findSql, c, hours, chunks);
+		} else {
+			result = tablePartitions.dropPartitionsUploadedBefore(c.getTime());
+			for ( String table : tablePartitions.getTables() ) {
+				result += deleteUploadedData(tablePartitions.sqlForTable(sql, table),
+						(findSql == null ? null : tablePartitions.sqlForTable(findSql, table)), c, hours,
+						chunks);
+			}
+		}
+		long time = System.currentTimeMillis() - start;
+		deleteMetrics.addRun(result, chunks[0], time);
+		if ( log.isDebugEnabled() ) {
+			log.debug("Deleted {} uploaded datum older than {} hours in {} chunks over {}ms; {}",
+					result, hours, chunks[0], time, deleteMetrics);
+		}
+		return result;
+	}
+
+	private int deleteUploadedData(final String sql, final String findSql, final Calendar c,
+			final int hours, final int[] chunks) {
+		if ( findSql != null ) {
+			return deleteUploadedDataInChunks(sql, findSql, c, chunks);
+		}
+		chunks[0]++;
 		return getJdbcTemplate().update(new PreparedStatementCreator() {
 
 			@Override
 			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-				String sql = getSqlResource(SQL_RESOURCE_DELETE_OLD);
 				log.debug("Preparing SQL to delete old datum [{}] with hours [{}]", sql, hours);
 				PreparedStatement ps = con.prepareStatement(sql);
-				Calendar c = Calendar.getInstance();
-				c.add(Calendar.HOUR, -hours);
 				ps.setTimestamp(1, new Timestamp(c.getTimeInMillis()), c);
 				return ps;
 			}
 		});
 	}
 
+	/**
+	 * Delete uploaded data in chunks of at most {@code deleteChunkSize} rows.
+	 * 
+	 * <p>
+	 * Each chunk first executes the {@link #SQL_RESOURCE_FIND_DELETE_OLD_CHUNK}
+	 * SQL, limited to {@code deleteChunkSize} rows, to find the upload and
+	 * creation dates of the last row in the chunk. Then the
+	 * {@link #SQL_RESOURCE_DELETE_OLD_CHUNK} SQL is executed with the delete
+	 * date followed by the upload date, upload date, and creation date of that
+	 * row. Each chunk is committed on its own when not executed within a
+	 * transaction, and {@code deleteChunkPauseMs} is waited between chunks so
+	 * other writers can acquire locks.
+	 * </p>
+	 */
+	private int deleteUploadedDataInChunks(final String sql, final String findSql,
+			final Calendar c, final int[] chunks) {
+		final Timestamp date = new Timestamp(c.getTimeInMillis());
+		int result = 0;
+		while ( true ) {
+			final Timestamp[] last = new Timestamp[2];
+			final int found = getJdbcTemplate().query(new PreparedStatementCreator() {
+
+				@Override
+				public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+					PreparedStatement ps = con.prepareStatement(findSql);
+					ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+					ps.setFetchSize(deleteChunkSize);
+					ps.setMaxRows(deleteChunkSize);
+					ps.setTimestamp(1, date, c);
+					return ps;
+				}
+			}, new ResultSetExtractor<Integer>() {
+
+				@Override
+				public Integer extractData(ResultSet rs) throws SQLException, DataAccessException {
+					int count = 0;
+					while ( rs.next() ) {
+						count++;
+						last[0] = rs.getTimestamp(1);
+						last[1] = rs.getTimestamp(2);
+					}
+					return count;
+				}
+			});
+			if ( found < 1 ) {
+				break;
+			}
+			int deleted = getJdbcTemplate().update(sql, new PreparedStatementSetter() {
+
+				@Override
+				public void setValues(PreparedStatement ps) throws SQLException {
+					ps.setTimestamp(1, date, c);
+					ps.setTimestamp(2, last[0]);
+					ps.setTimestamp(3, last[0]);
+					ps.setTimestamp(4, last[1]);
+				}
+			});
+			chunks[0]++;
+			result += deleted;
+			log.trace("Deleted chunk of {} uploaded datum up to {}", deleted, last[0]);
+			if ( deleted < 1 || found < deleteChunkSize ) {
+				break;
+			}
+			if ( deleteChunkPauseMs > 0 ) {
+				try {
+					Thread.sleep(deleteChunkPauseMs);
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Find datum entities that have not been uploaded to a specific
 	 * destination.
@@ -94,7 +375,9 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	 * This executes SQL from the {@code findForUploadSql} property. It uses the
 	 * {@code maxFetchForUpload} property to limit the number of rows returned,
 	 * so the call may not return all rows available from the database (this is
-	 * to conserve memory and process the data in small batches).
+	 * to conserve memory and process the data in small batches). If
+	 * partitioning is enabled, the base table and then each partition are
+	 * queried in order until {@code maxFetchForUpload} rows have been found.
 	 * </p>
 	 * 
 	 * @param destination
@@ -105,31 +388,142 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	 * @return the matching rows, never <em>null</em>
 	 */
 	protected List<T> findDatumNotUploaded(final RowMapper<T> rowMapper) {
-		List<T> result = getJdbcTemplate().query(new PreparedStatementCreator() {
+		final String sql = getSqlResource(SQL_RESOURCE_FIND_FOR_UPLOAD);
+		List<T> result;
+		if ( !isPartitioned() ) {
+			result = findDatumNotUploaded(sql, rowMapper, maxFetchForUpload);
+		} else {
+			result = new ArrayList<T>(maxFetchForUpload);
+			for ( String table : tablePartitions.getTables() ) {
+				result.addAll(findDatumNotUploaded(tablePartitions.sqlForTable(sql, table), rowMapper,
+						maxFetchForUpload - result.size()));
+				if ( result.size() >= maxFetchForUpload ) {
+					break;
+				}
+			}
+		}
+		if ( log.isDebugEnabled() ) {
+			log.debug("Found " + result.size() + " datum entities not uploaded");
+		}
+		return result;
+	}
+
+	private List<T> findDatumNotUploaded(final String sql, final RowMapper<T> rowMapper,
+			final int max) {
+		return getJdbcTemplate().query(new PreparedStatementCreator() {
 
 			@Override
 			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-				String sql = getSqlResource(SQL_RESOURCE_FIND_FOR_UPLOAD);
 				if ( log.isTraceEnabled() ) {
 					log.trace("Preparing SQL to find datum not uploaded [" + sql
-							+ "] with maxFetchForUpload [" + maxFetchForUpload + ']');
+							+ "] with maxFetchForUpload [" + max + ']');
 				}
 				PreparedStatement ps = con.prepareStatement(sql);
 				ps.setFetchDirection(ResultSet.FETCH_FORWARD);
-				ps.setFetchSize(maxFetchForUpload);
-				ps.setMaxRows(maxFetchForUpload);
+				ps.setFetchSize(max);
+				ps.setMaxRows(max);
 				return ps;
 			}
 		}, rowMapper);
+	}
+
+	/**
+	 * Process datum entities that have not been uploaded, streaming them from a
+	 * forward-only cursor.
+	 * 
+	 * <p>
+	 * This executes the same {@link #SQL_RESOURCE_FIND_FOR_UPLOAD} SQL as
+	 * {@link #findDatumNotUploaded(RowMapper)}, but without limiting the number
+	 * of rows returned. Each row is mapped and passed to {@code callback}
+	 * before the next row is read, so only one datum is held in memory at a
+	 * time. The {@link BatchOptions#getBatchSize()} value is used as the JDBC
+	 * fetch size, falling back to {@link #getMaxFetchForUpload()} if not
+	 * positive. If partitioning is enabled, the base table and then each
+	 * partition are processed in order.
+	 * </p>
+	 * 
+	 * <p>
+	 * Callers should not run this within a read-write transaction, as the
+	 * callback may take a long time to process each datum. Datum marked as
+	 * uploaded by the callback should be committed in their own transaction.
+	 * </p>
+	 * 
+	 * @param rowMapper
+	 *        a {@link RowMapper} implementation to instantiate entities from
+	 *        found rows
+	 * @param callback
+	 *        the callback to handle each entity with
+	 * @param options
+	 *        the batch options, or {@literal null} for defaults
+	 * @return the batch result
+	 * @since 1.7
+	 */
+	protected BatchResult batchProcessDatumNotUploaded(final RowMapper<T> rowMapper,
+			final BatchCallback<T> callback, final BatchOptions options) {
+		final int fetchSize = (options != null && options.getBatchSize() > 0 ? options.getBatchSize()
+				: maxFetchForUpload);
+		final String sql = getSqlResource(SQL_RESOURCE_FIND_FOR_UPLOAD);
+		final List<String> sqls = new ArrayList<String>(4);
+		if ( isPartitioned() ) {
+			for ( String table : tablePartitions.getTables() ) {
+				sqls.add(tablePartitions.sqlForTable(sql, table));
+			}
+		} else {
+			sqls.add(sql);
+		}
+		Integer count = getJdbcTemplate().execute(new ConnectionCallback<Integer>() {
+
+			@Override
+			public Integer doInConnection(Connection con) throws SQLException, DataAccessException {
+				int rowCount = 0;
+				boolean stop = false;
+				for ( Iterator<String> itr = sqls.iterator(); itr.hasNext() && !stop; ) {
+					String tableSql = itr.next();
+					if ( log.isTraceEnabled() ) {
+						log.trace("Preparing SQL to process datum not uploaded [" + tableSql
+								+ "] with fetch size [" + fetchSize + ']');
+					}
+					PreparedStatement ps = con.prepareStatement(tableSql, ResultSet.TYPE_FORWARD_ONLY,
+							ResultSet.CONCUR_READ_ONLY);
+					ResultSet rs = null;
+					try {
+						ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+						ps.setFetchSize(fetchSize);
+						rs = ps.executeQuery();
+						while ( rs.next() ) {
+							T datum = rowMapper.mapRow(rs, ++rowCount);
+							BatchCallbackResult rowResult = callback.handle(datum);
+							if ( rowResult == BatchCallbackResult.STOP
+									|| rowResult == BatchCallbackResult.UPDATE_STOP ) {
+								stop = true;
+								break;
+							}
+						}
+					} finally {
+						if ( rs != null ) {
+							rs.close();
+						}
+						ps.close();
+					}
+				}
+				return rowCount;
+			}
+		});
+		int processed = (count != null ? count.intValue() : 0);
 		if ( log.isDebugEnabled() ) {
-			log.debug("Found " + result.size() + " datum entities not uploaded");
+			log.debug("Processed " + processed + " datum entities not uploaded");
 		}
-		return result;
+		return new BasicBatchResult(processed);
 	}
 
 	/**
 	 * Find datum entities.
 	 * 
+	 * <p>
+	 * If partitioning is enabled, the base table and then each partition are
+	 * queried in order until a match is found.
+	 * </p>
+	 * 
 	 * @param sqlResource
 	 *        The name of the SQL resource to use. See
 	 *        {@link #getSqlResource(String)}
@@ -143,11 +537,26 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	 */
 	protected List<T> findDatum(final String sqlResource, final PreparedStatementSetter setter,
 			final RowMapper<T> rowMapper) {
+		final String sql = getSqlResource(sqlResource);
+		if ( !isPartitioned() ) {
+			return findDatumWithSql(sql, setter, rowMapper);
+		}
+		List<T> result = Collections.emptyList();
+		for ( String table : tablePartitions.getTables() ) {
+			result = findDatumWithSql(tablePartitions.sqlForTable(sql, table), setter, rowMapper);
+			if ( !result.isEmpty() ) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	private List<T> findDatumWithSql(final String sql, final PreparedStatementSetter setter,
+			final RowMapper<T> rowMapper) {
 		List<T> result = getJdbcTemplate().query(new PreparedStatementCreator() {
 
 			@Override
 			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-				String sql = getSqlResource(sqlResource);
 				if ( log.isTraceEnabled() ) {
 					log.trace("Preparing SQL [{}] to find datum", sql);
 				}
@@ -206,10 +615,196 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 			}
 			return;
 		}
-		insertDomainObject(datum, getSqlResource(SQL_RESOURCE_INSERT));
+		insertDomainObject(datum, getSqlResource(SQL_RESOURCE_INSERT, datum.getCreated(), true));
 		postDatumStoredEvent(datum);
 	}
 
+	/**
+	 * Store a collection of new domain objects using the
+	 * {@link #SQL_RESOURCE_INSERT} SQL, as a single JDBC batch.
+	 * 
+	 * <p>
+	 * If {@link #isIgnoreMockData()} returns <em>true</em> then any datum that
+	 * is an instance of {@link Mock} will not be persisted. All other datum are
+	 * added to a batch and executed together, so this method should be invoked
+	 * within a transaction for the batch to be committed all at once. Datum that
+	 * violate the primary key constraint are not treated as an error: the
+	 * remaining datum are persisted and the duplicates are returned so the
+	 * caller can decide how to handle them, e.g. updating the existing row.
+	 * </p>
+	 * 
+	 * @param datums
+	 *        the datum to persist
+	 * @return the datum that were not persisted because they already exist,
+	 *         never <em>null</em>
+	 * @since 1.4
+	 */
+	protected List<T> storeDomainObjects(final Collection<T> datums) {
+		if ( datums == null || datums.isEmpty() ) {
+			return Collections.emptyList();
+		}
+		final List<T> toStore = new ArrayList<T>(datums.size());
+		for ( T datum : datums ) {
+			if ( ignoreMockData && datum instanceof Mock ) {
+				if ( log.isDebugEnabled() ) {
+					log.debug("Not persisting Mock datum: " + datum);
+				}
+				continue;
+			}
+			toStore.add(datum);
+		}
+		if ( toStore.isEmpty() ) {
+			return Collections.emptyList();
+		}
+		final Map<String, List<T>> batches = groupBySql(SQL_RESOURCE_INSERT, toStore, true);
+		final List<T> duplicates = new ArrayList<T>(2);
+		getJdbcTemplate().execute(new ConnectionCallback<Object>() {
+
+			@Override
+			public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+				for ( Map.Entry<String, List<T>> me : batches.entrySet() ) {
+					storeBatch(con, me.getKey(), me.getValue(), duplicates);
+				}
+				return null;
+			}
+		});
+		if ( log.isDebugEnabled() ) {
+			log.debug("Batch stored {} datum with {} duplicates", toStore.size() - duplicates.size(),
+					duplicates.size());
+		}
+		return duplicates;
+	}
+
+	private void storeBatch(Connection con, String sql, List<T> toStore, List<T> duplicates)
+			throws SQLException {
+		PreparedStatement ps = con.prepareStatement(sql);
+		try {
+			int start = 0;
+			while ( start < toStore.size() ) {
+				final List<T> batch = toStore.subList(start, toStore.size());
+				for ( T datum : batch ) {
+					setStoreStatementValues(datum, ps);
+					ps.addBatch();
+				}
+				try {
+					ps.executeBatch();
+					for ( T datum : batch ) {
+						postDatumStoredEvent(datum);
+					}
+					break;
+				} catch ( BatchUpdateException e ) {
+					ps.clearBatch();
+					if ( !isDuplicateKeyException(sql, e) ) {
+						throw e;
+					}
+					int[] counts = e.getUpdateCounts();
+					if ( counts != null && counts.length == batch.size() ) {
+						// the driver continued processing after the failure
+						for ( int i = 0; i < counts.length; i++ ) {
+							if ( counts[i] == Statement.EXECUTE_FAILED ) {
+								duplicates.add(batch.get(i));
+							} else {
+								postDatumStoredEvent(batch.get(i));
+							}
+						}
+						break;
+					}
+
+					// the driver stopped at the failed row; retry with the rows after it
+					int failed = (counts == null ? 0 : counts.length);
+					for ( int i = 0; i < failed; i++ ) {
+						postDatumStoredEvent(batch.get(i));
+					}
+					duplicates.add(batch.get(failed));
+					start += failed + 1;
+				}
+			}
+		} finally {
+			ps.close();
+		}
+	}
+
+	/**
+	 * Test if a batch exception was caused by a duplicate key violation.
+	 * 
+	 * @param sql
+	 *        the SQL that was executed
+	 * @param e
+	 *        the batch exception
+	 * @return {@literal true} if the exception represents a duplicate key
+	 */
+	private boolean isDuplicateKeyException(String sql, BatchUpdateException e) {
+		SQLException cause = (e.getNextException() != null ? e.getNextException() : e);
+		DataAccessException dae = getExceptionTranslator().translate("Store datum batch", sql, cause);
+		return (dae instanceof DuplicateKeyException);
+	}
+
+	/**
+	 * Insert a new domain object, or update an existing one, using the
+	 * {@link #SQL_RESOURCE_UPSERT} SQL.
+	 * 
+	 * <p>
+	 * The SQL is expected to insert the datum if it does not already exist, or
+	 * update the existing row only if its data has changed, returning an update
+	 * count of {@literal 0} when an identical datum already exists. Statement
+	 * parameters are set via
+	 * {@link #setUpsertStatementValues(Datum, PreparedStatement)}. If
+	 * {@link #isIgnoreMockData()} returns <em>true</em> and {@code datum} is an
+	 * instance of {@link Mock} then this method will not persist the object.
+	 * </p>
+	 * 
+	 * @param datum
+	 *        the datum to persist
+	 * @return the number of rows inserted or updated
+	 * @since 1.5
+	 */
+	protected int upsertDomainObject(final T datum) {
+		if ( ignoreMockData && datum instanceof Mock ) {
+			if ( log.isDebugEnabled() ) {
+				log.debug("Not persisting Mock datum: " + datum);
+			}
+			return 0;
+		}
+		final String sql = getSqlResource(SQL_RESOURCE_UPSERT, datum.getCreated(), true);
+		int result = getJdbcTemplate().update(new PreparedStatementCreator() {
+
+			@Override
+			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+				PreparedStatement ps = con.prepareStatement(sql);
+				setUpsertStatementValues(datum, ps);
+				return ps;
+			}
+		});
+		if ( result > 0 ) {
+			postDatumStoredEvent(datum);
+		} else {
+			log.debug("Datum unchanged; not persisted: {}", datum);
+		}
+		return result;
+	}
+
+	/**
+	 * Set {@link PreparedStatement} values for upserting a domain object.
+	 * 
+	 * <p>
+	 * Called from {@link #upsertDomainObject(Datum)}. This implementation does
+	 * not do anything. Extending classes that support upserts should override
+	 * this and set values on the {@code PreparedStatement} object as required
+	 * by their {@link #SQL_RESOURCE_UPSERT} SQL.
+	 * </p>
+	 * 
+	 * @param datum
+	 *        the datum to persist
+	 * @param ps
+	 *        the PreparedStatement to persist with
+	 * @throws SQLException
+	 *         if any SQL error occurs
+	 * @since 1.5
+	 */
+	protected void setUpsertStatementValues(T datum, PreparedStatement ps) throws SQLException {
+		// this is a no-op method, override to do something useful
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -268,12 +863,24 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 	 * @return the number of updated rows
 	 */
 	protected int updateDatumUpload(final long created, final Object id, final long timestamp) {
+		int result = updateDatumUpload(
+				getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED, new Date(created), false), created, id,
+				timestamp);
+		if ( result < 1 && isPartitioned() ) {
+			// the datum might have been stored in the base table before partitioning was enabled
+			result = updateDatumUpload(getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED), created, id,
+					timestamp);
+		}
+		return result;
+	}
+
+	private int updateDatumUpload(final String sql, final long created, final Object id,
+			final long timestamp) {
 		return getJdbcTemplate().update(new PreparedStatementCreator() {
 
 			@Override
 			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-				PreparedStatement ps = con
-						.prepareStatement(getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED));
+				PreparedStatement ps = con.prepareStatement(sql);
 				int col = 1;
 				ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
 				ps.setTimestamp(col++, new java.sql.Timestamp(created));
@@ -283,6 +890,103 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 		});
 	}
 
+	/**
+	 * Mark a collection of datum as uploaded, as a single JDBC batch.
+	 * 
+	 * <p>
+	 * This method will execute the {@link #SQL_RESOURCE_UPDATE_UPLOADED} SQL
+	 * once per datum as a batch, setting statement parameters via
+	 * {@link #setUpdateUploadStatementValues(Datum, long, PreparedStatement)}.
+	 * It should be invoked within a transaction for the batch to be committed
+	 * all at once.
+	 * </p>
+	 * 
+	 * @param datums
+	 *        the datum that were uploaded
+	 * @param timestamp
+	 *        the date the upload happened
+	 * @return the total number of updated rows
+	 * @since 1.6
+	 */
+	protected int updateDatumUploads(final Collection<T> datums, final long timestamp) {
+		if ( datums == null || datums.isEmpty() ) {
+			return 0;
+		}
+		final String baseSql = getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED);
+		final List<T> missed = new ArrayList<T>(2);
+		int result = 0;
+		for ( Map.Entry<String, List<T>> me : groupBySql(SQL_RESOURCE_UPDATE_UPLOADED, datums, false)
+				.entrySet() ) {
+			result += updateDatumUploads(me.getKey(), me.getValue(), timestamp,
+					(baseSql.equals(me.getKey()) ? null : missed));
+		}
+		if ( !missed.isEmpty() ) {
+			// the datum might have been stored in the base table before partitioning was enabled
+			result += updateDatumUploads(baseSql, missed, timestamp, null);
+		}
+		if ( log.isDebugEnabled() ) {
+			log.debug("Marked {} datum as uploaded", result);
+		}
+		return result;
+	}
+
+	private int updateDatumUploads(final String sql, final List<T> list, final long timestamp,
+			final List<T> missed) {
+		int[] counts = getJdbcTemplate().batchUpdate(sql, new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				setUpdateUploadStatementValues(list.get(i), timestamp, ps);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return list.size();
+			}
+		});
+		int result = 0;
+		for ( int i = 0; i < counts.length; i++ ) {
+			int count = counts[i];
+			if ( count > 0 ) {
+				result += count;
+			} else if ( count == Statement.SUCCESS_NO_INFO ) {
+				result++;
+			} else if ( count == 0 && missed != null ) {
+				missed.add(list.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Set {@link PreparedStatement} values for marking a datum as uploaded.
+	 * 
+	 * <p>
+	 * Called from {@link #updateDatumUploads(Collection, long)}. This
+	 * implementation sets the same parameters as
+	 * {@link #updateDatumUpload(long, Object, long)}, using the datum's source
+	 * ID as the {@code id} parameter. Extending classes with different
+	 * {@link #SQL_RESOURCE_UPDATE_UPLOADED} SQL should override this.
+	 * </p>
+	 * 
+	 * @param datum
+	 *        the datum that was uploaded
+	 * @param timestamp
+	 *        the date the upload happened
+	 * @param ps
+	 *        the PreparedStatement to set the values on
+	 * @throws SQLException
+	 *         if any SQL error occurs
+	 * @since 1.6
+	 */
+	protected void setUpdateUploadStatementValues(T datum, long timestamp, PreparedStatement ps)
+			throws SQLException {
+		int col = 1;
+		ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
+		ps.setTimestamp(col++, new java.sql.Timestamp(datum.getCreated().getTime()));
+		ps.setObject(col++, datum.getSourceId());
+	}
+
 	/**
 	 * Post an {@link Event} for the {@link DatumDao#EVENT_TOPIC_DATUM_STORED}
 	 * topic.
@@ -365,4 +1069,92 @@ public abstract class AbstractJdbcDatumDao<T extends Datum> extends AbstractJdbc
 		this.ignoreMockData = ignoreMockData;
 	}
 
+	/**
+	 * Get the table partitions.
+	 * 
+	 * @return the table partitions, or {@literal null}
+	 * @since 1.8
+	 */
+	public DatumTablePartitions getTablePartitions() {
+		return tablePartitions;
+	}
+
+	/**
+	 * Set the table partitions to store datum in time-partitioned tables.
+	 * 
+	 * <p>
+	 * Partitioning is disabled if not configured or if the configured
+	 * partitions are not enabled.
+	 * </p>
+	 * 
+	 * @param tablePartitions
+	 *        the table partitions
+	 * @since 1.8
+	 */
+	public void setTablePartitions(DatumTablePartitions tablePartitions) {
+		this.tablePartitions = tablePartitions;
+	}
+
+	/**
+	 * Get the maximum number of rows to delete per chunk when deleting
+	 * uploaded data.
+	 * 
+	 * @return the chunk size, or {@literal 0} to delete in a single statement
+	 * @since 1.9
+	 */
+	public int getDeleteChunkSize() {
+		return deleteChunkSize;
+	}
+
+	/**
+	 * Set the maximum number of rows to delete per chunk when deleting
+	 * uploaded data.
+	 * 
+	 * <p>
+	 * Defaults to {@literal 0}, which deletes all rows in a single statement.
+	 * </p>
+	 * 
+	 * @param deleteChunkSize
+	 *        the chunk size
+	 * @since 1.9
+	 */
+	public void setDeleteChunkSize(int deleteChunkSize) {
+		this.deleteChunkSize = deleteChunkSize;
+	}
+
+	/**
+	 * Get the time to pause between delete chunks.
+	 * 
+	 * @return the pause time, in milliseconds
+	 * @since 1.9
+	 */
+	public long getDeleteChunkPauseMs() {
+		return deleteChunkPauseMs;
+	}
+
+	/**
+	 * Set the time to pause between delete chunks.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_DELETE_CHUNK_PAUSE_MS}.
+	 * </p>
+	 * 
+	 * @param deleteChunkPauseMs
+	 *        the pause time, in milliseconds
+	 * @since 1.9
+	 */
+	public void setDeleteChunkPauseMs(long deleteChunkPauseMs) {
+		this.deleteChunkPauseMs = deleteChunkPauseMs;
+	}
+
+	/**
+	 * Get the metrics of deleting uploaded data.
+	 * 
+	 * @return the metrics, never {@literal null}
+	 * @since 1.9
+	 */
+	public DeleteMetrics getDeleteMetrics() {
+		return deleteMetrics;
+	}
+
 }
@@ -0,0 +1,319 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded, chunked hand-off of bytes from one writer thread to one reader
+ * thread.
+ *
+ * <p>
+ * Data written to {@link #getOutputStream()} is collected into chunks that are
+ * queued for {@link #getInputStream()}. At most {@code bufferSize} bytes are
+ * queued at once; the writer waits up to {@code timeoutMs} for the reader to
+ * make room before failing with an {@link IOException}, so a writer is never
+ * blocked forever by a reader that has gone away. Closing the input stream
+ * causes further writes to fail immediately. A writer can call
+ * {@link #fail(Throwable)} so the reader gets an {@link IOException} instead of
+ * what would look like a complete stream.
+ * </p>
+ *
+ * <p>
+ * The reader does not depend on the end of the stream being queued: if the
+ * writer is closed after failing to queue its data, for example because it
+ * timed out waiting for a reader that had not started yet, the reader gets an
+ * {@link IOException} once it has read the data that was queued.
+ * </p>
+ *
+ * <p>
+ * A reader that is not ready to read yet, such as one that is prepared ahead
+ * of time, can call {@link #attachReader()} when it starts. If the writer has
+ * already given up by then, the reader can discard the pipe instead of reading
+ * an incomplete stream. A writer that times out while a reader attaches waits
+ * again instead of giving up.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public class BoundedPipe {
+
+	/** The default chunk size. */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private static final byte[] EOF = new byte[0];
+
+	private static final long READ_POLL_MS = 1000L;
+
+	private final BlockingQueue<byte[]> queue;
+	private final int chunkSize;
+	private final long timeoutMs;
+	private final PipeOutputStream out;
+	private final PipeInputStream in;
+	private volatile boolean readerClosed;
+	private volatile boolean writerClosed;
+	private volatile Throwable failure;
+	private boolean readerAttached; // guarded by this
+	private boolean writerAbandoned; // guarded by this
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize
+	 *        the maximum number of bytes to queue
+	 * @param timeoutMs
+	 *        the maximum time the writer waits for the reader, in milliseconds
+	 */
+	public BoundedPipe(int bufferSize, long timeoutMs) {
+		super();
+		this.chunkSize = Math.max(1, Math.min(bufferSize, DEFAULT_CHUNK_SIZE));
+		this.queue = new ArrayBlockingQueue<byte[]>(Math.max(1, bufferSize / chunkSize) + 1);
+		this.timeoutMs = timeoutMs;
+		this.out = new PipeOutputStream();
+		this.in = new PipeInputStream();
+	}
+
+	/**
+	 * Get the stream to write data to.
+	 *
+	 * @return the output stream
+	 */
+	public OutputStream getOutputStream() {
+		return out;
+	}
+
+	/**
+	 * Get the stream to read data from.
+	 *
+	 * @return the input stream
+	 */
+	public InputStream getInputStream() {
+		return in;
+	}
+
+	/**
+	 * Signal that the reader is about to start reading.
+	 *
+	 * @return {@literal true} if the writer is still writing, or
+	 *         {@literal false} if it has already failed or given up waiting
+	 *         for the reader, in which case the pipe should be discarded
+	 */
+	public synchronized boolean attachReader() {
+		if ( writerAbandoned || failure != null ) {
+			return false;
+		}
+		readerAttached = true;
+		return true;
+	}
+
+	private synchronized boolean isReaderAttached() {
+		return readerAttached;
+	}
+
+	/**
+	 * Give up waiting for the reader.
+	 *
+	 * @param attachedBeforeWait
+	 *        {@literal true} if the reader had attached before the writer
+	 *        started waiting
+	 * @return {@literal false} if the reader attached while the writer was
+	 *         waiting, so the writer should wait again
+	 */
+	private synchronized boolean abandonWriter(boolean attachedBeforeWait) {
+		if ( readerAttached && !attachedBeforeWait ) {
+			return false;
+		}
+		writerAbandoned = true;
+		return true;
+	}
+
+	/**
+	 * Mark the data as incomplete.
+	 *
+	 * <p>
+	 * Once the output stream is closed, the reader will get an
+	 * {@link IOException} after reading all data queued before the failure.
+	 * </p>
+	 *
+	 * @param t
+	 *        the cause of the failure
+	 */
+	public void fail(Throwable t) {
+		failure = t;
+	}
+
+	private final class PipeOutputStream extends OutputStream {
+
+		private byte[] buf = new byte[chunkSize];
+		private int pos = 0;
+		private boolean closed = false;
+
+		@Override
+		public void write(int b) throws IOException {
+			if ( pos == buf.length ) {
+				flush();
+			}
+			buf[pos++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while ( len > 0 ) {
+				if ( pos == buf.length ) {
+					flush();
+				}
+				int count = Math.min(len, buf.length - pos);
+				System.arraycopy(b, off, buf, pos, count);
+				pos += count;
+				off += count;
+				len -= count;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if ( closed ) {
+				throw new IOException("Pipe closed");
+			}
+			if ( pos < 1 ) {
+				return;
+			}
+			byte[] chunk;
+			if ( pos == buf.length ) {
+				chunk = buf;
+				buf = new byte[chunkSize];
+			} else {
+				chunk = new byte[pos];
+				System.arraycopy(buf, 0, chunk, 0, pos);
+			}
+			pos = 0;
+			send(chunk);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if ( closed ) {
+				return;
+			}
+			try {
+				flush();
+				send(EOF);
+			} catch ( IOException e ) {
+				if ( failure == null ) {
+					failure = e;
+				}
+				throw e;
+			} finally {
+				closed = true;
+				writerClosed = true;
+			}
+		}
+
+		private void send(byte[] chunk) throws IOException {
+			if ( readerClosed ) {
+				throw new IOException("Pipe closed by reader");
+			}
+			try {
+				while ( true ) {
+					final boolean attached = isReaderAttached();
+					if ( queue.offer(chunk, timeoutMs, TimeUnit.MILLISECONDS) ) {
+						return;
+					}
+					if ( abandonWriter(attached) ) {
+						throw new IOException("Timeout waiting " + timeoutMs + "ms for pipe reader");
+					}
+				}
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted writing to pipe");
+			}
+		}
+	}
+
+	private final class PipeInputStream extends InputStream {
+
+		private byte[] chunk = null;
+		private int pos = 0;
+		private boolean eof = false;
+
+		private boolean fill() throws IOException {
+			while ( chunk == null || pos == chunk.length ) {
+				if ( eof ) {
+					return false;
+				}
+				byte[] next;
+				try {
+					next = queue.poll(READ_POLL_MS, TimeUnit.MILLISECONDS);
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted reading from pipe");
+				}
+				if ( next == null ) {
+					if ( writerClosed && queue.isEmpty() ) {
+						// the writer closed without queuing EOF
+						eof = true;
+						Throwable t = failure;
+						throw new IOException("Pipe writer failed: "
+								+ (t != null ? t.getMessage() : "stream incomplete"), t);
+					}
+					continue;
+				}
+				chunk = next;
+				pos = 0;
+				if ( chunk == EOF ) {
+					eof = true;
+					Throwable t = failure;
+					if ( t != null ) {
+						throw new IOException("Pipe writer failed: " + t.getMessage(), t);
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if ( !fill() ) {
+				return -1;
+			}
+			return (chunk[pos++] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( len < 1 ) {
+				return 0;
+			}
+			if ( !fill() ) {
+				return -1;
+			}
+			int count = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, count);
+			pos += count;
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (chunk == null ? 0 : chunk.length - pos);
+		}
+
+		@Override
+		public void close() throws IOException {
+			readerClosed = true;
+			queue.clear();
+		}
+	}
+
+}
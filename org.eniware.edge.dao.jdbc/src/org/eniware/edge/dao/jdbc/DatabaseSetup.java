@@ -40,9 +40,15 @@ import org.eniware.edge.domain.Datum;
  * <dd>A Resource to a SQL script that will initialize the database for the
  * first time, when it is not found to exist already. Defaults to a
  * classpath-relative resource named {@link #DEFAULT_INIT_SQL_RESOURCE}.</dd>
+ * 
+ * <dt>sqlDialect</dt>
+ * <dd>The {@link SqlDialect} to initialize the database with. The dialect
+ * name replaces the {@literal derby} prefix of the {@code initSqlResource}
+ * name and the update scripts. Defaults to {@literal null}, which uses the
+ * configured resources as-is.</dd>
  * </dl>
  * 
- * @version 1.1
+ * @version 1.3
  */
 public class DatabaseSetup {
 
@@ -56,9 +62,10 @@ public class DatabaseSetup {
 			+ JdbcDaoConstants.SCHEMA_NAME + "." + JdbcDaoConstants.TABLE_SETTINGS + " WHERE skey = "
 			+ "'eniwareedge.sn_settings.version'";
 
-	private static final int TABLES_VERSION = 5;
+	private static final int TABLES_VERSION = 6;
 
 	private DataSource dataSource = null;
+	private SqlDialect sqlDialect = null;
 	private Resource initSqlResource = new ClassPathResource(DEFAULT_INIT_SQL_RESOURCE,
 			DatabaseSetup.class);
 
@@ -91,6 +98,7 @@ public class DatabaseSetup {
 			setTablesVersion(TABLES_VERSION);
 			setSqlGetTablesVersion(DEFAULT_SQL_GET_TABLES_VERSION);
 			setSqlResourcePrefix("derby-init");
+			setSqlDialect(DatabaseSetup.this.sqlDialect);
 		}
 
 		@Override
@@ -158,4 +166,25 @@ public class DatabaseSetup {
 		this.initSqlResource = initSqlResource;
 	}
 
+	/**
+	 * Get the SQL dialect.
+	 * 
+	 * @return the dialect
+	 * @since 1.3
+	 */
+	public SqlDialect getSqlDialect() {
+		return sqlDialect;
+	}
+
+	/**
+	 * Set the SQL dialect.
+	 * 
+	 * @param sqlDialect
+	 *        the dialect to set
+	 * @since 1.3
+	 */
+	public void setSqlDialect(SqlDialect sqlDialect) {
+		this.sqlDialect = sqlDialect;
+	}
+
 }
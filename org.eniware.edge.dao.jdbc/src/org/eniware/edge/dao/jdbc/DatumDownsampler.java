@@ -0,0 +1,40 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.util.Date;
+
+/**
+ * API for replacing stored datum with coarser aggregates, to reduce the space
+ * they use without losing them entirely.
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public interface DatumDownsampler {
+
+	/**
+	 * Downsample the datum within a time range.
+	 *
+	 * <p>
+	 * Datum in the range that have not been uploaded are replaced by one
+	 * aggregate datum per source per {@code periodMinutes}; datum in the range
+	 * that have been uploaded are deleted.
+	 * </p>
+	 *
+	 * @param from
+	 *        the minimum date of the range, inclusive
+	 * @param to
+	 *        the maximum date of the range, exclusive
+	 * @param periodMinutes
+	 *        the aggregate period, in minutes
+	 * @return the number of rows removed, less the number of aggregate rows
+	 *         added
+	 */
+	int downsampleDatum(Date from, Date to, int periodMinutes);
+
+}
@@ -0,0 +1,516 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Manage a set of time-partitioned tables for a datum table.
+ *
+ * <p>
+ * When enabled by configuring a {@code period} other than
+ * {@link Period#None}, datum are stored in one table per period instead of in
+ * the base table. Partition tables are named after the base table with a
+ * {@literal _P} suffix followed by the period start date in the {@literal UTC}
+ * time zone, for example {@literal SN_GENERAL_Edge_DATUM_P20170412} for a
+ * {@link Period#Day} partition or {@literal SN_GENERAL_Edge_DATUM_P2017041214}
+ * for a {@link Period#Hour} partition. Partition tables are created on demand
+ * from the {@code partitionInitSql} DDL, in which the {@literal {table}}
+ * placeholder is replaced by the fully-qualified partition table name.
+ * </p>
+ *
+ * <p>
+ * The base table is still treated as the oldest partition, so data stored
+ * before partitioning was enabled remains accessible. Because partitions are
+ * ordered by time, removing old data can be done by dropping whole partition
+ * tables, which is fast and frees disk space without needing to compress the
+ * table afterwards.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public class DatumTablePartitions {
+
+	/**
+	 * A partition period.
+	 */
+	public enum Period {
+
+		/** Partitioning disabled. */
+		None,
+
+		/** One partition per hour. */
+		Hour,
+
+		/** One partition per day. */
+		Day;
+	}
+
+	/** The placeholder for the partition table name in the partition DDL. */
+	public static final String TABLE_PLACEHOLDER = "{table}";
+
+	private static final String PARTITION_SUFFIX = "_P";
+	private static final String DAY_FORMAT = "yyyyMMdd";
+	private static final String HOUR_FORMAT = "yyyyMMddHH";
+
+	private static final String COUNT_QUERY_TEMPLATE = "SELECT COUNT(*) FROM %s";
+	private static final String COUNT_NOT_UPLOADED_QUERY_TEMPLATE = "SELECT COUNT(*) FROM %s WHERE %s IS NULL OR %s >= ?";
+	private static final String COUNT_NEVER_UPLOADED_QUERY_TEMPLATE = "SELECT COUNT(*) FROM %s WHERE %s IS NULL";
+	private static final String DROP_TABLE_TEMPLATE = "DROP TABLE %s";
+
+	private JdbcOperations jdbcOperations;
+	private String schemaName = "ENIWAREEdge";
+	private String tableName = "SN_GENERAL_Edge_DATUM";
+	private String uploadedColumnName = "UPLOADED";
+	private Period period = Period.None;
+	private String partitionInitSql;
+
+	private SortedSet<String> partitions;
+	private Pattern tableNamePattern;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Test if partitioning is enabled.
+	 *
+	 * @return {@literal true} if a partition period has been configured
+	 */
+	public boolean isEnabled() {
+		return (period != null && period != Period.None);
+	}
+
+	/**
+	 * Get the fully-qualified base table name.
+	 *
+	 * @return the base table name
+	 */
+	public String getFullTableName() {
+		return qualifiedName(tableName);
+	}
+
+	/**
+	 * Get the fully-qualified name of the partition table for a given date,
+	 * creating the table if it does not already exist.
+	 *
+	 * <p>
+	 * If the partition table needs to be created, it will be created using the
+	 * current transaction, if one is active.
+	 * </p>
+	 *
+	 * @param date
+	 *        the date to get the partition table for
+	 * @return the partition table name
+	 */
+	public String tableForDate(Date date) {
+		final String name = partitionNameForDate(date);
+		if ( !getPartitions().contains(name) ) {
+			createPartition(name);
+		}
+		return qualifiedName(name);
+	}
+
+	/**
+	 * Get the fully-qualified name of the partition table for a given date, if
+	 * it exists.
+	 *
+	 * @param date
+	 *        the date to get the partition table for
+	 * @return the partition table name, or the base table name if the
+	 *         partition table does not exist
+	 */
+	public String existingTableForDate(Date date) {
+		final String name = partitionNameForDate(date);
+		return (getPartitions().contains(name) ? qualifiedName(name) : getFullTableName());
+	}
+
+	/**
+	 * Get all the table names, including the base table, ordered from oldest
+	 * to newest.
+	 *
+	 * @return the unqualified table names, never {@literal null}
+	 */
+	public List<String> getTableNames() {
+		SortedSet<String> parts = getPartitions();
+		List<String> result = new ArrayList<String>(parts.size() + 1);
+		result.add(tableName.toUpperCase(Locale.ENGLISH));
+		synchronized ( this ) {
+			result.addAll(parts);
+		}
+		return result;
+	}
+
+	/**
+	 * Get all the fully-qualified table names, including the base table,
+	 * ordered from oldest to newest.
+	 *
+	 * @return the table names, never {@literal null}
+	 */
+	public List<String> getTables() {
+		List<String> names = getTableNames();
+		List<String> result = new ArrayList<String>(names.size());
+		for ( String name : names ) {
+			result.add(qualifiedName(name));
+		}
+		return result;
+	}
+
+	/**
+	 * Rewrite a SQL statement that refers to the base table to refer to a
+	 * different table instead.
+	 *
+	 * @param sql
+	 *        the SQL to rewrite
+	 * @param fullTableName
+	 *        the fully-qualified table name to use in place of the base table
+	 * @return the rewritten SQL
+	 */
+	public String sqlForTable(String sql, String fullTableName) {
+		Matcher m = getTableNamePattern().matcher(sql);
+		return m.replaceAll(Matcher.quoteReplacement(fullTableName));
+	}
+
+	/**
+	 * Drop all ended partitions that contain only rows uploaded before a given
+	 * date.
+	 *
+	 * <p>
+	 * The base table and the partition for the current period are never
+	 * dropped.
+	 * </p>
+	 *
+	 * @param date
+	 *        the date all rows must have been uploaded before
+	 * @return the number of rows dropped
+	 */
+	public int dropPartitionsUploadedBefore(final Date date) {
+		final Timestamp ts = new Timestamp(date.getTime());
+		final String current = partitionNameForDate(new Date());
+		int result = 0;
+		for ( final String name : new ArrayList<String>(getPartitions()) ) {
+			if ( name.compareTo(current) >= 0 ) {
+				break;
+			}
+			Integer dropped = jdbcOperations.execute(new ConnectionCallback<Integer>() {
+
+				@Override
+				public Integer doInConnection(Connection con) throws SQLException, DataAccessException {
+					final String fullName = qualifiedName(name);
+					String sql = String.format(COUNT_NOT_UPLOADED_QUERY_TEMPLATE, fullName,
+							uploadedColumnName, uploadedColumnName);
+					PreparedStatement ps = con.prepareStatement(sql);
+					try {
+						ps.setTimestamp(1, ts);
+						if ( count(ps) > 0 ) {
+							return -1;
+						}
+					} finally {
+						ps.close();
+					}
+					return dropPartition(con, name);
+				}
+			});
+			if ( dropped != null && dropped.intValue() > 0 ) {
+				result += dropped.intValue();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drop the oldest ended partition, regardless of the upload status of the
+	 * rows within it.
+	 *
+	 * <p>
+	 * The base table and the partition for the current period are never
+	 * dropped. As this can discard data that has not been uploaded, the number
+	 * of such rows is logged at warning level.
+	 * {@link #dropPartitionsUploadedBefore(Date)} should be preferred.
+	 * </p>
+	 *
+	 * @return the number of rows dropped, or {@literal -1} if no partition was
+	 *         available to drop
+	 */
+	public int dropOldestPartition() {
+		SortedSet<String> parts = getPartitions();
+		final String name;
+		synchronized ( this ) {
+			name = (parts.isEmpty() ? null : parts.first());
+		}
+		if ( name == null || name.compareTo(partitionNameForDate(new Date())) >= 0 ) {
+			return -1;
+		}
+		Integer dropped = jdbcOperations.execute(new ConnectionCallback<Integer>() {
+
+			@Override
+			public Integer doInConnection(Connection con) throws SQLException, DataAccessException {
+				final String fullName = qualifiedName(name);
+				PreparedStatement ps = con.prepareStatement(String
+						.format(COUNT_NEVER_UPLOADED_QUERY_TEMPLATE, fullName, uploadedColumnName));
+				try {
+					int notUploaded = count(ps);
+					if ( notUploaded > 0 ) {
+						log.warn("Dropping partition {} with {} rows not uploaded to free space",
+								fullName, notUploaded);
+					}
+				} finally {
+					ps.close();
+				}
+				return dropPartition(con, name);
+			}
+		});
+		return (dropped != null ? dropped.intValue() : -1);
+	}
+
+	private int dropPartition(Connection con, String name) throws SQLException {
+		final String fullName = qualifiedName(name);
+		int rowCount;
+		Statement stmt = con.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(String.format(COUNT_QUERY_TEMPLATE, fullName));
+			try {
+				rowCount = (rs.next() ? rs.getInt(1) : 0);
+			} finally {
+				rs.close();
+			}
+			synchronized ( this ) {
+				partitions.remove(name);
+			}
+			stmt.execute(String.format(DROP_TABLE_TEMPLATE, fullName));
+		} finally {
+			stmt.close();
+		}
+		log.info("Dropped partition {} containing {} rows", fullName, rowCount);
+		return rowCount;
+	}
+
+	private static int count(PreparedStatement ps) throws SQLException {
+		ResultSet rs = ps.executeQuery();
+		try {
+			return (rs.next() ? rs.getInt(1) : 0);
+		} finally {
+			rs.close();
+		}
+	}
+
+	private void createPartition(final String name) {
+		if ( partitionInitSql == null ) {
+			throw new IllegalStateException("No partition DDL configured for " + getFullTableName());
+		}
+		jdbcOperations.execute(new ConnectionCallback<Object>() {
+
+			@Override
+			public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+				if ( !findPartitions(con.getMetaData()).contains(name) ) {
+					final String fullName = qualifiedName(name);
+					log.info("Creating partition table {}", fullName);
+					Statement stmt = con.createStatement();
+					try {
+						for ( String sql : partitionInitSql.split(";\\s*") ) {
+							if ( sql.trim().length() > 0 ) {
+								stmt.execute(sql.replace(TABLE_PLACEHOLDER, fullName));
+							}
+						}
+					} finally {
+						stmt.close();
+					}
+				}
+				return null;
+			}
+		});
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			// only remember the partition once the DDL is committed
+			TransactionSynchronizationManager.registerSynchronization(
+					new TransactionSynchronizationAdapter() {
+
+						@Override
+						public void afterCommit() {
+							addPartition(name);
+						}
+					});
+		} else {
+			addPartition(name);
+		}
+	}
+
+	private synchronized void addPartition(String name) {
+		partitions.add(name);
+	}
+
+	private synchronized SortedSet<String> getPartitions() {
+		if ( partitions == null ) {
+			partitions = jdbcOperations.execute(new ConnectionCallback<SortedSet<String>>() {
+
+				@Override
+				public SortedSet<String> doInConnection(Connection con)
+						throws SQLException, DataAccessException {
+					return findPartitions(con.getMetaData());
+				}
+			});
+			log.debug("Found partitions for {}: {}", getFullTableName(), partitions);
+		}
+		return partitions;
+	}
+
+	private SortedSet<String> findPartitions(DatabaseMetaData meta) throws SQLException {
+		final String prefix = tableName.toUpperCase(Locale.ENGLISH) + PARTITION_SUFFIX;
+		final Pattern namePattern = Pattern.compile(Pattern.quote(prefix) + "\\d{8}(\\d{2})?");
+		SortedSet<String> result = new TreeSet<String>();
+		ResultSet rs = meta.getTables(null,
+				(schemaName == null ? null : schemaName.toUpperCase(Locale.ENGLISH)), prefix + "%",
+				null);
+		try {
+			while ( rs.next() ) {
+				String name = rs.getString(3).toUpperCase(Locale.ENGLISH);
+				if ( namePattern.matcher(name).matches() ) {
+					result.add(name);
+				}
+			}
+		} finally {
+			rs.close();
+		}
+		return result;
+	}
+
+	private String partitionNameForDate(Date date) {
+		SimpleDateFormat fmt = new SimpleDateFormat(period == Period.Hour ? HOUR_FORMAT : DAY_FORMAT);
+		fmt.setCalendar(Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+		return tableName.toUpperCase(Locale.ENGLISH) + PARTITION_SUFFIX + fmt.format(date);
+	}
+
+	private String qualifiedName(String name) {
+		return (schemaName == null ? name : schemaName + '.' + name);
+	}
+
+	private synchronized Pattern getTableNamePattern() {
+		if ( tableNamePattern == null ) {
+			tableNamePattern = Pattern.compile(Pattern.quote(getFullTableName()) + "\\b",
+					Pattern.CASE_INSENSITIVE);
+		}
+		return tableNamePattern;
+	}
+
+	/**
+	 * Set the operations to use for connecting to the database.
+	 *
+	 * @param jdbcOperations
+	 *        the operations
+	 */
+	public void setJdbcOperations(JdbcOperations jdbcOperations) {
+		this.jdbcOperations = jdbcOperations;
+	}
+
+	/**
+	 * Set the name of the schema of the base table.
+	 *
+	 * <p>
+	 * This defaults to {@literal ENIWAREEdge}.
+	 * </p>
+	 *
+	 * @param schemaName
+	 *        the schema name
+	 */
+	public synchronized void setSchemaName(String schemaName) {
+		this.schemaName = schemaName;
+		this.tableNamePattern = null;
+		this.partitions = null;
+	}
+
+	/**
+	 * Set the name of the base table.
+	 *
+	 * <p>
+	 * This defaults to {@literal SN_GENERAL_Edge_DATUM}.
+	 * </p>
+	 *
+	 * @param tableName
+	 *        the base table name
+	 */
+	public synchronized void setTableName(String tableName) {
+		this.tableName = tableName;
+		this.tableNamePattern = null;
+		this.partitions = null;
+	}
+
+	/**
+	 * Set the name of the column that holds the upload date.
+	 *
+	 * <p>
+	 * This defaults to {@literal UPLOADED}.
+	 * </p>
+	 *
+	 * @param uploadedColumnName
+	 *        the column name
+	 */
+	public void setUploadedColumnName(String uploadedColumnName) {
+		this.uploadedColumnName = uploadedColumnName;
+	}
+
+	/**
+	 * Get the partition period.
+	 *
+	 * @return the period
+	 */
+	public Period getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Set the partition period.
+	 *
+	 * <p>
+	 * This defaults to {@link Period#None}, which disables partitioning.
+	 * </p>
+	 *
+	 * @param period
+	 *        the period
+	 */
+	public void setPeriod(Period period) {
+		this.period = period;
+	}
+
+	/**
+	 * Set the DDL used to create a new partition table.
+	 *
+	 * <p>
+	 * Multiple statements can be separated by a {@literal ;} character. The
+	 * {@link #TABLE_PLACEHOLDER} value will be replaced by the fully-qualified
+	 * partition table name.
+	 * </p>
+	 *
+	 * @param partitionInitSql
+	 *        the DDL
+	 */
+	public void setPartitionInitSql(String partitionInitSql) {
+		this.partitionInitSql = partitionInitSql;
+	}
+
+}
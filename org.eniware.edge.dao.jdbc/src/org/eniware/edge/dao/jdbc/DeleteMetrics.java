@@ -0,0 +1,115 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals for maintenance tasks that delete rows.
+ *
+ * <p>
+ * A "run" is a single maintenance invocation, which may delete rows in one or
+ * more chunks. This class is thread safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public class DeleteMetrics {
+
+	private final AtomicLong runCount = new AtomicLong();
+	private final AtomicLong chunkCount = new AtomicLong();
+	private final AtomicLong rowCount = new AtomicLong();
+	private final AtomicLong timeMillis = new AtomicLong();
+	private volatile long lastRowCount;
+	private volatile long lastTimeMillis;
+
+	/**
+	 * Record the results of a run.
+	 *
+	 * @param rows
+	 *        the number of rows deleted
+	 * @param chunks
+	 *        the number of chunks the rows were deleted in
+	 * @param millis
+	 *        the time spent deleting, in milliseconds
+	 */
+	public void addRun(long rows, long chunks, long millis) {
+		runCount.incrementAndGet();
+		chunkCount.addAndGet(chunks);
+		rowCount.addAndGet(rows);
+		timeMillis.addAndGet(millis);
+		lastRowCount = rows;
+		lastTimeMillis = millis;
+	}
+
+	/**
+	 * Get the number of runs recorded.
+	 *
+	 * @return the run count
+	 */
+	public long getRunCount() {
+		return runCount.get();
+	}
+
+	/**
+	 * Get the total number of chunks executed.
+	 *
+	 * @return the chunk count
+	 */
+	public long getChunkCount() {
+		return chunkCount.get();
+	}
+
+	/**
+	 * Get the total number of rows deleted.
+	 *
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	/**
+	 * Get the total time spent deleting, in milliseconds.
+	 *
+	 * <p>
+	 * This does not include any pause time between chunks.
+	 * </p>
+	 *
+	 * @return the time spent
+	 */
+	public long getTimeMillis() {
+		return timeMillis.get();
+	}
+
+	/**
+	 * Get the number of rows deleted by the most recent run.
+	 *
+	 * @return the row count
+	 */
+	public long getLastRowCount() {
+		return lastRowCount;
+	}
+
+	/**
+	 * Get the time spent deleting by the most recent run, in milliseconds.
+	 *
+	 * @return the time spent
+	 */
+	public long getLastTimeMillis() {
+		return lastTimeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "DeleteMetrics{runs=" + runCount + ",chunks=" + chunkCount + ",rows=" + rowCount
+				+ ",millis=" + timeMillis + ",lastRows=" + lastRowCount + ",lastMillis="
+				+ lastTimeMillis + "}";
+	}
+
+}
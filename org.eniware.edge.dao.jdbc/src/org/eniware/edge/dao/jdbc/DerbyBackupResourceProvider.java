@@ -0,0 +1,423 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import org.eniware.edge.Constants;
+import org.eniware.edge.backup.BackupResource;
+import org.eniware.edge.backup.BackupResourceInfo;
+import org.eniware.edge.backup.BackupResourceProvider;
+import org.eniware.edge.backup.BackupResourceProviderInfo;
+import org.eniware.edge.backup.ResourceBackupResource;
+import org.eniware.edge.backup.SimpleBackupResourceInfo;
+import org.eniware.edge.backup.SimpleBackupResourceProviderInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Backup support for the Derby database using Derby's native online backup.
+ *
+ * <p>
+ * A backup calls {@code SYSCS_UTIL.SYSCS_BACKUP_DATABASE} to copy the database
+ * files into {@code backupDirectory}, and then provides each copied file as a
+ * backup resource. Unlike {@link JdbcTableBackupResourceProvider} no data is
+ * converted, so both backup and restore are limited mostly by I/O. Enough
+ * free space for a second copy of the database is needed while a backup is
+ * created; the copied files are deleted once all resources have been read.
+ * </p>
+ *
+ * <p>
+ * The first resource is a {@link #MANIFEST_PATH} file that lists the database
+ * name and the number and size of the database files. Restoring the manifest
+ * clears {@code restoreDirectory}; restored database files are then written
+ * there. Once all files listed in the manifest have been restored, the
+ * manifest is written to {@code restoreDirectory} as well, and
+ * {@link DerbyBackupRestorer} replaces the database with the restored copy
+ * the next time the database is started.
+ * </p>
+ *
+ * <p>
+ * The resulting backup can only be restored into a Derby database of a
+ * compatible version; {@link JdbcTableBackupResourceProvider} remains the
+ * portable option. When {@code enabled} is {@literal false} no resources are
+ * backed up, but backups can still be restored.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.23
+ */
+public class DerbyBackupResourceProvider implements BackupResourceProvider {
+
+	/** The backup path of the manifest resource. */
+	public static final String MANIFEST_PATH = "derby-backup.properties";
+
+	/** The manifest property for the database name. */
+	public static final String MANIFEST_DATABASE = "database";
+
+	/** The manifest property for the number of database files. */
+	public static final String MANIFEST_FILE_COUNT = "fileCount";
+
+	/** The manifest property for the total size of the database files. */
+	public static final String MANIFEST_BYTE_COUNT = "byteCount";
+
+	/** The default value for the {@code restoreDirectory} property. */
+	public static final String DEFAULT_RESTORE_DIRECTORY = "var/db-restore";
+
+	private static final String BACKUP_SQL = "CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)";
+
+	private final JdbcOperations jdbcOperations;
+	private MessageSource messageSource;
+	private boolean enabled = false;
+	private File backupDirectory = edgeHomeFile("var/db-backup");
+	private File restoreDirectory = edgeHomeFile(DEFAULT_RESTORE_DIRECTORY);
+
+	private Properties restoreManifest;
+	private long restoredFileCount;
+	private long restoredByteCount;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jdbcOperations
+	 *        The JDBC operations to use.
+	 */
+	public DerbyBackupResourceProvider(JdbcOperations jdbcOperations) {
+		super();
+		this.jdbcOperations = jdbcOperations;
+	}
+
+	static File edgeHomeFile(String path) {
+		String home = System.getProperty(Constants.SYSTEM_PROP_Edge_HOME);
+		return (home == null ? new File(path) : new File(home, path));
+	}
+
+	@Override
+	public String getKey() {
+		return getClass().getName();
+	}
+
+	@Override
+	public Iterable<BackupResource> getBackupResources() {
+		if ( !enabled ) {
+			return Collections.emptyList();
+		}
+		final File dir = backupDirectory;
+		if ( dir.exists() && !FileSystemUtils.deleteRecursively(dir) ) {
+			log.error("Unable to delete previous database backup directory {}", dir);
+			return Collections.emptyList();
+		}
+		if ( !dir.mkdirs() ) {
+			log.error("Unable to create database backup directory {}", dir);
+			return Collections.emptyList();
+		}
+		final long start = System.currentTimeMillis();
+		jdbcOperations.execute(new ConnectionCallback<Object>() {
+
+			@Override
+			public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+				CallableStatement stmt = con.prepareCall(BACKUP_SQL);
+				try {
+					stmt.setString(1, dir.getAbsolutePath());
+					stmt.execute();
+				} finally {
+					stmt.close();
+				}
+				return null;
+			}
+		});
+
+		File[] dbDirs = dir.listFiles();
+		if ( dbDirs == null || dbDirs.length != 1 || !dbDirs[0].isDirectory() ) {
+			log.error("Database backup in {} not found", dir);
+			return Collections.emptyList();
+		}
+		final File dbDir = dbDirs[0];
+		List<File> files = new ArrayList<File>(128);
+		addFiles(dbDir, files);
+		long byteCount = 0;
+		for ( File f : files ) {
+			byteCount += f.length();
+		}
+
+		Properties manifest = new Properties();
+		manifest.setProperty(MANIFEST_DATABASE, dbDir.getName());
+		manifest.setProperty(MANIFEST_FILE_COUNT, String.valueOf(files.size()));
+		manifest.setProperty(MANIFEST_BYTE_COUNT, String.valueOf(byteCount));
+		File manifestFile = new File(dir, MANIFEST_PATH);
+		try {
+			storeProperties(manifest, manifestFile);
+		} catch ( IOException e ) {
+			log.error("Unable to write database backup manifest {}: {}", manifestFile, e.getMessage());
+			return Collections.emptyList();
+		}
+
+		List<BackupResource> result = new ArrayList<BackupResource>(files.size() + 1);
+		result.add(new ResourceBackupResource(new FileSystemResource(manifestFile), MANIFEST_PATH,
+				getKey()));
+		final int dirPathLength = dir.getAbsolutePath().length() + 1;
+		for ( File f : files ) {
+			String backupPath = f.getAbsolutePath().substring(dirPathLength).replace(File.separatorChar,
+					'/');
+			result.add(new ResourceBackupResource(new FileSystemResource(f), backupPath, getKey()));
+		}
+		log.info("Created database backup of {} files ({} bytes) in {}ms", files.size(), byteCount,
+				System.currentTimeMillis() - start);
+		return new DeleteWhenDoneIterable(result, dir);
+	}
+
+	/**
+	 * Iterable that deletes the backup directory once its resources have all
+	 * been iterated over, which the backup service does after reading each
+	 * resource in turn.
+	 */
+	private final class DeleteWhenDoneIterable implements Iterable<BackupResource> {
+
+		private final List<BackupResource> resources;
+		private final File dir;
+
+		private DeleteWhenDoneIterable(List<BackupResource> resources, File dir) {
+			super();
+			this.resources = resources;
+			this.dir = dir;
+		}
+
+		@Override
+		public Iterator<BackupResource> iterator() {
+			final Iterator<BackupResource> itr = resources.iterator();
+			return new Iterator<BackupResource>() {
+
+				@Override
+				public boolean hasNext() {
+					boolean result = itr.hasNext();
+					if ( !result ) {
+						deleteBackupDirectory(dir);
+					}
+					return result;
+				}
+
+				@Override
+				public BackupResource next() {
+					return itr.next();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	private synchronized void deleteBackupDirectory(File dir) {
+		if ( !dir.exists() ) {
+			return;
+		}
+		if ( FileSystemUtils.deleteRecursively(dir) ) {
+			log.debug("Deleted database backup directory {}", dir);
+		} else {
+			log.warn("Unable to delete database backup directory {}", dir);
+		}
+	}
+
+	private void addFiles(File dir, List<File> files) {
+		File[] list = dir.listFiles();
+		if ( list == null ) {
+			return;
+		}
+		for ( File f : list ) {
+			if ( f.isDirectory() ) {
+				addFiles(f, files);
+			} else {
+				files.add(f);
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean restoreBackupResource(BackupResource resource) {
+		if ( resource == null ) {
+			return false;
+		}
+		final File dir = restoreDirectory;
+		try {
+			if ( MANIFEST_PATH.equals(resource.getBackupPath()) ) {
+				return restoreManifest(resource, dir);
+			}
+			final Properties manifest = restoreManifest;
+			if ( manifest == null ) {
+				log.warn("Database backup manifest not restored; ignoring resource {}",
+						resource.getBackupPath());
+				return false;
+			}
+			File dest = new File(dir, resource.getBackupPath());
+			if ( !dest.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator) ) {
+				log.warn("Ignoring database backup resource {} outside of restore directory",
+						resource.getBackupPath());
+				return false;
+			}
+			if ( !dest.getParentFile().isDirectory() && !dest.getParentFile().mkdirs() ) {
+				log.error("Unable to create directory {} to restore database file into",
+						dest.getParent());
+				return false;
+			}
+			FileCopyUtils.copy(resource.getInputStream(), new FileOutputStream(dest));
+			restoredByteCount += dest.length();
+			restoredFileCount++;
+			if ( restoredFileCount == Long.parseLong(manifest.getProperty(MANIFEST_FILE_COUNT))
+					&& restoredByteCount == Long
+							.parseLong(manifest.getProperty(MANIFEST_BYTE_COUNT)) ) {
+				restoreManifest = null;
+				// the manifest on disk marks the restore as complete
+				storeProperties(manifest, new File(dir, MANIFEST_PATH));
+				log.info("Database backup restored to {}; it will replace the database when started",
+						dir);
+				return true;
+			}
+			return true;
+		} catch ( IOException e ) {
+			log.error("Unable to restore database backup resource {}: {}", resource.getBackupPath(),
+					e.getMessage());
+		}
+		return false;
+	}
+
+	private boolean restoreManifest(BackupResource resource, File dir) throws IOException {
+		Properties manifest = new Properties();
+		InputStream in = resource.getInputStream();
+		try {
+			manifest.load(in);
+		} finally {
+			in.close();
+		}
+		if ( manifest.getProperty(MANIFEST_DATABASE) == null
+				|| manifest.getProperty(MANIFEST_FILE_COUNT) == null
+				|| manifest.getProperty(MANIFEST_BYTE_COUNT) == null ) {
+			log.warn("Database backup manifest is incomplete: {}", manifest);
+			return false;
+		}
+		if ( dir.exists() && !FileSystemUtils.deleteRecursively(dir) ) {
+			log.error("Unable to delete previous database restore directory {}", dir);
+			return false;
+		}
+		if ( !dir.mkdirs() ) {
+			log.error("Unable to create database restore directory {}", dir);
+			return false;
+		}
+		restoreManifest = manifest;
+		restoredFileCount = 0;
+		restoredByteCount = 0;
+		log.info("Restoring database backup of {} files ({} bytes) to {}",
+				manifest.getProperty(MANIFEST_FILE_COUNT), manifest.getProperty(MANIFEST_BYTE_COUNT),
+				dir);
+		return true;
+	}
+
+	private static void storeProperties(Properties props, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			props.store(out, "Derby database backup");
+		} finally {
+			out.close();
+		}
+	}
+
+	@Override
+	public BackupResourceProviderInfo providerInfo(Locale locale) {
+		String name = "Database Native Backup Provider";
+		String desc = "Backs up the EniwareEdge database files.";
+		MessageSource ms = messageSource;
+		if ( ms != null ) {
+			name = ms.getMessage("title", null, name, locale);
+			desc = ms.getMessage("desc", null, desc, locale);
+		}
+		return new SimpleBackupResourceProviderInfo(getKey(), name, desc);
+	}
+
+	@Override
+	public BackupResourceInfo resourceInfo(BackupResource resource, Locale locale) {
+		return new SimpleBackupResourceInfo(resource.getProviderKey(), resource.getBackupPath(), null);
+	}
+
+	/**
+	 * Set a {@link MessageSource} to use for resolving backup info messages.
+	 *
+	 * @param messageSource
+	 *        The message source to use.
+	 */
+	public void setMessageSource(MessageSource messageSource) {
+		this.messageSource = messageSource;
+	}
+
+	/**
+	 * Toggle creating backups.
+	 *
+	 * <p>
+	 * Restoring backups is always supported. Defaults to {@literal false}.
+	 * </p>
+	 *
+	 * @param enabled
+	 *        {@literal true} to back up the database
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Set the directory to copy the database files to when creating a backup.
+	 *
+	 * <p>
+	 * Any existing content is deleted when a backup is created. Defaults to
+	 * {@literal var/db-backup} within the
+	 * {@link org.eniware.edge.Constants#SYSTEM_PROP_Edge_HOME} directory.
+	 * </p>
+	 *
+	 * @param backupDirectory
+	 *        the directory path
+	 */
+	public void setBackupDirectory(String backupDirectory) {
+		this.backupDirectory = new File(backupDirectory);
+	}
+
+	/**
+	 * Set the directory to restore database files into.
+	 *
+	 * <p>
+	 * Any existing content is deleted when the manifest of a backup is
+	 * restored. Defaults to {@literal var/db-restore} within the
+	 * {@link org.eniware.edge.Constants#SYSTEM_PROP_Edge_HOME} directory.
+	 * </p>
+	 *
+	 * @param restoreDirectory
+	 *        the directory path
+	 */
+	public void setRestoreDirectory(String restoreDirectory) {
+		this.restoreDirectory = new File(restoreDirectory);
+	}
+
+}
@@ -0,0 +1,125 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Replace the Derby database with a native backup restored by
+ * {@link DerbyBackupResourceProvider}.
+ *
+ * <p>
+ * The database files cannot be replaced while the database is in use, so
+ * {@link #init()} must be called before the database is first connected to.
+ * If {@code restoreDirectory} holds a complete restore, the existing database
+ * directory within {@code derby.system.home} is deleted and replaced by the
+ * restored one, and {@code restoreDirectory} is deleted.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public class DerbyBackupRestorer {
+
+	private File restoreDirectory = DerbyBackupResourceProvider
+			.edgeHomeFile(DerbyBackupResourceProvider.DEFAULT_RESTORE_DIRECTORY);
+	private File databaseHome = new File(
+			System.getProperty("derby.system.home", System.getProperty("user.dir")));
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Apply a completed restore, if there is one.
+	 */
+	public void init() {
+		final File manifestFile = new File(restoreDirectory,
+				DerbyBackupResourceProvider.MANIFEST_PATH);
+		if ( !manifestFile.isFile() ) {
+			return;
+		}
+		Properties manifest = new Properties();
+		try {
+			InputStream in = new FileInputStream(manifestFile);
+			try {
+				manifest.load(in);
+			} finally {
+				in.close();
+			}
+		} catch ( IOException e ) {
+			log.error("Unable to read database restore manifest {}: {}", manifestFile,
+					e.getMessage());
+			return;
+		}
+		final String dbName = manifest.getProperty(DerbyBackupResourceProvider.MANIFEST_DATABASE);
+		final File restored = (dbName != null ? new File(restoreDirectory, dbName) : null);
+		if ( restored == null || !restored.isDirectory() ) {
+			log.error("Restored database {} not found in {}; discarding restore", dbName,
+					restoreDirectory);
+			FileSystemUtils.deleteRecursively(restoreDirectory);
+			return;
+		}
+		final File dbDir = new File(databaseHome, dbName);
+		log.warn("Replacing database {} with restored backup {}", dbDir, restored);
+		if ( dbDir.exists() && !FileSystemUtils.deleteRecursively(dbDir) ) {
+			log.error("Unable to delete database {}; not restoring backup", dbDir);
+			return;
+		}
+		if ( !restored.renameTo(dbDir) ) {
+			try {
+				FileSystemUtils.copyRecursively(restored, dbDir);
+			} catch ( IOException e ) {
+				log.error("Unable to copy restored database {} to {}: {}", restored, dbDir,
+						e.getMessage());
+				return;
+			}
+		}
+		if ( !FileSystemUtils.deleteRecursively(restoreDirectory) ) {
+			log.warn("Unable to delete database restore directory {}", restoreDirectory);
+		}
+		log.info("Database {} restored from backup", dbDir);
+	}
+
+	/**
+	 * Set the directory {@link DerbyBackupResourceProvider} restores database
+	 * files into.
+	 *
+	 * <p>
+	 * Defaults to
+	 * {@link DerbyBackupResourceProvider#DEFAULT_RESTORE_DIRECTORY} within the
+	 * {@link org.eniware.edge.Constants#SYSTEM_PROP_Edge_HOME} directory.
+	 * </p>
+	 *
+	 * @param restoreDirectory
+	 *        the directory path
+	 */
+	public void setRestoreDirectory(String restoreDirectory) {
+		this.restoreDirectory = new File(restoreDirectory);
+	}
+
+	/**
+	 * Set the directory Derby stores databases in.
+	 *
+	 * <p>
+	 * Defaults to the {@literal derby.system.home} system property, or the
+	 * working directory if that is not set.
+	 * </p>
+	 *
+	 * @param databaseHome
+	 *        the directory path
+	 */
+	public void setDatabaseHome(String databaseHome) {
+		this.databaseHome = new File(databaseHome);
+	}
+
+}
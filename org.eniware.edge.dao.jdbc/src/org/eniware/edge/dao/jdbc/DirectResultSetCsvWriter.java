@@ -0,0 +1,477 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.supercsv.cellprocessor.ift.CellProcessor;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv.util.Util;
+
+/**
+ * {@link JdbcResultSetCsvWriter} that writes {@link ResultSet} values directly
+ * into a reusable character buffer.
+ *
+ * <p>
+ * When no cell processors are given, column values are read with the typed
+ * {@code ResultSet} getters and formatted the same way as
+ * {@link JdbcUtils#formattingProcessorsForResultSetMetaData(ResultSetMetaData)}
+ * would, without creating intermediate {@code String} or cell processor
+ * objects for numbers and timestamps. Timestamps are formatted in UTC without
+ * a date formatter, and binary values are written as Base64. Values are
+ * escaped while being copied into the buffer, using the delimiter, quote, end
+ * of line and surrounding spaces settings of the {@link CsvPreference}; the
+ * preference's quote mode is not used. When
+ * cell processors are given, column values are processed like
+ * {@link ResultSetCsvWriter} does.
+ * </p>
+ *
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.23
+ */
+public class DirectResultSetCsvWriter implements JdbcResultSetCsvWriter {
+
+	/** The default buffer size, in characters. */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd");
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormat
+			.forPattern("HH:mm:ss.SSS");
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormat
+			.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZoneUTC();
+
+	private final Writer writer;
+	private final char delimiter;
+	private final char quote;
+	private final String eol;
+	private final boolean surroundingSpacesNeedQuotes;
+	private final char[] buf;
+	private int pos = 0;
+	private int lineNumber = 0;
+	private int rowNumber = 0;
+
+	/**
+	 * Construct with a {@code Writer} and preferences.
+	 *
+	 * @param writer
+	 *        The writer to write CSV data to.
+	 * @param preference
+	 *        The preferences to use.
+	 */
+	public DirectResultSetCsvWriter(Writer writer, CsvPreference preference) {
+		this(writer, preference, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Construct with a {@code Writer}, preferences, and buffer size.
+	 *
+	 * @param writer
+	 *        The writer to write CSV data to.
+	 * @param preference
+	 *        The preferences to use.
+	 * @param bufferSize
+	 *        The size of the character buffer to use.
+	 */
+	public DirectResultSetCsvWriter(Writer writer, CsvPreference preference, int bufferSize) {
+		super();
+		if ( writer == null ) {
+			throw new IllegalArgumentException("The writer must be provided");
+		}
+		this.writer = writer;
+		this.delimiter = (char) preference.getDelimiterChar();
+		this.quote = preference.getQuoteChar();
+		this.eol = preference.getEndOfLineSymbols();
+		this.surroundingSpacesNeedQuotes = preference.isSurroundingSpacesNeedQuotes();
+		this.buf = new char[Math.max(64, bufferSize)];
+	}
+
+	@Override
+	public void write(ResultSet resultSet) throws SQLException, IOException {
+		write(resultSet, null);
+	}
+
+	@Override
+	public void write(ResultSet resultSet, CellProcessor[] cellProcessors)
+			throws SQLException, IOException {
+		assert resultSet != null;
+		final ResultSetMetaData meta = resultSet.getMetaData();
+		final int colCount = meta.getColumnCount();
+		final int[] sqlTypes = new int[colCount];
+		final String[] headers = new String[colCount];
+		for ( int i = 0; i < colCount; i++ ) {
+			headers[i] = meta.getColumnName(i + 1);
+			sqlTypes[i] = meta.getColumnType(i + 1);
+		}
+		writeHeader(headers);
+		if ( cellProcessors != null ) {
+			writeProcessedContents(resultSet, sqlTypes, cellProcessors);
+			return;
+		}
+		final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		while ( resultSet.next() ) {
+			lineNumber++;
+			rowNumber++;
+			for ( int i = 1; i <= colCount; i++ ) {
+				if ( i > 1 ) {
+					append(delimiter);
+				}
+				writeColumn(resultSet, i, sqlTypes[i - 1], utcCalendar);
+			}
+			appendRaw(eol);
+		}
+	}
+
+	private void writeColumn(ResultSet rs, int col, int sqlType, Calendar utcCalendar)
+			throws SQLException, IOException {
+		switch (sqlType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT: {
+				long l = rs.getLong(col);
+				if ( !rs.wasNull() ) {
+					appendLong(l);
+				}
+			}
+				break;
+
+			case Types.REAL: {
+				float f = rs.getFloat(col);
+				if ( !rs.wasNull() ) {
+					appendRaw(Float.toString(f));
+				}
+			}
+				break;
+
+			case Types.FLOAT:
+			case Types.DOUBLE: {
+				double d = rs.getDouble(col);
+				if ( !rs.wasNull() ) {
+					appendRaw(Double.toString(d));
+				}
+			}
+				break;
+
+			case Types.DECIMAL:
+			case Types.NUMERIC: {
+				BigDecimal d = rs.getBigDecimal(col);
+				if ( d != null ) {
+					appendRaw(d.toString());
+				}
+			}
+				break;
+
+			case Types.BOOLEAN: {
+				boolean b = rs.getBoolean(col);
+				if ( !rs.wasNull() ) {
+					appendRaw(b ? "true" : "false");
+				}
+			}
+				break;
+
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+				appendEscaped(rs.getString(col));
+				break;
+
+			case Types.TIMESTAMP:
+			case Types.TIMESTAMP_WITH_TIMEZONE: {
+				java.sql.Timestamp ts = rs.getTimestamp(col, utcCalendar);
+				if ( ts != null ) {
+					appendTimestamp(ts.getTime());
+				}
+			}
+				break;
+
+			case Types.DATE: {
+				java.sql.Date d = rs.getDate(col, utcCalendar);
+				if ( d != null ) {
+					appendRaw(DATE_FORMATTER.print(d.getTime()));
+				}
+			}
+				break;
+
+			case Types.TIME: {
+				java.sql.Time t = rs.getTime(col, utcCalendar);
+				if ( t != null ) {
+					appendRaw(TIME_FORMATTER.print(t.getTime()));
+				}
+			}
+				break;
+
+			case Types.BINARY:
+			case Types.BLOB:
+			case Types.LONGVARBINARY:
+			case Types.VARBINARY: {
+				byte[] b = rs.getBytes(col);
+				if ( b != null ) {
+					appendRaw(Base64.getEncoder().encodeToString(b));
+				}
+			}
+				break;
+
+			default: {
+				Object o = rs.getObject(col);
+				if ( o != null ) {
+					appendEscaped(o.toString());
+				}
+			}
+		}
+	}
+
+	private void writeProcessedContents(ResultSet resultSet, int[] sqlTypes,
+			CellProcessor[] cellProcessors) throws SQLException, IOException {
+		final int colCount = sqlTypes.length;
+		final List<Object> objects = new ArrayList<Object>(colCount);
+		final List<Object> processed = new ArrayList<Object>(colCount);
+		final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		while ( resultSet.next() ) {
+			lineNumber++;
+			rowNumber++;
+			objects.clear();
+			for ( int i = 1; i <= colCount; i++ ) {
+				int sqlType = sqlTypes[i - 1];
+				Object columnValue;
+				if ( sqlType == Types.DATE ) {
+					columnValue = resultSet.getDate(i, utcCalendar);
+				} else if ( sqlType == Types.TIME ) {
+					columnValue = resultSet.getTime(i, utcCalendar);
+				} else if ( sqlType == Types.TIMESTAMP ) {
+					columnValue = resultSet.getTimestamp(i, utcCalendar);
+				} else if ( sqlType == Types.BLOB ) {
+					columnValue = resultSet.getBytes(i);
+				} else {
+					columnValue = resultSet.getObject(i);
+				}
+				objects.add(columnValue);
+			}
+			Util.executeCellProcessors(processed, objects, cellProcessors, lineNumber, rowNumber);
+			for ( int i = 0, len = processed.size(); i < len; i++ ) {
+				if ( i > 0 ) {
+					append(delimiter);
+				}
+				Object o = processed.get(i);
+				if ( o != null ) {
+					appendEscaped(o.toString());
+				}
+			}
+			appendRaw(eol);
+		}
+	}
+
+	@Override
+	public void writeHeader(String... header) throws IOException {
+		lineNumber++;
+		rowNumber++;
+		for ( int i = 0; i < header.length; i++ ) {
+			if ( i > 0 ) {
+				append(delimiter);
+			}
+			appendEscaped(header[i]);
+		}
+		appendRaw(eol);
+	}
+
+	@Override
+	public void writeComment(String comment) throws IOException {
+		lineNumber++;
+		appendRaw(comment);
+		appendRaw(eol);
+	}
+
+	@Override
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public int getRowNumber() {
+		return rowNumber;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		writer.close();
+	}
+
+	private void flushBuffer() throws IOException {
+		if ( pos > 0 ) {
+			writer.write(buf, 0, pos);
+			pos = 0;
+		}
+	}
+
+	private void append(char c) throws IOException {
+		if ( pos == buf.length ) {
+			flushBuffer();
+		}
+		buf[pos++] = c;
+	}
+
+	private void appendRaw(String s) throws IOException {
+		final int len = s.length();
+		if ( len > buf.length - pos ) {
+			flushBuffer();
+			if ( len > buf.length ) {
+				writer.write(s);
+				return;
+			}
+		}
+		s.getChars(0, len, buf, pos);
+		pos += len;
+	}
+
+	/**
+	 * Append a value, quoting it if it contains the delimiter, quote, or end
+	 * of line characters.
+	 *
+	 * <p>
+	 * Quote characters are doubled and line breaks are replaced by the
+	 * configured end of line symbols, as the super-csv writers do.
+	 * </p>
+	 */
+	private void appendEscaped(String s) throws IOException {
+		if ( s == null ) {
+			return;
+		}
+		final int len = s.length();
+		boolean needsQuotes = (surroundingSpacesNeedQuotes && len > 0
+				&& (s.charAt(0) == ' ' || s.charAt(len - 1) == ' '));
+		for ( int i = 0; i < len && !needsQuotes; i++ ) {
+			char c = s.charAt(i);
+			needsQuotes = (c == delimiter || c == quote || c == '\r' || c == '\n');
+		}
+		if ( !needsQuotes ) {
+			appendRaw(s);
+			return;
+		}
+		append(quote);
+		for ( int i = 0; i < len; i++ ) {
+			char c = s.charAt(i);
+			if ( c == quote ) {
+				append(quote);
+				append(quote);
+			} else if ( c == '\r' ) {
+				appendRaw(eol);
+				if ( i + 1 < len && s.charAt(i + 1) == '\n' ) {
+					i++;
+				}
+			} else if ( c == '\n' ) {
+				appendRaw(eol);
+			} else {
+				append(c);
+			}
+		}
+		append(quote);
+	}
+
+	private void appendLong(long l) throws IOException {
+		if ( l == Long.MIN_VALUE ) {
+			appendRaw(Long.toString(l));
+			return;
+		}
+		if ( buf.length - pos < 20 ) {
+			flushBuffer();
+		}
+		if ( l < 0 ) {
+			buf[pos++] = '-';
+			l = -l;
+		}
+		int digits = 1;
+		for ( long n = l / 10; n > 0; n /= 10 ) {
+			digits++;
+		}
+		int p = pos + digits;
+		pos = p;
+		do {
+			buf[--p] = (char) ('0' + (l % 10));
+			l /= 10;
+		} while ( l > 0 );
+	}
+
+	private void appendDigits(int value, int width) {
+		for ( int p = pos + width - 1; p >= pos; p-- ) {
+			buf[p] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+		pos += width;
+	}
+
+	/**
+	 * Append a timestamp in the {@literal yyyy-MM-dd'T'HH:mm:ss.SSS'Z'} form,
+	 * in the UTC time zone.
+	 */
+	private void appendTimestamp(long millis) throws IOException {
+		long days = millis / MILLIS_PER_DAY;
+		long millisOfDay = millis % MILLIS_PER_DAY;
+		if ( millisOfDay < 0 ) {
+			millisOfDay += MILLIS_PER_DAY;
+			days--;
+		}
+
+		// convert days since the epoch to a proleptic Gregorian civil date
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		if ( year < 0 || year > 9999 ) {
+			appendRaw(TIMESTAMP_FORMATTER.print(millis));
+			return;
+		}
+
+		if ( buf.length - pos < 24 ) {
+			flushBuffer();
+		}
+		int ms = (int) millisOfDay;
+		appendDigits((int) year, 4);
+		buf[pos++] = '-';
+		appendDigits(month, 2);
+		buf[pos++] = '-';
+		appendDigits(day, 2);
+		buf[pos++] = 'T';
+		appendDigits(ms / 3600000, 2);
+		buf[pos++] = ':';
+		appendDigits((ms / 60000) % 60, 2);
+		buf[pos++] = ':';
+		appendDigits((ms / 1000) % 60, 2);
+		buf[pos++] = '.';
+		appendDigits(ms % 1000, 3);
+		buf[pos++] = 'Z';
+	}
+
+}
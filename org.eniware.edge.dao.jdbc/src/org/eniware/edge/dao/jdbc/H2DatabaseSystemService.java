@@ -0,0 +1,97 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+
+/**
+ * {@link DatabaseSystemService} for the H2 database.
+ *
+ * <p>
+ * Table sizes are reported by the {@literal DISK_SPACE_USED} function. H2
+ * reuses the space of deleted rows and only returns it to the file system when
+ * the database is closed, so {@link #vacuumTable(String, String)} does nothing
+ * beyond logging.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public class H2DatabaseSystemService implements DatabaseSystemService {
+
+	private static final String SQL_TABLE_SIZE = "SELECT DISK_SPACE_USED(?)";
+
+	private final JdbcOperations jdbcOperations;
+	private File[] fileSystemRoots = new File[] {
+			new File(System.getProperty("user.dir")).getAbsoluteFile() };
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jdbcOperations
+	 *        the JDBC operations to query the database with
+	 */
+	public H2DatabaseSystemService(JdbcOperations jdbcOperations) {
+		super();
+		this.jdbcOperations = jdbcOperations;
+	}
+
+	@Override
+	public File[] getFileSystemRoots() {
+		return fileSystemRoots;
+	}
+
+	@Override
+	public long tableFileSystemSize(String schemaName, String tableName) {
+		String name = (schemaName + '.' + tableName).toUpperCase();
+		try {
+			Long size = jdbcOperations.queryForObject(SQL_TABLE_SIZE, Long.class, name);
+			return (size != null ? size.longValue() : 0L);
+		} catch ( DataAccessException e ) {
+			log.warn("Unable to get disk space used by table {}: {}", name, e.getMessage());
+			return 0L;
+		}
+	}
+
+	@Override
+	public void vacuumTable(String schemaName, String tableName) {
+		log.debug("Table {}.{} space will be reused by H2 automatically; not compacting", schemaName,
+				tableName);
+	}
+
+	/**
+	 * Set the directories the database stores files in.
+	 *
+	 * <p>
+	 * Defaults to the working directory, which relative H2 database URLs are
+	 * resolved against.
+	 * </p>
+	 *
+	 * @param fileSystemRoots
+	 *        the directories
+	 */
+	public void setFileSystemRoots(File[] fileSystemRoots) {
+		this.fileSystemRoots = fileSystemRoots;
+	}
+
+	/**
+	 * Set the directory the database stores files in.
+	 *
+	 * @param path
+	 *        the directory path
+	 */
+	public void setDatabaseDirectory(String path) {
+		setFileSystemRoots(new File[] { new File(path).getAbsoluteFile() });
+	}
+
+}
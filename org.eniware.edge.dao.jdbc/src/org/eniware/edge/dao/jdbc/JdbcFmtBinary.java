@@ -0,0 +1,56 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Base64;
+import org.supercsv.cellprocessor.CellProcessorAdaptor;
+import org.supercsv.cellprocessor.ift.StringCellProcessor;
+import org.supercsv.exception.SuperCsvCellProcessorException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * Format binary column values as Base64 strings.
+ * 
+ * @version 1.0
+ * @since 1.23
+ */
+public class JdbcFmtBinary extends CellProcessorAdaptor implements StringCellProcessor {
+
+	public JdbcFmtBinary() {
+		super();
+	}
+
+	public JdbcFmtBinary(StringCellProcessor next) {
+		super(next);
+	}
+
+	@Override
+	public Object execute(final Object value, final CsvContext context) {
+		validateInputNotNull(value, context);
+
+		byte[] data;
+
+		if ( value instanceof byte[] ) {
+			data = (byte[]) value;
+		} else if ( value instanceof Blob ) {
+			Blob blob = (Blob) value;
+			try {
+				data = blob.getBytes(1, (int) blob.length());
+			} catch ( SQLException e ) {
+				throw new SuperCsvCellProcessorException("Error reading BLOB: " + e.getMessage(),
+						context, this, e);
+			}
+		} else {
+			throw new SuperCsvCellProcessorException(byte[].class, value, context, this);
+		}
+
+		return next.execute(Base64.getEncoder().encodeToString(data), context);
+	}
+
+}
@@ -0,0 +1,45 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+import java.util.Base64;
+import org.supercsv.cellprocessor.CellProcessorAdaptor;
+import org.supercsv.cellprocessor.ift.StringCellProcessor;
+import org.supercsv.exception.SuperCsvCellProcessorException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * Parse Base64 strings into binary column values.
+ * 
+ * @version 1.0
+ * @since 1.23
+ */
+public class JdbcParseBinary extends CellProcessorAdaptor implements StringCellProcessor {
+
+	public JdbcParseBinary() {
+		super();
+	}
+
+	public JdbcParseBinary(StringCellProcessor next) {
+		super(next);
+	}
+
+	@Override
+	public Object execute(final Object value, final CsvContext context) {
+		validateInputNotNull(value, context);
+
+		byte[] result;
+		try {
+			result = Base64.getDecoder().decode(value.toString());
+		} catch ( IllegalArgumentException e ) {
+			throw new SuperCsvCellProcessorException("Invalid Base64 value", context, this, e);
+		}
+
+		return next.execute(result, context);
+	}
+
+}
@@ -15,21 +15,31 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.eniware.edge.Setting;
 import org.eniware.edge.Setting.SettingFlag;
@@ -52,15 +62,34 @@ import org.eniware.util.OptionalService;
  * <dt>sqlDelete</dt>
  * <dd>The SQL statement to use for deleting an existing row. Accepts a single
  * parameter: the String primary key to delete.</dd>
+ * 
+ * <dt>cacheSize</dt>
+ * <dd>The maximum number of settings to cache in memory, keyed by key and
+ * type. Settings are cached when read, including settings that do not exist,
+ * and removed from the cache when stored, deleted, or updated via
+ * {@link #batchProcess(BatchCallback, BatchOptions)}. The least recently used
+ * settings are evicted when the cache is full. Set to {@literal 0} to disable.
+ * Defaults to {@link #DEFAULT_CACHE_SIZE}.</dd>
  * </dl>
  * 
- * @version 1.4
+ * <p>
+ * The result of {@link #getMostRecentModificationDate()} is queried once and
+ * then maintained in memory as settings are stored, so subsequent calls do not
+ * need to scan the settings table. Deleting settings or updating them via
+ * {@link #batchProcess(BatchCallback, BatchOptions)} causes the date to be
+ * queried again on the next call.
+ * </p>
+ * 
+ * @version 1.9
  */
 public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements SettingDao {
 
 	private static final String DEFAULT_SQL_FIND = "SELECT tkey,svalue FROM " + SCHEMA_NAME + '.'
 			+ TABLE_SETTINGS + " WHERE skey = ? ORDER BY tkey";
 
+	private static final String DEFAULT_SQL_FIND_FOR_TYPE = "SELECT svalue,modified,skey,tkey,flags FROM "
+			+ SCHEMA_NAME + '.' + TABLE_SETTINGS + " WHERE tkey = ? ORDER BY skey";
+
 	private static final String DEFAULT_SQL_GET = "SELECT svalue,modified,skey,tkey,flags FROM "
 			+ SCHEMA_NAME + '.' + TABLE_SETTINGS + " WHERE skey = ? AND tkey = ?";
 
@@ -73,18 +102,55 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 	private static final String DEFAULT_SQL_GET_DATE = "SELECT modified FROM " + SCHEMA_NAME + '.'
 			+ TABLE_SETTINGS + " WHERE skey = ? AND tkey = ?";
 
-	private static final String DEFAULT_SQL_GET_MOST_RECENT_DATE = "SELECT modified FROM " + SCHEMA_NAME
-			+ '.' + TABLE_SETTINGS
-			+ " WHERE ENIWAREEdge.BITWISE_AND(flags, ?) <> ? ORDER BY modified DESC";
+	private static final String SQL_GET_MOST_RECENT_DATE_TEMPLATE = "SELECT modified FROM "
+			+ SCHEMA_NAME + '.' + TABLE_SETTINGS + " WHERE %s <> ? ORDER BY modified DESC";
+
+	private static final String DEFAULT_SQL_GET_MOST_RECENT_DATE = String
+			.format(SQL_GET_MOST_RECENT_DATE_TEMPLATE, StandardSqlDialect.Derby.bitwiseAnd("flags", "?"));
+
+	private static final String DEFAULT_SQL_INSERT = "INSERT INTO " + SCHEMA_NAME + '.'
+			+ TABLE_SETTINGS + " (svalue,modified,skey,tkey,flags) VALUES (?,?,?,?,?)";
+
+	private static final String DEFAULT_SQL_UPDATE_VALUE = "UPDATE " + SCHEMA_NAME + '.'
+			+ TABLE_SETTINGS + " SET svalue = ?, modified = ? WHERE skey = ? AND tkey = ?";
 
 	private final String sqlGet = DEFAULT_SQL_GET;
+	private final String sqlInsert = DEFAULT_SQL_INSERT;
+	private final String sqlUpdateValue = DEFAULT_SQL_UPDATE_VALUE;
 	private final String sqlFind = DEFAULT_SQL_FIND;
+	private final String sqlFindForType = DEFAULT_SQL_FIND_FOR_TYPE;
 	private final String sqlBatchGetForUpdate = DEFAULT_BATCH_SQL_GET_FOR_UPDATE;
 	private final String sqlBatchGet = DEFAULT_BATCH_SQL_GET;
 	private final String sqlGetDate = DEFAULT_SQL_GET_DATE;
-	private final String sqlGetMostRecentDate = DEFAULT_SQL_GET_MOST_RECENT_DATE;
+	private String sqlGetMostRecentDate = DEFAULT_SQL_GET_MOST_RECENT_DATE;
+
+	/**
+	 * The default value for the {@code cacheSize} property.
+	 * 
+	 * @since 1.5
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 500;
+
+	/** A cache marker for a setting known not to exist. */
+	private static final Setting NO_SETTING = new Setting();
 
 	private OptionalService<EventAdmin> eventAdmin;
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+
+	private final AtomicLong cacheVersion = new AtomicLong(0);
+
+	private Timestamp modificationWatermark;
+	private boolean modificationWatermarkLoaded;
+	private long modificationWatermarkVersion;
+	private final Map<String, Setting> cache = new LinkedHashMap<String, Setting>(64, 0.75f, true) {
+
+		private static final long serialVersionUID = -3476437373934813466L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Setting> eldest) {
+			return size() > cacheSize;
+		}
+	};
 
 	@Override
 	public boolean deleteSetting(String key) {
@@ -148,6 +214,10 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 		});
 
 		boolean result = (setting != null);
+		if ( result ) {
+			invalidateCachedSetting(key, type);
+			resetModificationWatermark();
+		}
 		if ( setting != null && setting.getFlags() != null
 				&& !setting.getFlags().contains(SettingFlag.Volatile) ) {
 			postSettingUpdatedEvent(key, type, setting.getValue());
@@ -157,17 +227,8 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 
 	@Override
 	public String getSetting(String key, String type) {
-		List<String> res = getJdbcTemplate().query(this.sqlGet, new RowMapper<String>() {
-
-			@Override
-			public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-				return rs.getString(1);
-			}
-		}, key, type);
-		if ( res != null && res.size() > 0 ) {
-			return res.get(0);
-		}
-		return null;
+		Setting setting = readSetting(key, type);
+		return (setting != null ? setting.getValue() : null);
 	}
 
 	@Override
@@ -181,6 +242,17 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 		}, key);
 	}
 
+	@Override
+	public List<Setting> getSettingsForType(String type) {
+		return getJdbcTemplate().query(this.sqlFindForType, new RowMapper<Setting>() {
+
+			@Override
+			public Setting mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return getBatchRowEntity(null, rs, rowNum);
+			}
+		}, type);
+	}
+
 	@Override
 	public void storeSetting(final String key, final String type, final String value) {
 		TransactionTemplate tt = getTransactionTemplate();
@@ -215,8 +287,152 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * This implementation reads all existing settings with a single query,
+	 * compares them to {@code settings}, and then executes one JDBC batch for
+	 * new settings and one for settings whose value has changed. As with
+	 * {@link #storeSetting(Setting)}, the flags of existing settings are not
+	 * changed.
+	 * </p>
+	 * 
+	 * @since 1.6
+	 */
+	@Override
+	public int storeSettings(final Collection<Setting> settings) {
+		if ( settings == null || settings.isEmpty() ) {
+			return 0;
+		}
+		TransactionTemplate tt = getTransactionTemplate();
+		if ( tt != null ) {
+			return tt.execute(new TransactionCallback<Integer>() {
+
+				@Override
+				public Integer doInTransaction(TransactionStatus status) {
+					return storeSettingsInternal(settings);
+				}
+			});
+		} else {
+			return storeSettingsInternal(settings);
+		}
+	}
+
+	private int storeSettingsInternal(final Collection<Setting> settings) {
+		// the last setting for a given key+type wins
+		final Map<String, Setting> toStore = new LinkedHashMap<String, Setting>(settings.size());
+		for ( Setting setting : settings ) {
+			if ( setting == null || setting.getKey() == null || setting.getValue() == null ) {
+				continue;
+			}
+			final String type = (setting.getType() == null ? "" : setting.getType());
+			toStore.put(cacheKey(setting.getKey(), type), setting);
+		}
+
+		final Map<String, Setting> existing = new HashMap<String, Setting>(toStore.size());
+		getJdbcTemplate().query(sqlBatchGet, new RowCallbackHandler() {
+
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				Setting s = getBatchRowEntity(null, rs, 0);
+				String cacheKey = cacheKey(s.getKey(), s.getType());
+				if ( toStore.containsKey(cacheKey) ) {
+					existing.put(cacheKey, s);
+				}
+			}
+		});
+
+		final List<Setting> inserts = new ArrayList<Setting>(toStore.size());
+		final List<Setting> updates = new ArrayList<Setting>(toStore.size());
+		for ( Map.Entry<String, Setting> me : toStore.entrySet() ) {
+			Setting old = existing.get(me.getKey());
+			if ( old == null ) {
+				inserts.add(me.getValue());
+			} else if ( !me.getValue().getValue().equals(old.getValue()) ) {
+				updates.add(me.getValue());
+			}
+		}
+
+		final Timestamp now = new Timestamp(System.currentTimeMillis());
+		if ( !inserts.isEmpty() ) {
+			getJdbcTemplate().batchUpdate(sqlInsert, new BatchPreparedStatementSetter() {
+
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					Setting s = inserts.get(i);
+					ps.setString(1, s.getValue());
+					ps.setTimestamp(2, now);
+					ps.setString(3, s.getKey());
+					ps.setString(4, s.getType() == null ? "" : s.getType());
+					ps.setInt(5, SettingFlag.maskForSet(s.getFlags()));
+				}
+
+				@Override
+				public int getBatchSize() {
+					return inserts.size();
+				}
+			});
+		}
+		if ( !updates.isEmpty() ) {
+			getJdbcTemplate().batchUpdate(sqlUpdateValue, new BatchPreparedStatementSetter() {
+
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					Setting s = updates.get(i);
+					ps.setString(1, s.getValue());
+					ps.setTimestamp(2, now);
+					ps.setString(3, s.getKey());
+					ps.setString(4, s.getType() == null ? "" : s.getType());
+				}
+
+				@Override
+				public int getBatchSize() {
+					return updates.size();
+				}
+			});
+		}
+
+		// post a single event for all changed non-volatile settings
+		Setting changed = null;
+		int changedCount = 0;
+		for ( List<Setting> list : Arrays.asList(inserts, updates) ) {
+			for ( Setting s : list ) {
+				final String type = (s.getType() == null ? "" : s.getType());
+				invalidateCachedSetting(s.getKey(), type);
+				Setting old = existing.get(cacheKey(s.getKey(), type));
+				Set<SettingFlag> flags = (old != null ? old.getFlags() : s.getFlags());
+				if ( flags == null || !flags.contains(SettingFlag.IgnoreModificationDate) ) {
+					advanceModificationWatermark(now);
+				}
+				if ( flags == null || !flags.contains(SettingFlag.Volatile) ) {
+					changed = s;
+					changedCount++;
+				}
+			}
+		}
+		if ( changedCount == 1 ) {
+			postSettingUpdatedEvent(changed.getKey(),
+					changed.getType() == null ? "" : changed.getType(), changed.getValue());
+		} else if ( changedCount > 1 ) {
+			postSettingsUpdatedEvent(changedCount);
+		}
+		log.debug("Stored {} settings: {} added, {} updated", toStore.size(), inserts.size(),
+				updates.size());
+		return inserts.size() + updates.size();
+	}
+
 	@Override
 	public Setting readSetting(String key, String type) {
+		final String cacheKey = cacheKey(key, type);
+		final long version;
+		synchronized ( cache ) {
+			Setting cached = cache.get(cacheKey);
+			if ( cached != null ) {
+				return (cached == NO_SETTING ? null : copySetting(cached));
+			}
+			version = cacheVersion.get();
+		}
 		List<Setting> res = getJdbcTemplate().query(this.sqlGet, new RowMapper<Setting>() {
 
 			@Override
@@ -224,10 +440,93 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 				return getBatchRowEntity(null, rs, rowNum);
 			}
 		}, key, type);
-		if ( res != null && res.size() > 0 ) {
-			return res.get(0);
+		Setting result = (res != null && res.size() > 0 ? res.get(0) : null);
+		if ( cacheSize > 0 ) {
+			synchronized ( cache ) {
+				// don't cache if any setting changed while querying, as result might be stale
+				if ( version == cacheVersion.get() ) {
+					cache.put(cacheKey, result == null ? NO_SETTING : copySetting(result));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static String cacheKey(String key, String type) {
+		return key + '\u0000' + type;
+	}
+
+	private static Setting copySetting(Setting s) {
+		Setting copy = new Setting(s.getKey(), s.getType(), s.getValue(),
+				s.getFlags() == null ? null : EnumSet.copyOf(s.getFlags()));
+		copy.setModified(s.getModified());
+		return copy;
+	}
+
+	private void invalidateCachedSetting(final String key, final String type) {
+		final String cacheKey = cacheKey(key, type);
+		synchronized ( cache ) {
+			cache.remove(cacheKey);
+			cacheVersion.incrementAndGet();
+		}
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			// invalidate again once committed, in case another thread cached the old value
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+						@Override
+						public void afterCompletion(int status) {
+							synchronized ( cache ) {
+								cache.remove(cacheKey);
+								cacheVersion.incrementAndGet();
+							}
+						}
+					});
+		}
+	}
+
+	/**
+	 * Remove all settings from the cache.
+	 * 
+	 * @since 1.5
+	 */
+	public void clearCache() {
+		synchronized ( cache ) {
+			cache.clear();
+			cacheVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * If {@code options} is updatable, the settings cache and the most recent
+	 * modification date are cleared after the batch completes.
+	 * </p>
+	 */
+	@Override
+	public BatchResult batchProcess(BatchCallback<Setting> callback, BatchOptions options) {
+		if ( options == null || !options.isUpdatable() ) {
+			return super.batchProcess(callback, options);
+		}
+		try {
+			return super.batchProcess(callback, options);
+		} finally {
+			clearCache();
+			resetModificationWatermark();
+			if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+				TransactionSynchronizationManager
+						.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+							@Override
+							public void afterCompletion(int status) {
+								clearCache();
+								resetModificationWatermark();
+							}
+						});
+			}
 		}
-		return null;
 	}
 
 	private void storeSettingInternal(final String key, final String ttype, final String value,
@@ -244,6 +543,7 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 				PreparedStatement stmt = null;
 				ResultSet rs = null;
 				boolean updated = false;
+				int rowFlags = flags;
 
 				try {
 					stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
@@ -255,6 +555,7 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 						rs = stmt.getResultSet();
 						if ( rs.next() ) {
 							String oldValue = rs.getString(1);
+							rowFlags = rs.getInt(5);
 							if ( !value.equals(oldValue) ) {
 								rs.updateString(1, value);
 								rs.updateTimestamp(2, now);
@@ -285,6 +586,13 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 						rs.close();
 					}
 				}
+				if ( updated ) {
+					invalidateCachedSetting(key, type);
+					if ( !SettingFlag.setForMask(rowFlags)
+							.contains(SettingFlag.IgnoreModificationDate) ) {
+						advanceModificationWatermark(now);
+					}
+				}
 				if ( updated && !SettingFlag.setForMask(flags).contains(SettingFlag.Volatile) ) {
 					postSettingUpdatedEvent(key, type, value);
 				}
@@ -321,6 +629,66 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 
 	@Override
 	public Date getMostRecentModificationDate() {
+		final long version;
+		synchronized ( this ) {
+			if ( modificationWatermarkLoaded ) {
+				return (modificationWatermark == null ? null
+						: new Timestamp(modificationWatermark.getTime()));
+			}
+			version = modificationWatermarkVersion;
+		}
+		Timestamp result = queryMostRecentModificationDate();
+		synchronized ( this ) {
+			if ( version == modificationWatermarkVersion ) {
+				if ( modificationWatermark == null
+						|| (result != null && result.after(modificationWatermark)) ) {
+					modificationWatermark = result;
+				}
+				modificationWatermarkLoaded = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Advance the most recent modification date, once the current transaction
+	 * commits.
+	 * 
+	 * @param date
+	 *        the modification date
+	 */
+	private void advanceModificationWatermark(final Timestamp date) {
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+						@Override
+						public void afterCommit() {
+							advanceModificationWatermarkNow(date);
+						}
+					});
+		} else {
+			advanceModificationWatermarkNow(date);
+		}
+	}
+
+	private synchronized void advanceModificationWatermarkNow(Timestamp date) {
+		if ( modificationWatermark == null || date.after(modificationWatermark) ) {
+			modificationWatermark = date;
+		}
+	}
+
+	/**
+	 * Forget the most recent modification date, so it is queried again on the
+	 * next call to {@link #getMostRecentModificationDate()}.
+	 */
+	private synchronized void resetModificationWatermark() {
+		modificationWatermark = null;
+		modificationWatermarkLoaded = false;
+		modificationWatermarkVersion++;
+	}
+
+	private Timestamp queryMostRecentModificationDate() {
 		return getJdbcTemplate().query(new PreparedStatementCreator() {
 
 			@Override
@@ -332,10 +700,10 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 				stmt.setInt(2, mask);
 				return stmt;
 			}
-		}, new ResultSetExtractor<Date>() {
+		}, new ResultSetExtractor<Timestamp>() {
 
 			@Override
-			public Date extractData(ResultSet rs) throws SQLException, DataAccessException {
+			public Timestamp extractData(ResultSet rs) throws SQLException, DataAccessException {
 				if ( rs.next() ) {
 					return rs.getTimestamp(1);
 				}
@@ -392,6 +760,17 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 		ea.postEvent(event);
 	}
 
+	private void postSettingsUpdatedEvent(final int count) {
+		EventAdmin ea = (eventAdmin == null ? null : eventAdmin.service());
+		if ( ea == null ) {
+			return;
+		}
+		Map<String, Object> props = new HashMap<>();
+		props.put(SETTING_COUNT, count);
+		Event event = new Event(SettingDao.EVENT_TOPIC_SETTING_CHANGED, props);
+		ea.postEvent(event);
+	}
+
 	public OptionalService<EventAdmin> getEventAdmin() {
 		return eventAdmin;
 	}
@@ -406,4 +785,47 @@ public class JdbcSettingDao extends AbstractBatchableJdbcDao<Setting> implements
 		this.eventAdmin = eventAdmin;
 	}
 
+	/**
+	 * Get the maximum number of settings to cache.
+	 * 
+	 * @return the cache size
+	 * @since 1.5
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Set the maximum number of settings to cache.
+	 * 
+	 * @param cacheSize
+	 *        the cache size, or {@literal 0} to disable caching
+	 * @since 1.5
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+		if ( cacheSize < 1 ) {
+			clearCache();
+		}
+	}
+
+	/**
+	 * Set the SQL dialect to use.
+	 * 
+	 * <p>
+	 * In addition to the behavior of the superclass, this adapts the settings
+	 * SQL that uses bitwise operations to the dialect.
+	 * </p>
+	 * 
+	 * @param sqlDialect
+	 *        the dialect to use
+	 * @since 1.9
+	 */
+	@Override
+	public void setSqlDialect(SqlDialect sqlDialect) {
+		super.setSqlDialect(sqlDialect);
+		this.sqlGetMostRecentDate = (sqlDialect == null ? DEFAULT_SQL_GET_MOST_RECENT_DATE
+				: String.format(SQL_GET_MOST_RECENT_DATE_TEMPLATE, sqlDialect.bitwiseAnd("flags", "?")));
+	}
+
 }
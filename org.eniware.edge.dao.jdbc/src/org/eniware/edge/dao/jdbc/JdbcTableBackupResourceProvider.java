@@ -10,8 +10,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.sql.Connection;
@@ -49,16 +47,56 @@ import org.eniware.edge.backup.SimpleBackupResourceProviderInfo;
 /**
  * Backup support for JDBC tables.
  * 
- * @version 1.2
+ * <p>
+ * Each table is exported to CSV on the configured {@link TaskExecutor} and
+ * handed to the reader of the resource through a {@link BoundedPipe} of
+ * {@code pipeBufferSize} bytes. When a resource's input stream is requested,
+ * the exports of the following resources are started as well, so up to
+ * {@code maxConcurrentExports} tables are exported at once while the caller
+ * is still consuming the current one.
+ * </p>
+ * 
+ * <p>
+ * A read-ahead export gets at most {@code pipeBufferSize} bytes ahead of its
+ * reader, after which it waits for the reader. If the reader has not started
+ * within {@code exportTimeoutSeconds}, for example because the previous
+ * tables took longer to consume, the export gives up and releases its
+ * database connection, and the table is exported again when its input stream
+ * is requested.
+ * </p>
+ * 
+ * <p>
+ * Restored rows are inserted in JDBC batches of {@code restoreBatchSize} rows.
+ * Only batches that fail are retried row by row, so that rows that already
+ * exist can be skipped.
+ * </p>
+ * 
+ * @version 1.5
  * @since 1.17
  */
 public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 
+	/** The default value for the {@code pipeBufferSize} property. */
+	public static final int DEFAULT_PIPE_BUFFER_SIZE = 65536;
+
+	/** The default value for the {@code maxConcurrentExports} property. */
+	public static final int DEFAULT_MAX_CONCURRENT_EXPORTS = 2;
+
+	/** The default value for the {@code exportTimeoutSeconds} property. */
+	public static final int DEFAULT_EXPORT_TIMEOUT_SECONDS = 300;
+
+	/** The default value for the {@code restoreBatchSize} property. */
+	public static final int DEFAULT_RESTORE_BATCH_SIZE = 500;
+
 	private final JdbcTemplate jdbcTemplate;
 	private final TransactionTemplate transactionTemplate;
 	private final TaskExecutor taskExecutor;
 	private MessageSource messageSource;
 	private String[] tableNames;
+	private int pipeBufferSize = DEFAULT_PIPE_BUFFER_SIZE;
+	private int maxConcurrentExports = DEFAULT_MAX_CONCURRENT_EXPORTS;
+	private int exportTimeoutSeconds = DEFAULT_EXPORT_TIMEOUT_SECONDS;
+	private int restoreBatchSize = DEFAULT_RESTORE_BATCH_SIZE;
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -89,11 +127,13 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 
 	@Override
 	public Iterable<BackupResource> getBackupResources() {
-		List<BackupResource> result = new ArrayList<BackupResource>(tableNames.length);
+		List<JdbcTableBackupResource> group = new ArrayList<JdbcTableBackupResource>(
+				tableNames.length);
 		for ( String tableName : tableNames ) {
-			result.add(new JdbcTableBackupResource(tableName, CsvPreference.STANDARD_PREFERENCE));
+			group.add(new JdbcTableBackupResource(tableName, CsvPreference.STANDARD_PREFERENCE, group,
+					group.size()));
 		}
-		return result;
+		return new ArrayList<BackupResource>(group);
 	}
 
 	private final class JdbcTableBackupResource implements BackupResource {
@@ -101,12 +141,18 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 		private final long modTime;
 		private final String tableName;
 		private final CsvPreference preference;
+		private final List<JdbcTableBackupResource> group;
+		private final int index;
+		private BoundedPipe preparedPipe;
 
-		private JdbcTableBackupResource(String tableName, CsvPreference preference) {
+		private JdbcTableBackupResource(String tableName, CsvPreference preference,
+				List<JdbcTableBackupResource> group, int index) {
 			super();
 			this.tableName = tableName;
 			this.modTime = System.currentTimeMillis();
 			this.preference = preference;
+			this.group = group;
+			this.index = index;
 		}
 
 		@Override
@@ -126,13 +172,55 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 
 		@Override
 		public InputStream getInputStream() throws IOException {
-			PipedOutputStream sink = new PipedOutputStream();
-			Writer writer = new OutputStreamWriter(sink, "UTF-8");
-			PipedInputStream result = new PipedInputStream(sink);
-			taskExecutor.execute(new JdbcTableCsvExporter(tableName, writer, preference));
+			InputStream result = takeExport();
+
+			// read ahead by starting the exports of the following tables
+			final int end = Math.min(group.size(), index + maxConcurrentExports);
+			for ( int i = index + 1; i < end; i++ ) {
+				try {
+					group.get(i).prepareExport();
+				} catch ( RuntimeException e ) {
+					log.debug("Unable to start read-ahead export of table {}: {}",
+							group.get(i).tableName, e.toString());
+					break;
+				}
+			}
 			return result;
 		}
 
+		private synchronized void prepareExport() {
+			if ( preparedPipe == null ) {
+				preparedPipe = startExport();
+			}
+		}
+
+		private synchronized InputStream takeExport() {
+			BoundedPipe pipe = preparedPipe;
+			preparedPipe = null;
+			if ( pipe != null && !pipe.attachReader() ) {
+				// the read-ahead export failed or timed out waiting for us, so start over
+				log.debug("Read-ahead export of table {} did not complete; exporting again",
+						tableName);
+				try {
+					pipe.getInputStream().close();
+				} catch ( IOException e ) {
+					// ignore
+				}
+				pipe = null;
+			}
+			if ( pipe == null ) {
+				pipe = startExport();
+				pipe.attachReader();
+			}
+			return pipe.getInputStream();
+		}
+
+		private BoundedPipe startExport() {
+			BoundedPipe pipe = new BoundedPipe(pipeBufferSize, exportTimeoutSeconds * 1000L);
+			taskExecutor.execute(new JdbcTableCsvExporter(tableName, pipe, preference));
+			return pipe;
+		}
+
 		@Override
 		public String getSha256Digest() {
 			return null;
@@ -142,56 +230,72 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 
 	private final class JdbcTableCsvExporter implements Runnable {
 
+		private final String tableName;
 		private final String sqlQuery;
-		private final Writer out;
+		private final BoundedPipe pipe;
 		private final CsvPreference preference;
 
-		private JdbcTableCsvExporter(String tableName, Writer out, CsvPreference preference) {
+		private JdbcTableCsvExporter(String tableName, BoundedPipe pipe, CsvPreference preference) {
 			super();
+			this.tableName = tableName;
 			this.sqlQuery = "SELECT * FROM " + tableName;
-			this.out = out;
+			this.pipe = pipe;
 			this.preference = preference;
 		}
 
 		@Override
 		public void run() {
-			jdbcTemplate.execute(new ConnectionCallback<Object>() {
+			Writer out = null;
+			try {
+				out = new OutputStreamWriter(pipe.getOutputStream(), "UTF-8");
+				final Writer w = out;
+				jdbcTemplate.execute(new ConnectionCallback<Object>() {
 
-				@Override
-				public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+					@Override
+					public Object doInConnection(Connection con)
+							throws SQLException, DataAccessException {
+						try {
+							exportTable(con, w);
+						} catch ( IOException e ) {
+							log.debug("IOException exporting table {} to CSV", tableName, e);
+							pipe.fail(e);
+						}
+						return null;
+					}
+				});
+			} catch ( IOException e ) {
+				pipe.fail(e);
+			} catch ( RuntimeException e ) {
+				log.error("Error exporting table {} to CSV", tableName, e);
+				pipe.fail(e);
+			} finally {
+				if ( out != null ) {
 					try {
-						exportTable(con);
+						out.close();
 					} catch ( IOException e ) {
-						log.debug("IOException exporting table to CSV", e);
+						pipe.fail(e);
 					}
-					return null;
 				}
-			});
-
+				// close the pipe itself even if the writer failed to flush into it
+				try {
+					pipe.getOutputStream().close();
+				} catch ( IOException e ) {
+					// ignore
+				}
+			}
 		}
 
-		private void exportTable(Connection con) throws SQLException, IOException {
+		private void exportTable(Connection con, Writer out) throws SQLException, IOException {
 			// query
 			Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
 					ResultSet.CONCUR_READ_ONLY);
 			try {
 				ResultSet rs = stmt.executeQuery(sqlQuery);
-				CellProcessor[] cellProcessors = JdbcUtils
-						.formattingProcessorsForResultSetMetaData(rs.getMetaData());
-				JdbcResultSetCsvWriter writer = new ResultSetCsvWriter(out, preference);
+				JdbcResultSetCsvWriter writer = new DirectResultSetCsvWriter(out, preference);
 				try {
-					while ( rs.next() ) {
-						writer.write(rs, cellProcessors);
-					}
+					writer.write(rs);
+					writer.flush();
 				} finally {
-					if ( writer != null ) {
-						try {
-							writer.flush();
-							writer.close();
-						} catch ( IOException e ) {
-							// ignore
-						}
-					}
 					if ( rs != null ) {
 						try {
 							rs.close();
@@ -260,6 +364,9 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 				.columnCsvMetaDataForDatabaseMetaData(con.getMetaData(), tableName);
 		final String sql = JdbcUtils.insertSqlForColumnCsvMetaData(tableName, columnMetaData);
 		final PreparedStatement ps = con.prepareStatement(sql);
+		final int batchSize = Math.max(1, restoreBatchSize);
+		final long start = System.currentTimeMillis();
+		final long[] counts = new long[2]; // restored, skipped
 		Reader in;
 		PreparedStatementCsvReader reader = null;
 		try {
@@ -274,23 +381,18 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 			Map<String, Integer> csvColumns = JdbcUtils.csvColumnIndexMapping(header);
 			CellProcessor[] cellProcessors = JdbcUtils.parsingCellProcessorsForCsvColumns(header,
 					columnMetaData);
-			while ( reader.read(ps, csvColumns, cellProcessors, columnMetaData) ) {
-				Savepoint sp = con.setSavepoint();
-				try {
-					ps.executeUpdate();
-				} catch ( SQLException e ) {
-
-					DataAccessException dae = jdbcTemplate.getExceptionTranslator().translate("Load CSV",
-							sql, e);
-					if ( dae instanceof DataIntegrityViolationException ) {
-						log.debug("Ignoring {} CSV duplicate import row {}", tableName,
-								reader.getRowNumber());
-						con.rollback(sp);
-					} else {
-						throw e;
-					}
+			List<List<Object>> chunk = new ArrayList<List<Object>>(batchSize);
+			List<Object> row;
+			while ( (row = reader.readParameters(csvColumns, cellProcessors, columnMetaData)) != null ) {
+				chunk.add(row);
+				if ( chunk.size() >= batchSize ) {
+					restoreChunk(con, ps, sql, reader, columnMetaData, chunk, tableName, counts);
+					chunk.clear();
 				}
 			}
+			if ( !chunk.isEmpty() ) {
+				restoreChunk(con, ps, sql, reader, columnMetaData, chunk, tableName, counts);
+			}
 		} catch ( IOException e ) {
 			throw new DataAccessResourceFailureException("CSV encoding error", e);
 		} finally {
@@ -307,9 +409,64 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 				// ignore
 			}
 		}
+		final long time = System.currentTimeMillis() - start;
+		log.info("Restored {} rows to table {} in {}ms ({} rows/s); skipped {} duplicate rows",
+				counts[0], tableName, time, (time > 0 ? counts[0] * 1000L / time : counts[0]),
+				counts[1]);
 		return true;
 	}
 
+	/**
+	 * Insert a chunk of rows as a single batch.
+	 * 
+	 * <p>
+	 * If the batch fails, the chunk is rolled back and its rows are inserted
+	 * one at a time, skipping rows that violate data integrity constraints
+	 * (that is, rows that already exist).
+	 * </p>
+	 */
+	private void restoreChunk(final Connection con, final PreparedStatement ps, final String sql,
+			final PreparedStatementCsvReader reader,
+			final Map<String, ColumnCsvMetaData> columnMetaData, final List<List<Object>> chunk,
+			final String tableName, final long[] counts) throws SQLException {
+		Savepoint sp = con.setSavepoint();
+		try {
+			for ( List<Object> row : chunk ) {
+				reader.setParameters(ps, row, columnMetaData);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+			con.releaseSavepoint(sp);
+			counts[0] += chunk.size();
+			return;
+		} catch ( SQLException e ) {
+			log.debug("Batch of {} {} CSV rows failed, retrying individually: {}", chunk.size(),
+					tableName, e.getMessage());
+			ps.clearBatch();
+			con.rollback(sp);
+			con.releaseSavepoint(sp);
+		}
+		for ( List<Object> row : chunk ) {
+			reader.setParameters(ps, row, columnMetaData);
+			Savepoint rowSp = con.setSavepoint();
+			try {
+				ps.executeUpdate();
+				counts[0]++;
+			} catch ( SQLException e ) {
+				DataAccessException dae = jdbcTemplate.getExceptionTranslator().translate("Load CSV",
+						sql, e);
+				if ( dae instanceof DataIntegrityViolationException ) {
+					log.debug("Ignoring {} CSV duplicate import row {}", tableName, row);
+					con.rollback(rowSp);
+					counts[1]++;
+				} else {
+					throw e;
+				}
+			}
+			con.releaseSavepoint(rowSp);
+		}
+	}
+
 	/**
 	 * Set the list of table names to back up. The names should be
 	 * fully-qualified like {@code schema.table}.
@@ -332,4 +489,75 @@ public class JdbcTableBackupResourceProvider implements BackupResourceProvider {
 		this.messageSource = messageSource;
 	}
 
+	/**
+	 * Set the maximum number of bytes of exported CSV data to buffer for each
+	 * table.
+	 * 
+	 * <p>
+	 * This bounds how far a read-ahead export can get ahead of its reader.
+	 * Defaults to {@link #DEFAULT_PIPE_BUFFER_SIZE}.
+	 * </p>
+	 * 
+	 * @param pipeBufferSize
+	 *        the buffer size, in bytes
+	 * @since 1.3
+	 */
+	public void setPipeBufferSize(int pipeBufferSize) {
+		this.pipeBufferSize = pipeBufferSize;
+	}
+
+	/**
+	 * Set the maximum number of tables to export at once.
+	 * 
+	 * <p>
+	 * This includes the table being read plus the tables exported ahead of it.
+	 * A value of {@literal 1} or less exports each table only when its input
+	 * stream is requested. Each concurrent export uses one database connection.
+	 * Defaults to {@link #DEFAULT_MAX_CONCURRENT_EXPORTS}.
+	 * </p>
+	 * 
+	 * @param maxConcurrentExports
+	 *        the maximum number of concurrent exports
+	 * @since 1.3
+	 */
+	public void setMaxConcurrentExports(int maxConcurrentExports) {
+		this.maxConcurrentExports = maxConcurrentExports;
+	}
+
+	/**
+	 * Set the maximum time an export waits for its buffered data to be read
+	 * before giving up.
+	 * 
+	 * <p>
+	 * This releases the database connection of a read-ahead export whose
+	 * resource is never read, for example when a backup is aborted. Defaults
+	 * to {@link #DEFAULT_EXPORT_TIMEOUT_SECONDS}.
+	 * </p>
+	 * 
+	 * @param exportTimeoutSeconds
+	 *        the timeout, in seconds
+	 * @since 1.3
+	 */
+	public void setExportTimeoutSeconds(int exportTimeoutSeconds) {
+		this.exportTimeoutSeconds = exportTimeoutSeconds;
+	}
+
+	/**
+	 * Set the number of rows to insert per batch when restoring a table.
+	 * 
+	 * <p>
+	 * Each batch is inserted within its own savepoint; a batch that fails is
+	 * rolled back and retried one row at a time, skipping duplicate rows. A
+	 * value of {@literal 1} inserts every row individually. Defaults to
+	 * {@link #DEFAULT_RESTORE_BATCH_SIZE}.
+	 * </p>
+	 * 
+	 * @param restoreBatchSize
+	 *        the batch size
+	 * @since 1.4
+	 */
+	public void setRestoreBatchSize(int restoreBatchSize) {
+		this.restoreBatchSize = restoreBatchSize;
+	}
+
 }
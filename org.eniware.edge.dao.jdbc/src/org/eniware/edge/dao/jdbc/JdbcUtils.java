@@ -22,7 +22,7 @@ import org.supercsv.cellprocessor.ift.CellProcessor;
 /**
  * Utilities to help with JDBC.
  * 
- * @version 1.0
+ * @version 1.1
  * @since 1.17
  */
 public abstract class JdbcUtils {
@@ -61,6 +61,13 @@ public abstract class JdbcUtils {
 				case Types.TIMESTAMP_WITH_TIMEZONE:
 					processor = new ConvertNullTo("", new JdbcFmtDate.Timestamp());
 					break;
+
+				case Types.BINARY:
+				case Types.BLOB:
+				case Types.LONGVARBINARY:
+				case Types.VARBINARY:
+					processor = new ConvertNullTo("", new JdbcFmtBinary());
+					break;
 			}
 			cellProcessors[i] = processor;
 		}
@@ -133,6 +140,13 @@ public abstract class JdbcUtils {
 						processor = new JdbcParseDate.Timestamp();
 						break;
 
+					case Types.BINARY:
+					case Types.BLOB:
+					case Types.LONGVARBINARY:
+					case Types.VARBINARY:
+						processor = new JdbcParseBinary();
+						break;
+
 					case Types.BIGINT:
 					case Types.DECIMAL:
 					case Types.DOUBLE:
@@ -23,7 +23,7 @@ import org.supercsv.prefs.CsvPreference;
 /**
  * Implementation of {@link JdbcPreparedStatementCsvReader}.
  * 
- * @version 1.0
+ * @version 1.2
  * @since 1.17
  */
 public class PreparedStatementCsvReader extends AbstractCsvReader
@@ -42,37 +42,95 @@ public class PreparedStatementCsvReader extends AbstractCsvReader
 	public boolean read(PreparedStatement stmt, Map<String, Integer> csvColumns,
 			CellProcessor[] cellProcessors, Map<String, ColumnCsvMetaData> columnMetaData)
 			throws SQLException, IOException {
-		final List<Object> processed = new ArrayList<Object>(csvColumns.size());
-		if ( readRow() ) {
-			List<?> columnValues;
-			if ( cellProcessors != null ) {
-				executeProcessors(processed, cellProcessors);
-				columnValues = processed;
+		List<Object> values = readParameters(csvColumns, cellProcessors, columnMetaData);
+		if ( values == null ) {
+			return false;
+		}
+		setParameters(stmt, values, columnMetaData);
+		return true;
+	}
+
+	/**
+	 * Read a row of CSV data as a list of statement parameter values.
+	 * 
+	 * <p>
+	 * The returned values are ordered like the entries of
+	 * {@code columnMetaData}, so they can be passed to
+	 * {@link #setParameters(PreparedStatement, List, Map)} later on, for
+	 * example to retry a row that was part of a failed batch.
+	 * </p>
+	 * 
+	 * @param csvColumns
+	 *        The CSV column names with associated indicies.
+	 * @param cellProcessors
+	 *        An array of cell processors to handle each exported column, or
+	 *        {@literal null}.
+	 * @param columnMetaData
+	 *        The column names with associated metadata.
+	 * @return the parameter values, or {@literal null} if no more rows are
+	 *         available
+	 * @throws IOException
+	 *         If any IO error occurs.
+	 * @since 1.1
+	 */
+	public List<Object> readParameters(Map<String, Integer> csvColumns,
+			CellProcessor[] cellProcessors, Map<String, ColumnCsvMetaData> columnMetaData)
+			throws IOException {
+		if ( !readRow() ) {
+			return null;
+		}
+		List<?> columnValues;
+		if ( cellProcessors != null ) {
+			final List<Object> processed = new ArrayList<Object>(csvColumns.size());
+			executeProcessors(processed, cellProcessors);
+			columnValues = processed;
+		} else {
+			columnValues = getColumns();
+		}
+		final List<Object> result = new ArrayList<Object>(columnMetaData.size());
+		for ( String columnName : columnMetaData.keySet() ) {
+			Integer csvColumnIndex = csvColumns.get(columnName);
+			result.add(csvColumnIndex == null ? null : columnValues.get(csvColumnIndex));
+		}
+		return result;
+	}
+
+	/**
+	 * Set statement parameter values previously returned from
+	 * {@link #readParameters(Map, CellProcessor[], Map)}.
+	 * 
+	 * @param stmt
+	 *        The statement to use.
+	 * @param values
+	 *        The parameter values.
+	 * @param columnMetaData
+	 *        The column names with associated metadata.
+	 * @throws SQLException
+	 *         If any SQL error occurs.
+	 * @since 1.1
+	 */
+	public void setParameters(PreparedStatement stmt, List<Object> values,
+			Map<String, ColumnCsvMetaData> columnMetaData) throws SQLException {
+		int i = 1;
+		final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		for ( ColumnCsvMetaData meta : columnMetaData.values() ) {
+			final Object columnValue = values.get(i - 1);
+			final int sqlType = meta.getSqlType();
+			if ( columnValue == null ) {
+				stmt.setNull(i, sqlType);
+			} else if ( columnValue instanceof java.sql.Date ) {
+				stmt.setDate(i, (java.sql.Date) columnValue, utcCalendar);
+			} else if ( columnValue instanceof java.sql.Time ) {
+				stmt.setTime(i, (java.sql.Time) columnValue, utcCalendar);
+			} else if ( columnValue instanceof java.sql.Timestamp ) {
+				stmt.setTimestamp(i, (java.sql.Timestamp) columnValue, utcCalendar);
+			} else if ( columnValue instanceof byte[] ) {
+				stmt.setBytes(i, (byte[]) columnValue);
 			} else {
-				columnValues = getColumns();
-			}
-			int i = 1;
-			final Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-			for ( Map.Entry<String, ColumnCsvMetaData> me : columnMetaData.entrySet() ) {
-				Integer csvColumnIndex = csvColumns.get(me.getKey());
-				Object columnValue = (csvColumnIndex == null ? null : columnValues.get(csvColumnIndex));
-				final int sqlType = me.getValue().getSqlType();
-				if ( columnValue == null ) {
-					stmt.setNull(i, sqlType);
-				} else if ( columnValue instanceof java.sql.Date ) {
-					stmt.setDate(i, (java.sql.Date) columnValue, utcCalendar);
-				} else if ( columnValue instanceof java.sql.Time ) {
-					stmt.setTime(i, (java.sql.Time) columnValue, utcCalendar);
-				} else if ( columnValue instanceof java.sql.Timestamp ) {
-					stmt.setTimestamp(i, (java.sql.Timestamp) columnValue, utcCalendar);
-				} else {
-					stmt.setObject(i, columnValue, sqlType);
-				}
-				i++;
+				stmt.setObject(i, columnValue, sqlType);
 			}
-			return true;
+			i++;
 		}
-		return false;
 	}
 
 }
@@ -0,0 +1,55 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+/**
+ * The database-specific parts of the SQL used by the JDBC DAOs.
+ *
+ * <p>
+ * Most SQL is loaded from classpath resources named with a dialect prefix,
+ * for example {@literal derby-init.sql} or
+ * {@literal derby-generalEdgedatum-upsert.sql}. A dialect's
+ * {@link #getName()} is used in place of that prefix, so a DAO configured
+ * with Derby resource names loads the matching resources for the configured
+ * dialect instead, falling back to the shared, un-prefixed resources when no
+ * dialect-specific version exists. The SQL built directly in code is adapted
+ * with the remaining methods.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public interface SqlDialect {
+
+	/**
+	 * Get the name of this dialect, as used in SQL resource names.
+	 *
+	 * @return the name, for example {@literal derby}
+	 */
+	String getName();
+
+	/**
+	 * Get a SQL fragment to append to queries where an updatable result set
+	 * is desired.
+	 *
+	 * @return the suffix, including a leading space, or {@literal null} if not
+	 *         supported
+	 */
+	String getForUpdateSuffix();
+
+	/**
+	 * Get a SQL expression for the bitwise AND of two integer expressions.
+	 *
+	 * @param left
+	 *        the left expression
+	 * @param right
+	 *        the right expression
+	 * @return the SQL expression
+	 */
+	String bitwiseAnd(String left, String right);
+
+}
@@ -0,0 +1,86 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc;
+
+/**
+ * The {@link SqlDialect} implementations supported by this bundle.
+ *
+ * @version 1.0
+ * @since 1.23
+ */
+public enum StandardSqlDialect implements SqlDialect {
+
+	/**
+	 * Apache Derby, the default database. Bitwise operations use the
+	 * {@literal ENIWAREEdge.BITWISE_AND} stored function.
+	 */
+	Derby("derby", " FOR UPDATE") {
+
+		@Override
+		public String bitwiseAnd(String left, String right) {
+			return "ENIWAREEdge.BITWISE_AND(" + left + ", " + right + ")";
+		}
+
+	},
+
+	/**
+	 * H2, using the built-in {@literal BITAND} function.
+	 */
+	H2("h2", " FOR UPDATE") {
+
+		@Override
+		public String bitwiseAnd(String left, String right) {
+			return "BITAND(" + left + ", " + right + ")";
+		}
+
+	};
+
+	private final String name;
+	private final String forUpdateSuffix;
+
+	private StandardSqlDialect(String name, String forUpdateSuffix) {
+		this.name = name;
+		this.forUpdateSuffix = forUpdateSuffix;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getForUpdateSuffix() {
+		return forUpdateSuffix;
+	}
+
+	/**
+	 * Get the resource name for a given dialect.
+	 *
+	 * <p>
+	 * The first {@literal -} delimited component of {@code name}, which is the
+	 * dialect prefix, is replaced by the name of {@code dialect}. Names
+	 * without a {@literal -} are returned unchanged.
+	 * </p>
+	 *
+	 * @param dialect
+	 *        the dialect, or {@literal null} to leave {@code name} as-is
+	 * @param name
+	 *        the resource name or prefix, for example {@literal derby-init}
+	 * @return the dialect-specific name, for example {@literal h2-init}
+	 */
+	public static String resourceName(SqlDialect dialect, String name) {
+		if ( dialect == null || name == null ) {
+			return name;
+		}
+		int idx = name.indexOf('-');
+		if ( idx < 1 ) {
+			return name;
+		}
+		return dialect.getName() + name.substring(idx);
+	}
+
+}
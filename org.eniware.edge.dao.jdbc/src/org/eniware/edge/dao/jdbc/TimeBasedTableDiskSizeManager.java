@@ -21,6 +21,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
@@ -47,11 +49,35 @@ import org.eniware.util.OptionalService;
  * </p>
  * 
  * <p>
+ * If a {@link DatumTablePartitions} is configured and enabled, the size of all
+ * partitions is considered along with the configured table. Once the
+ * configured table has no more rows to trim, partitions holding only uploaded
+ * rows are dropped instead of deleting rows, which frees space without needing
+ * a vacuum. Only if there are none is the oldest partition dropped regardless
+ * of its upload status.
+ * </p>
+ * 
+ * <p>
+ * If {@code deleteChunkSize} is configured then rows are deleted in chunks of
+ * about that many rows, each in its own statement with a pause between chunks,
+ * so other writers are not blocked behind one long-running delete.
+ * </p>
+ * 
+ * <p>
+ * If a {@link DatumDownsampler} is configured and {@code downsampleMinutes} is
+ * greater than {@literal 0}, then instead of deleting the oldest rows the
+ * oldest {@code trimMinutes} of data that has not been downsampled yet is
+ * replaced by aggregates of {@code downsampleMinutes} each, so data that has
+ * not been uploaded is kept at a lower resolution rather than lost. Rows are
+ * only deleted once downsampling no longer frees any rows.
+ * </p>
+ * 
+ * <p>
  * <b>Note</b> that the {@code dateColumnName} time stamp column is assumed to
  * store dates in the {@literal UTC} time zone.
  * </p>
  * 
- * @version 1.0
+ * @version 1.3
  * @since 1.19
  */
 public class TimeBasedTableDiskSizeManager {
@@ -64,9 +90,21 @@ public class TimeBasedTableDiskSizeManager {
 	private float maxFileSystemUseThreshold = 90.0f;
 	private long minTableSizeThreshold = (1024 * 1024); // 1MB
 	private int trimMinutes = 90;
+	private DatumTablePartitions tablePartitions;
+	private int deleteChunkSize = 0;
+	private long deleteChunkPauseMs = DEFAULT_DELETE_CHUNK_PAUSE_MS;
+	private final DeleteMetrics deleteMetrics = new DeleteMetrics();
+	private DatumDownsampler downsampler;
+	private int downsampleMinutes = 0;
+	private long downsampledThrough = 0;
 
 	private static final String OLDEST_DATE_QUERY_TEMPLATE = "SELECT MIN(%s) FROM %s";
 	private static final String DELETE_BY_DATE_QUERY_TEMPLATE = "DELETE FROM %s WHERE %s < ?";
+	private static final String CHUNK_DATE_QUERY_TEMPLATE = "SELECT %s FROM %s WHERE %s < ? ORDER BY %s";
+	private static final String DELETE_CHUNK_QUERY_TEMPLATE = "DELETE FROM %s WHERE %s < ? AND %s <= ?";
+
+	/** The default value for the {@code deleteChunkPauseMs} property. */
+	public static final long DEFAULT_DELETE_CHUNK_PAUSE_MS = 100;
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -104,13 +142,13 @@ public class TimeBasedTableDiskSizeManager {
 				log.debug("Database filesystem {} {}% capacity ({} available out of {})", store.name(),
 						percentFull, usableSpace, totalSpace);
 				if ( percentFull >= maxFileSystemUseThreshold ) {
-					long diskSize = dbService.tableFileSystemSize(schemaName, tableName);
+					long diskSize = tableFileSystemSize(dbService);
 					log.debug("Database table {}.{} consumes {} on disk", schemaName, tableName,
 							diskSize);
 					if ( diskSize >= minTableSizeThreshold ) {
 						int deleted = deleteOldestData(dbService);
 						if ( deleted > 0 ) {
-							long newDiskSize = dbService.tableFileSystemSize(schemaName, tableName);
+							long newDiskSize = tableFileSystemSize(dbService);
 							log.info("Trimmed {} oldest rows from {}.{} to free space; size diff is {}",
 									deleted, schemaName, tableName, newDiskSize - diskSize);
 						}
@@ -128,11 +166,41 @@ public class TimeBasedTableDiskSizeManager {
 		}
 	}
 
+	private long tableFileSystemSize(DatabaseSystemService dbService) {
+		long size = dbService.tableFileSystemSize(schemaName, tableName);
+		if ( isPartitioned() ) {
+			List<String> names = tablePartitions.getTableNames();
+			for ( String name : names.subList(1, names.size()) ) {
+				size += dbService.tableFileSystemSize(schemaName, name);
+			}
+		}
+		return size;
+	}
+
+	private boolean isPartitioned() {
+		return (tablePartitions != null && tablePartitions.isEnabled());
+	}
+
+	private boolean isDownsampling() {
+		return (downsampler != null && downsampleMinutes > 0);
+	}
+
 	private int deleteOldestData(DatabaseSystemService dbService) {
-		int deleted = jdbcOperations.execute(new ConnectionCallback<Integer>() {
+		final long start = System.currentTimeMillis();
+		final String fullTableName = (schemaName == null ? tableName : schemaName + '.' + tableName);
+		if ( isDownsampling() ) {
+			int removed = downsampleOldestData(fullTableName);
+			if ( removed > 0 ) {
+				dbService.vacuumTable(schemaName, tableName);
+				deleteMetrics.addRun(removed, 1, System.currentTimeMillis() - start);
+				log.debug("Trim metrics for {}: {}", fullTableName, deleteMetrics);
+				return removed;
+			}
+		}
+		final Timestamp deleteDate = jdbcOperations.execute(new ConnectionCallback<Timestamp>() {
 
 			@Override
-			public Integer doInConnection(Connection conn) throws SQLException, DataAccessException {
+			public Timestamp doInConnection(Connection conn) throws SQLException, DataAccessException {
 				DatabaseMetaData meta = conn.getMetaData();
 
 				// verify the configured dateColumnName actually exists on the configured table
@@ -142,7 +210,7 @@ public class TimeBasedTableDiskSizeManager {
 					if ( !dateColRs.next() ) {
 						log.error("Date column {} not found on table {}.{}; cannot trim data",
 								dateColumnName, schemaName, tableName);
-						return 0;
+						return null;
 					}
 				} finally {
 					if ( dateColRs != null ) {
@@ -150,35 +218,115 @@ public class TimeBasedTableDiskSizeManager {
 					}
 				}
 
-				final String fullTableName = (schemaName == null ? tableName
-						: schemaName + '.' + tableName);
-
 				// get oldest available date from table
 				Timestamp oldestDate = findOldestDate(conn, fullTableName);
 				if ( oldestDate == null ) {
 					log.debug("Oldest date not found on table {}.{}; cannot trim data", schemaName,
 							tableName);
-					return 0;
+					return null;
 				}
 
-				Timestamp deleteDate = new Timestamp(
-						oldestDate.getTime() + TimeUnit.MINUTES.toMillis(trimMinutes));
-				int deleted = deleteOlderThan(conn, fullTableName, deleteDate);
-				log.debug("Trimmed {} rows from {} older than {} to free space", deleted, fullTableName,
-						deleteDate);
-				return deleted;
+				return new Timestamp(oldestDate.getTime() + TimeUnit.MINUTES.toMillis(trimMinutes));
 			}
 
 		});
 
+		int deleted = 0;
+		int chunks = 0;
+		if ( deleteDate != null ) {
+			while ( true ) {
+				Integer count = jdbcOperations.execute(new ConnectionCallback<Integer>() {
+
+					@Override
+					public Integer doInConnection(Connection conn)
+							throws SQLException, DataAccessException {
+						return deleteOlderThan(conn, fullTableName, deleteDate);
+					}
+				});
+				chunks++;
+				deleted += (count != null ? count.intValue() : 0);
+				if ( deleteChunkSize < 1 || count == null || count.intValue() < deleteChunkSize ) {
+					break;
+				}
+				if ( deleteChunkPauseMs > 0 ) {
+					try {
+						Thread.sleep(deleteChunkPauseMs);
+					} catch ( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			log.debug("Trimmed {} rows from {} older than {} in {} chunks to free space", deleted,
+					fullTableName, deleteDate, chunks);
+		}
+
 		if ( deleted > 0 ) {
 			// now that we've deleted data, perform a vacuum to reclaim space if possible
 			dbService.vacuumTable(schemaName, tableName);
+		} else if ( isPartitioned() ) {
+			// dropping a partition releases its space immediately, no vacuum required;
+			// only drop a partition with data not uploaded yet if there is no other choice
+			deleted = tablePartitions.dropPartitionsUploadedBefore(new Date());
+			if ( deleted < 1 ) {
+				deleted = Math.max(tablePartitions.dropOldestPartition(), 0);
+			}
 		}
 
+		deleteMetrics.addRun(deleted, chunks, System.currentTimeMillis() - start);
+		log.debug("Trim metrics for {}: {}", fullTableName, deleteMetrics);
 		return deleted;
 	}
 
+	/**
+	 * Downsample the oldest data that has not been downsampled yet.
+	 * 
+	 * <p>
+	 * Starting from the oldest available date, or the end of the last range
+	 * downsampled by this service if that is later, successive ranges of
+	 * {@code trimMinutes} are downsampled until one frees some rows. Ranges
+	 * that end within the last {@code downsampleMinutes} are not downsampled,
+	 * as they can still be receiving new data.
+	 * </p>
+	 * 
+	 * @param fullTableName
+	 *        the full table name (schema + name)
+	 * @return the number of rows freed
+	 */
+	private int downsampleOldestData(final String fullTableName) {
+		final Timestamp oldestDate = jdbcOperations.execute(new ConnectionCallback<Timestamp>() {
+
+			@Override
+			public Timestamp doInConnection(Connection conn) throws SQLException, DataAccessException {
+				return findOldestDate(conn, fullTableName);
+			}
+		});
+		if ( oldestDate == null ) {
+			return 0;
+		}
+		final long periodMs = TimeUnit.MINUTES.toMillis(downsampleMinutes);
+		final long rangeMs = Math.max(1,
+				(TimeUnit.MINUTES.toMillis(trimMinutes) + periodMs - 1) / periodMs) * periodMs;
+		final long end = System.currentTimeMillis() - periodMs;
+		long from = oldestDate.getTime() - (oldestDate.getTime() % periodMs);
+		if ( downsampledThrough > from ) {
+			from = downsampledThrough;
+		}
+		while ( from + rangeMs <= end ) {
+			int removed = downsampler.downsampleDatum(new Date(from), new Date(from + rangeMs),
+					downsampleMinutes);
+			from += rangeMs;
+			downsampledThrough = from;
+			if ( removed > 0 ) {
+				log.info("Downsampled {} data older than {} to {} minute aggregates, freeing {} rows",
+						fullTableName, new Date(from), downsampleMinutes, removed);
+				return removed;
+			}
+		}
+		log.debug("No {} data left to downsample; trimming oldest data instead", fullTableName);
+		return 0;
+	}
+
 	/**
 	 * Find the oldest available date in the configured table.
 	 * 
@@ -224,7 +372,12 @@ public class TimeBasedTableDiskSizeManager {
 	 * <p>
 	 * This method will execute the {@link #DELETE_BY_DATE_QUERY_TEMPLATE} SQL
 	 * template, after substituting {@code fullTableName} and
-	 * {@code dateColumnName}, setting the given {@code date} parameter.
+	 * {@code dateColumnName}, setting the given {@code date} parameter. If
+	 * {@code deleteChunkSize} is greater than {@literal 0} then the date of the
+	 * last row of the next chunk is found via the
+	 * {@link #CHUNK_DATE_QUERY_TEMPLATE} SQL template and the
+	 * {@link #DELETE_CHUNK_QUERY_TEMPLATE} SQL template is executed instead, to
+	 * delete only the rows up to and including that date.
 	 * </p>
 	 * 
 	 * @param conn
@@ -240,14 +393,26 @@ public class TimeBasedTableDiskSizeManager {
 	private int deleteOlderThan(final Connection conn, final String fullTableName, final Timestamp date)
 			throws SQLException {
 		log.debug("Trimming rows from {} older than {} to free space", fullTableName, date);
-		String oldestDateSql = String.format(DELETE_BY_DATE_QUERY_TEMPLATE, fullTableName,
-				dateColumnName);
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		Timestamp chunkDate = null;
+		if ( deleteChunkSize > 0 ) {
+			chunkDate = findChunkDate(conn, fullTableName, date, cal);
+			if ( chunkDate == null ) {
+				return 0;
+			}
+		}
+		String deleteSql = (chunkDate == null
+				? String.format(DELETE_BY_DATE_QUERY_TEMPLATE, fullTableName, dateColumnName)
+				: String.format(DELETE_CHUNK_QUERY_TEMPLATE, fullTableName, dateColumnName,
+						dateColumnName));
 
 		PreparedStatement deleteStmt = null;
-		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
 		try {
-			deleteStmt = conn.prepareStatement(oldestDateSql);
+			deleteStmt = conn.prepareStatement(deleteSql);
 			deleteStmt.setTimestamp(1, date, cal);
+			if ( chunkDate != null ) {
+				deleteStmt.setTimestamp(2, chunkDate, cal);
+			}
 			int count = deleteStmt.executeUpdate();
 			return count;
 		} finally {
@@ -257,6 +422,30 @@ public class TimeBasedTableDiskSizeManager {
 		}
 	}
 
+	private Timestamp findChunkDate(final Connection conn, final String fullTableName,
+			final Timestamp date, final Calendar cal) throws SQLException {
+		String sql = String.format(CHUNK_DATE_QUERY_TEMPLATE, dateColumnName, fullTableName,
+				dateColumnName, dateColumnName);
+		Timestamp result = null;
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		ResultSet rs = null;
+		try {
+			stmt.setFetchSize(deleteChunkSize);
+			stmt.setMaxRows(deleteChunkSize);
+			stmt.setTimestamp(1, date, cal);
+			rs = stmt.executeQuery();
+			while ( rs.next() ) {
+				result = rs.getTimestamp(1, cal);
+			}
+		} finally {
+			if ( rs != null ) {
+				rs.close();
+			}
+			stmt.close();
+		}
+		return result;
+	}
+
 	/**
 	 * Set the operations to use for connecting to the database.
 	 * 
@@ -375,4 +564,95 @@ public class TimeBasedTableDiskSizeManager {
 		this.trimMinutes = trimMinutes;
 	}
 
+	/**
+	 * Set the time-based partitions of the managed table.
+	 * 
+	 * <p>
+	 * When configured and enabled, uploaded partitions, or as a last resort the
+	 * oldest partition, will be dropped once the managed table has no more
+	 * data to trim.
+	 * </p>
+	 * 
+	 * @param tablePartitions
+	 *        the table partitions
+	 * @since 1.1
+	 */
+	public void setTablePartitions(DatumTablePartitions tablePartitions) {
+		this.tablePartitions = tablePartitions;
+	}
+
+	/**
+	 * Set the maximum number of rows to delete per chunk.
+	 * 
+	 * <p>
+	 * Rows sharing the same date as the last row of a chunk are deleted with
+	 * that chunk, so a chunk can exceed this size slightly. Defaults to
+	 * {@literal 0}, which deletes all rows in a single statement.
+	 * </p>
+	 * 
+	 * @param deleteChunkSize
+	 *        the chunk size
+	 * @since 1.2
+	 */
+	public void setDeleteChunkSize(int deleteChunkSize) {
+		this.deleteChunkSize = deleteChunkSize;
+	}
+
+	/**
+	 * Set the time to pause between delete chunks.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_DELETE_CHUNK_PAUSE_MS}.
+	 * </p>
+	 * 
+	 * @param deleteChunkPauseMs
+	 *        the pause time, in milliseconds
+	 * @since 1.2
+	 */
+	public void setDeleteChunkPauseMs(long deleteChunkPauseMs) {
+		this.deleteChunkPauseMs = deleteChunkPauseMs;
+	}
+
+	/**
+	 * Set the service to downsample data with.
+	 * 
+	 * <p>
+	 * The downsampler must manage the same table as this service. Downsampling
+	 * is only performed if {@code downsampleMinutes} is also configured.
+	 * </p>
+	 * 
+	 * @param downsampler
+	 *        the downsampler to use, or {@literal null} to only delete data
+	 * @since 1.3
+	 */
+	public void setDownsampler(DatumDownsampler downsampler) {
+		this.downsampler = downsampler;
+	}
+
+	/**
+	 * Set the period of the aggregates to downsample data into.
+	 * 
+	 * <p>
+	 * Defaults to {@literal 0}, which disables downsampling so that the oldest
+	 * data is deleted instead.
+	 * </p>
+	 * 
+	 * @param downsampleMinutes
+	 *        the aggregate period, in minutes
+	 * @since 1.3
+	 */
+	public void setDownsampleMinutes(int downsampleMinutes) {
+		this.downsampleMinutes = downsampleMinutes;
+	}
+
+	/**
+	 * Get the metrics of trimmed data.
+	 * 
+	 * @return the metrics, never {@literal null}
+	 * @since 1.2
+	 */
+	public DeleteMetrics getDeleteMetrics() {
+		return deleteMetrics;
+	}
+
 }
@@ -0,0 +1,5 @@
+CREATE INDEX eniwareedge.sn_settings_tkey_idx
+ON eniwareedge.sn_settings (tkey, skey);
+
+UPDATE eniwareedge.sn_settings SET svalue = '6'
+WHERE skey = 'eniwareedge.sn_settings.version';
@@ -7,8 +7,11 @@ CREATE TABLE eniwareedge.sn_settings (
 	PRIMARY KEY (skey, tkey)
 );
 
+CREATE INDEX eniwareedge.sn_settings_tkey_idx
+ON eniwareedge.sn_settings (tkey, skey);
+
 INSERT INTO eniwareedge.sn_settings (skey, svalue) 
-VALUES ('eniwareedge.sn_settings.version', '5');
+VALUES ('eniwareedge.sn_settings.version', '6');
 
 INSERT INTO eniwareedge.sn_settings (skey, svalue) 
 VALUES ('eniwareedge.db.create.time', CAST(CURRENT_TIMESTAMP AS VARCHAR(255)));
@@ -0,0 +1,439 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao.jdbc.general;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.eniware.domain.GeneralEdgeDatumSamples;
+
+/**
+ * Compact binary encoding of {@link GeneralEdgeDatumSamples}.
+ *
+ * <p>
+ * The encoding starts with a format version byte, followed by the
+ * instantaneous, accumulating and status sample maps and then the tags. Each
+ * map is a count followed by key/value pairs, and the tags are a count
+ * followed by strings. Counts and lengths are unsigned variable-length
+ * integers. A key is either the 1-based index of a well-known property name in
+ * a built-in dictionary, or {@literal 0} followed by the name. A value is a
+ * type byte followed by the value in a type-specific form; integers use a
+ * zig-zag variable-length form so small values take one or two bytes. The
+ * number types of sample values are preserved. Map entries and tags are
+ * written in sorted order, so equal samples always encode to the same bytes
+ * no matter the iteration order of their collections.
+ * </p>
+ *
+ * <p>
+ * The dictionary is part of the stored format, so names may only ever be
+ * appended to it.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.23
+ */
+public final class BinarySamplesCodec {
+
+	/** The format version written by this codec. */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String[] DICTIONARY = { "watts", "wattHours", "wattHoursReverse", "voltage",
+			"current", "frequency", "powerFactor", "apparentPower", "reactivePower", "realPower",
+			"effectivePowerFactor", "phaseVoltage", "phase", "dcVoltage", "dcPower", "percent",
+			"availWattHours", "temp", "tempMax", "tempMin", "humidity", "dew", "atm", "visibility",
+			"sky", "wdir", "wspeed", "rain", "snow", "price", "priceLocationId", "priceSourceId",
+			"sunrise", "sunset", "moonrise", "moonset", "irradiance", "irradianceHours", "watts_a",
+			"watts_b", "watts_c", "current_a", "current_b", "current_c", "neutralCurrent", "voltage_a",
+			"voltage_b", "voltage_c", "voltage_ab", "voltage_bc", "voltage_ca", "powerFactor_a",
+			"powerFactor_b", "powerFactor_c", "apparentPower_a", "apparentPower_b", "apparentPower_c",
+			"reactivePower_a", "reactivePower_b", "reactivePower_c", "wattHours_a", "wattHours_b",
+			"wattHours_c", "wattHoursReverse_a", "wattHoursReverse_b", "wattHoursReverse_c" };
+
+	private static final Map<String, Integer> DICTIONARY_CODES;
+
+	static {
+		Map<String, Integer> m = new HashMap<String, Integer>(DICTIONARY.length * 2);
+		for ( int i = 0; i < DICTIONARY.length; i++ ) {
+			m.put(DICTIONARY[i], i + 1);
+		}
+		DICTIONARY_CODES = m;
+	}
+
+	private static final int TYPE_NULL = 0;
+	private static final int TYPE_INT = 1;
+	private static final int TYPE_LONG = 2;
+	private static final int TYPE_FLOAT = 3;
+	private static final int TYPE_DOUBLE = 4;
+	private static final int TYPE_DECIMAL = 5;
+	private static final int TYPE_BIG_INTEGER = 6;
+	private static final int TYPE_STRING = 7;
+	private static final int TYPE_TRUE = 8;
+	private static final int TYPE_FALSE = 9;
+
+	private byte[] buf = new byte[256];
+	private int len;
+	private byte[] data;
+	private int pos;
+
+	/**
+	 * Constructor.
+	 *
+	 * <p>
+	 * Instances reuse an internal buffer and are not thread safe.
+	 * </p>
+	 */
+	public BinarySamplesCodec() {
+		super();
+	}
+
+	/**
+	 * Encode samples.
+	 *
+	 * @param samples
+	 *        the samples to encode, or {@literal null} for no samples
+	 * @return the encoded samples
+	 */
+	public byte[] encode(GeneralEdgeDatumSamples samples) {
+		len = 0;
+		writeByte(FORMAT_VERSION);
+		if ( samples == null ) {
+			writeVarInt(0);
+			writeVarInt(0);
+			writeVarInt(0);
+			writeVarInt(0);
+		} else {
+			writeMap(samples.getInstantaneous());
+			writeMap(samples.getAccumulating());
+			writeMap(samples.getStatus());
+			Set<String> tags = samples.getTags();
+			writeVarInt(tags == null ? 0 : tags.size());
+			if ( tags != null ) {
+				for ( String tag : new TreeSet<String>(tags) ) {
+					writeString(tag);
+				}
+			}
+		}
+		byte[] result = new byte[len];
+		System.arraycopy(buf, 0, result, 0, len);
+		return result;
+	}
+
+	/**
+	 * Decode samples.
+	 *
+	 * @param data
+	 *        the encoded samples
+	 * @return the samples
+	 * @throws IllegalArgumentException
+	 *         if {@code data} is not valid
+	 */
+	public GeneralEdgeDatumSamples decode(byte[] data) {
+		this.data = data;
+		this.pos = 0;
+		try {
+			int version = readByte();
+			if ( version != FORMAT_VERSION ) {
+				throw new IllegalArgumentException("Unsupported sample format version " + version);
+			}
+			GeneralEdgeDatumSamples samples = new GeneralEdgeDatumSamples();
+			Map<String, Number> i = readNumberMap();
+			if ( i != null ) {
+				samples.setInstantaneous(i);
+			}
+			Map<String, Number> a = readNumberMap();
+			if ( a != null ) {
+				samples.setAccumulating(a);
+			}
+			Map<String, Object> s = readMap();
+			if ( s != null ) {
+				samples.setStatus(s);
+			}
+			int count = readVarInt();
+			if ( count > 0 ) {
+				Set<String> tags = new LinkedHashSet<String>(count * 2);
+				for ( int n = 0; n < count; n++ ) {
+					tags.add(readString());
+				}
+				samples.setTags(tags);
+			}
+			return samples;
+		} finally {
+			this.data = null;
+		}
+	}
+
+	private void ensure(int more) {
+		if ( len + more > buf.length ) {
+			byte[] b = new byte[Math.max(buf.length * 2, len + more)];
+			System.arraycopy(buf, 0, b, 0, len);
+			buf = b;
+		}
+	}
+
+	private void writeByte(int b) {
+		ensure(1);
+		buf[len++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] b) {
+		writeVarInt(b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, len, b.length);
+		len += b.length;
+	}
+
+	private void writeVarLong(long v) {
+		ensure(10);
+		while ( (v & ~0x7FL) != 0 ) {
+			buf[len++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[len++] = (byte) v;
+	}
+
+	private void writeVarInt(int v) {
+		writeVarLong(v & 0xFFFFFFFFL);
+	}
+
+	private void writeZigZag(long v) {
+		writeVarLong((v << 1) ^ (v >> 63));
+	}
+
+	private void writeFixedInt(int v) {
+		ensure(4);
+		for ( int shift = 24; shift >= 0; shift -= 8 ) {
+			buf[len++] = (byte) (v >>> shift);
+		}
+	}
+
+	private void writeFixedLong(long v) {
+		ensure(8);
+		for ( int shift = 56; shift >= 0; shift -= 8 ) {
+			buf[len++] = (byte) (v >>> shift);
+		}
+	}
+
+	private void writeString(String s) {
+		writeBytes(s.getBytes(UTF8));
+	}
+
+	private void writeKey(String key) {
+		Integer code = DICTIONARY_CODES.get(key);
+		if ( code != null ) {
+			writeVarInt(code.intValue());
+		} else {
+			writeVarInt(0);
+			writeString(key);
+		}
+	}
+
+	private void writeMap(Map<String, ?> map) {
+		writeVarInt(map == null ? 0 : map.size());
+		if ( map == null ) {
+			return;
+		}
+		for ( Map.Entry<String, ?> me : new TreeMap<String, Object>(map).entrySet() ) {
+			writeKey(me.getKey());
+			writeValue(me.getValue());
+		}
+	}
+
+	private void writeValue(Object v) {
+		if ( v == null ) {
+			writeByte(TYPE_NULL);
+		} else if ( v instanceof Integer || v instanceof Short || v instanceof Byte ) {
+			writeByte(TYPE_INT);
+			writeZigZag(((Number) v).intValue());
+		} else if ( v instanceof Long ) {
+			writeByte(TYPE_LONG);
+			writeZigZag(((Long) v).longValue());
+		} else if ( v instanceof Float ) {
+			writeByte(TYPE_FLOAT);
+			writeFixedInt(Float.floatToIntBits(((Float) v).floatValue()));
+		} else if ( v instanceof Double ) {
+			writeByte(TYPE_DOUBLE);
+			writeFixedLong(Double.doubleToLongBits(((Double) v).doubleValue()));
+		} else if ( v instanceof BigDecimal ) {
+			BigDecimal d = (BigDecimal) v;
+			writeByte(TYPE_DECIMAL);
+			writeZigZag(d.scale());
+			writeBytes(d.unscaledValue().toByteArray());
+		} else if ( v instanceof BigInteger ) {
+			writeByte(TYPE_BIG_INTEGER);
+			writeBytes(((BigInteger) v).toByteArray());
+		} else if ( v instanceof Number ) {
+			writeByte(TYPE_DOUBLE);
+			writeFixedLong(Double.doubleToLongBits(((Number) v).doubleValue()));
+		} else if ( v instanceof Boolean ) {
+			writeByte(((Boolean) v).booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+		} else {
+			writeByte(TYPE_STRING);
+			writeString(v.toString());
+		}
+	}
+
+	private int readByte() {
+		if ( pos >= data.length ) {
+			throw new IllegalArgumentException("Unexpected end of sample data");
+		}
+		return (data[pos++] & 0xFF);
+	}
+
+	private long readVarLong() {
+		long result = 0;
+		for ( int shift = 0; shift < 64; shift += 7 ) {
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable-length integer in sample data");
+	}
+
+	private int readVarInt() {
+		long v = readVarLong();
+		if ( v < 0 || v > Integer.MAX_VALUE ) {
+			throw new IllegalArgumentException("Invalid length " + v + " in sample data");
+		}
+		return (int) v;
+	}
+
+	private long readZigZag() {
+		long v = readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private int readFixedInt() {
+		int v = 0;
+		for ( int i = 0; i < 4; i++ ) {
+			v = (v << 8) | readByte();
+		}
+		return v;
+	}
+
+	private long readFixedLong() {
+		long v = 0;
+		for ( int i = 0; i < 8; i++ ) {
+			v = (v << 8) | readByte();
+		}
+		return v;
+	}
+
+	private int readLength() {
+		int n = readVarInt();
+		if ( n > data.length - pos ) {
+			throw new IllegalArgumentException("Unexpected end of sample data");
+		}
+		return n;
+	}
+
+	private byte[] readBytes() {
+		int n = readLength();
+		byte[] b = new byte[n];
+		System.arraycopy(data, pos, b, 0, n);
+		pos += n;
+		return b;
+	}
+
+	private String readString() {
+		int n = readLength();
+		String s = new String(data, pos, n, UTF8);
+		pos += n;
+		return s;
+	}
+
+	private String readKey() {
+		int code = readVarInt();
+		if ( code == 0 ) {
+			return readString();
+		}
+		if ( code > DICTIONARY.length ) {
+			throw new IllegalArgumentException("Unknown sample key code " + code);
+		}
+		return DICTIONARY[code - 1];
+	}
+
+	private Object readValue() {
+		int type = readByte();
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+
+			case TYPE_INT:
+				return Integer.valueOf((int) readZigZag());
+
+			case TYPE_LONG:
+				return Long.valueOf(readZigZag());
+
+			case TYPE_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(readFixedInt()));
+
+			case TYPE_DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(readFixedLong()));
+
+			case TYPE_DECIMAL: {
+				int scale = (int) readZigZag();
+				return new BigDecimal(new BigInteger(readBytes()), scale);
+			}
+
+			case TYPE_BIG_INTEGER:
+				return new BigInteger(readBytes());
+
+			case TYPE_STRING:
+				return readString();
+
+			case TYPE_TRUE:
+				return Boolean.TRUE;
+
+			case TYPE_FALSE:
+				return Boolean.FALSE;
+
+			default:
+				throw new IllegalArgumentException("Unknown sample value type " + type);
+		}
+	}
+
+	private Map<String, Object> readMap() {
+		int count = readVarInt();
+		if ( count < 1 ) {
+			return null;
+		}
+		Map<String, Object> m = new LinkedHashMap<String, Object>(count * 2);
+		for ( int n = 0; n < count; n++ ) {
+			String key = readKey();
+			m.put(key, readValue());
+		}
+		return m;
+	}
+
+	private Map<String, Number> readNumberMap() {
+		int count = readVarInt();
+		if ( count < 1 ) {
+			return null;
+		}
+		Map<String, Number> m = new LinkedHashMap<String, Number>(count * 2);
+		for ( int n = 0; n < count; n++ ) {
+			String key = readKey();
+			Object v = readValue();
+			if ( v instanceof Number ) {
+				m.put(key, (Number) v);
+			}
+		}
+		return m;
+	}
+
+}
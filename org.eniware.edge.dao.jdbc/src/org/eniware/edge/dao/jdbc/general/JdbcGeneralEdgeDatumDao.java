@@ -7,19 +7,37 @@
 package org.eniware.edge.dao.jdbc.general;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import org.eniware.domain.GeneralDatumSamples;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.eniware.domain.GeneralEdgeDatumSamples;
 import org.eniware.edge.domain.GeneralEdgeDatum;
 
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
+import org.eniware.edge.dao.RawJsonDatumDao;
 import org.eniware.edge.dao.jdbc.AbstractJdbcDatumDao;
+import org.eniware.edge.dao.jdbc.DatumDownsampler;
+import org.eniware.edge.dao.jdbc.DatumTablePartitions;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,12 +47,27 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * JDBC-based implementation of {@link org.eniware.edge.dao.DatumDao} for
  * {@link GeneralEdgeDatum} domain objects.
  * 
- * @version 1.1
+ * <p>
+ * Sample data is stored as JSON in the {@literal jdata} column by default. With
+ * the {@code sampleEncoding} set to {@link SampleEncoding#Binary} it is stored
+ * in the {@literal jdata_bin} column using {@link BinarySamplesCodec} instead.
+ * Rows stored with either encoding can be read back regardless of the
+ * configured encoding.
+ * </p>
+ * 
+ * <p>
+ * As a {@link RawJsonDatumDao}, the {@literal jdata} column of rows stored as
+ * JSON is passed on without being parsed. Rows stored in binary form are
+ * converted to JSON.
+ * </p>
+ * 
+ * @version 1.9
  */
-public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDatum> {
+public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDatum>
+		implements DatumDownsampler, RawJsonDatumDao<GeneralEdgeDatum> {
 
 	/** The default tables version. */
-	public static final int DEFAULT_TABLES_VERSION = 1;
+	public static final int DEFAULT_TABLES_VERSION = 4;
 
 	/** The table name for {@link PowerDatum} data. */
 	public static final String TABLE_GENERAL_Edge_DATUM = "sn_general_Edge_datum";
@@ -46,7 +79,54 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 	public static final String DEFAULT_SQL_GET_TABLES_VERSION = "SELECT svalue FROM eniwareedge.sn_settings WHERE skey = "
 			+ "'eniwareedge.sn_general_Edge_datum.version'";
 
+	/**
+	 * The suffix added to the names of the SQL resources that store sample
+	 * data, when using {@link SampleEncoding#Binary}.
+	 * 
+	 * @since 1.7
+	 */
+	public static final String SQL_RESOURCE_BINARY_SUFFIX = "-bin";
+
+	/**
+	 * A SQL resource that adds the binary sample data column to a partition
+	 * table created before tables version 4.
+	 * 
+	 * @since 1.7
+	 */
+	public static final String SQL_RESOURCE_PARTITION_UPDATE_4 = "partition-update-4";
+
+	/**
+	 * A SQL resource that finds the datum not uploaded within a date range,
+	 * ordered by source ID and date.
+	 * 
+	 * @since 1.8
+	 */
+	public static final String SQL_RESOURCE_FIND_DOWNSAMPLE = "find-downsample";
+
+	/**
+	 * A SQL resource that deletes all datum within a date range.
+	 * 
+	 * @since 1.8
+	 */
+	public static final String SQL_RESOURCE_DELETE_DOWNSAMPLE = "delete-downsample";
+
+	/**
+	 * The ways sample data can be stored.
+	 * 
+	 * @since 1.7
+	 */
+	public enum SampleEncoding {
+
+		/** JSON text in the {@literal jdata} column. */
+		Json,
+
+		/** {@link BinarySamplesCodec} data in the {@literal jdata_bin} column. */
+		Binary;
+
+	}
+
 	private ObjectMapper objectMapper;
+	private SampleEncoding sampleEncoding = SampleEncoding.Json;
 
 	/**
 	 * Default constructor.
@@ -60,52 +140,364 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 		setInitSqlResource(new ClassPathResource(DEFAULT_INIT_SQL, getClass()));
 	}
 
+	@Override
+	public void init() {
+		super.init();
+		if ( isPartitioned() ) {
+			addBinaryColumnToPartitions();
+		}
+	}
+
+	/**
+	 * Add the {@literal jdata_bin} column to partition tables created before
+	 * tables version 4; the base table is upgraded by the normal update
+	 * scripts.
+	 */
+	private void addBinaryColumnToPartitions() {
+		final DatumTablePartitions partitions = getTablePartitions();
+		final String sql = getSqlResource(SQL_RESOURCE_PARTITION_UPDATE_4);
+		getJdbcTemplate().execute(new ConnectionCallback<Object>() {
+
+			@Override
+			public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+				List<String> names = partitions.getTableNames();
+				List<String> tables = partitions.getTables();
+				for ( int i = 1; i < names.size(); i++ ) {
+					if ( columnExists(con, names.get(i), "jdata_bin") ) {
+						continue;
+					}
+					log.info("Adding binary sample data column to partition table {}", tables.get(i));
+					Statement stmt = con.createStatement();
+					try {
+						for ( String ddl : sql.split(";\\s*") ) {
+							if ( ddl.trim().length() > 0 ) {
+								stmt.execute(ddl.replace(DatumTablePartitions.TABLE_PLACEHOLDER,
+										tables.get(i)));
+							}
+						}
+					} finally {
+						stmt.close();
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	private boolean columnExists(Connection con, String table, String column) throws SQLException {
+		DatabaseMetaData meta = con.getMetaData();
+		ResultSet rs = meta.getColumns(null, null, table, null);
+		try {
+			while ( rs.next() ) {
+				if ( getSchemaName().equalsIgnoreCase(rs.getString(2))
+						&& column.equalsIgnoreCase(rs.getString(4)) ) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Get a SQL resource, using the binary sample data version of the
+	 * resources that store sample data when configured for
+	 * {@link SampleEncoding#Binary}.
+	 */
+	@Override
+	protected String getSqlResource(String classPathResource) {
+		if ( sampleEncoding == SampleEncoding.Binary && (SQL_RESOURCE_INSERT.equals(classPathResource)
+				|| SQL_RESOURCE_UPSERT.equals(classPathResource)
+				|| SQL_RESOURCE_UPDATE_DATA.equals(classPathResource)) ) {
+			return super.getSqlResource(classPathResource + SQL_RESOURCE_BINARY_SUFFIX);
+		}
+		return super.getSqlResource(classPathResource);
+	}
+
 	@Override
 	public Class<? extends GeneralEdgeDatum> getDatumType() {
 		return GeneralEdgeDatum.class;
 	}
 
+	/**
+	 * Store a datum.
+	 * 
+	 * <p>
+	 * This uses the {@link #SQL_RESOURCE_UPSERT} SQL to insert the datum, or
+	 * update an existing datum only when the hash of its sample data differs
+	 * from the stored hash, so re-collected unchanged datum cost a single
+	 * statement without any JSON parsing.
+	 * </p>
+	 */
 	@Override
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRED, noRollbackFor = DuplicateKeyException.class)
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void storeDatum(GeneralEdgeDatum datum) {
-		try {
-			storeDomainObject(datum);
-		} catch ( DuplicateKeyException e ) {
-			List<GeneralEdgeDatum> existing = findDatum(SQL_RESOURCE_FIND_FOR_PRIMARY_KEY,
-					preparedStatementSetterForPrimaryKey(datum.getCreated(), datum.getSourceId()),
-					rowMapper());
-			if ( existing.size() > 0 ) {
-				// only update if the samples have changed
-				GeneralDatumSamples existingSamples = existing.get(0).getSamples();
-				GeneralDatumSamples newSamples = datum.getSamples();
-				if ( !newSamples.equals(existingSamples) ) {
-					updateDomainObject(datum, getSqlResource(SQL_RESOURCE_UPDATE_DATA));
-				}
-			}
+		upsertDomainObject(datum);
+	}
+
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED, noRollbackFor = DuplicateKeyException.class)
+	public void storeDatums(Collection<GeneralEdgeDatum> datums) {
+		List<GeneralEdgeDatum> duplicates = storeDomainObjects(datums);
+		for ( GeneralEdgeDatum datum : duplicates ) {
+			upsertDomainObject(datum);
+		}
+	}
+
+	@Override
+	protected void setUpsertStatementValues(GeneralEdgeDatum datum, PreparedStatement ps)
+			throws SQLException {
+		// MERGE parameters: key, hash and JSON to compare, update values, insert values
+		final Timestamp created = new Timestamp(
+				datum.getCreated() == null ? System.currentTimeMillis() : datum.getCreated().getTime());
+		final String sourceId = (datum.getSourceId() == null ? "" : datum.getSourceId());
+		if ( sampleEncoding == SampleEncoding.Binary ) {
+			// MERGE parameters: key, hash to compare, update values, insert values
+			final byte[] data = binaryForSamples(datum);
+			final long hash = hashForBinary(data);
+			int col = 0;
+			ps.setTimestamp(++col, created);
+			ps.setString(++col, sourceId);
+			ps.setLong(++col, hash);
+			ps.setBytes(++col, data);
+			ps.setLong(++col, hash);
+			ps.setTimestamp(++col, created);
+			ps.setString(++col, sourceId);
+			ps.setBytes(++col, data);
+			ps.setLong(++col, hash);
+			return;
 		}
+		final String json = jsonForSamples(datum);
+		final long hash = hashForSamples(datum);
+		int col = 0;
+		ps.setTimestamp(++col, created);
+		ps.setString(++col, sourceId);
+		ps.setLong(++col, hash);
+		ps.setString(++col, json);
+		ps.setString(++col, json);
+		ps.setLong(++col, hash);
+		ps.setTimestamp(++col, created);
+		ps.setString(++col, sourceId);
+		ps.setString(++col, json);
+		ps.setLong(++col, hash);
 	}
 
 	@Override
 	protected void setUpdateStatementValues(GeneralEdgeDatum datum, PreparedStatement ps)
 			throws SQLException {
 		int col = 1;
-		ps.setString(col++, jsonForSamples(datum));
+		if ( sampleEncoding == SampleEncoding.Binary ) {
+			byte[] data = binaryForSamples(datum);
+			ps.setBytes(col++, data);
+			ps.setLong(col++, hashForBinary(data));
+		} else {
+			String json = jsonForSamples(datum);
+			ps.setString(col++, json);
+			ps.setLong(col++, hashForSamples(datum));
+		}
 		ps.setTimestamp(col++, new Timestamp(datum.getCreated().getTime()));
 		ps.setString(col++, datum.getSourceId());
 	}
 
 	@Override
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	public void setDatumUploaded(GeneralEdgeDatum datum, Date date, String destination, String trackingId) {
 		updateDatumUpload(datum, date == null ? System.currentTimeMillis() : date.getTime());
 	}
 
 	@Override
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	public void setDatumUploaded(Collection<GeneralEdgeDatum> datums, Date date, String destination) {
+		updateDatumUploads(datums, date == null ? System.currentTimeMillis() : date.getTime());
+	}
+
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.NOT_SUPPORTED)
 	public int deleteUploadedDataOlderThan(int hours) {
 		return deleteUploadedDataOlderThanHours(hours);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Each aggregate datum is dated at the start of its period and holds the
+	 * average of the instantaneous samples, the last value of the
+	 * accumulating and status samples, and all tags of the datum it replaces.
+	 * If partitioning is enabled only the base table is downsampled.
+	 * </p>
+	 * 
+	 * @since 1.8
+	 */
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int downsampleDatum(final Date from, final Date to, final int periodMinutes) {
+		final long periodMs = TimeUnit.MINUTES.toMillis(Math.max(1, periodMinutes));
+		final Timestamp fromDate = new Timestamp(from.getTime());
+		final Timestamp toDate = new Timestamp(to.getTime());
+		final String findSql = getSqlResource(SQL_RESOURCE_FIND_DOWNSAMPLE);
+		final String deleteSql = getSqlResource(SQL_RESOURCE_DELETE_DOWNSAMPLE);
+		final String insertSql = getSqlResource(SQL_RESOURCE_INSERT);
+		final RowMapper<GeneralEdgeDatum> mapper = rowMapper();
+		Integer result = getJdbcTemplate().execute(new ConnectionCallback<Integer>() {
+
+			@Override
+			public Integer doInConnection(Connection con) throws SQLException, DataAccessException {
+				final List<GeneralEdgeDatum> aggregates = new ArrayList<GeneralEdgeDatum>();
+				PreparedStatement ps = con.prepareStatement(findSql);
+				try {
+					ps.setTimestamp(1, fromDate);
+					ps.setTimestamp(2, toDate);
+					ResultSet rs = ps.executeQuery();
+					try {
+						DownsampleAggregate agg = null;
+						int row = 0;
+						while ( rs.next() ) {
+							GeneralEdgeDatum datum = mapper.mapRow(rs, ++row);
+							if ( datum.getSamples() == null ) {
+								continue;
+							}
+							long created = datum.getCreated().getTime();
+							long periodStart = Math.max(created - (created % periodMs), from.getTime());
+							if ( agg == null || !agg.isFor(datum.getSourceId(), periodStart) ) {
+								if ( agg != null ) {
+									aggregates.add(agg.getDatum());
+								}
+								agg = new DownsampleAggregate(datum.getSourceId(), periodStart);
+							}
+							agg.add(datum.getSamples());
+						}
+						if ( agg != null ) {
+							aggregates.add(agg.getDatum());
+						}
+					} finally {
+						rs.close();
+					}
+				} finally {
+					ps.close();
+				}
+
+				int deleted;
+				ps = con.prepareStatement(deleteSql);
+				try {
+					ps.setTimestamp(1, fromDate);
+					ps.setTimestamp(2, toDate);
+					deleted = ps.executeUpdate();
+				} finally {
+					ps.close();
+				}
+
+				if ( !aggregates.isEmpty() ) {
+					ps = con.prepareStatement(insertSql);
+					try {
+						for ( GeneralEdgeDatum datum : aggregates ) {
+							setStoreStatementValues(datum, ps);
+							ps.addBatch();
+						}
+						ps.executeBatch();
+					} finally {
+						ps.close();
+					}
+				}
+				log.debug("Downsampled {} datum between {} and {} into {} aggregates", deleted,
+						fromDate, toDate, aggregates.size());
+				return deleted - aggregates.size();
+			}
+		});
+		return (result != null ? result.intValue() : 0);
+	}
+
+	/**
+	 * The aggregate of the samples of one source within one period.
+	 */
+	private static final class DownsampleAggregate {
+
+		private final String sourceId;
+		private final long date;
+		private final Map<String, double[]> averages = new LinkedHashMap<String, double[]>(8);
+		private final Set<String> fractional = new LinkedHashSet<String>(8);
+		private final Map<String, Number> accumulating = new LinkedHashMap<String, Number>(8);
+		private final Map<String, Object> status = new LinkedHashMap<String, Object>(8);
+		private final Set<String> tags = new LinkedHashSet<String>(4);
+
+		private DownsampleAggregate(String sourceId, long date) {
+			super();
+			this.sourceId = sourceId;
+			this.date = date;
+		}
+
+		private boolean isFor(String sourceId, long date) {
+			return (this.date == date && this.sourceId.equals(sourceId));
+		}
+
+		private void add(GeneralEdgeDatumSamples samples) {
+			if ( samples.getInstantaneous() != null ) {
+				for ( Map.Entry<String, Number> me : samples.getInstantaneous().entrySet() ) {
+					Number n = me.getValue();
+					if ( n == null ) {
+						continue;
+					}
+					double[] avg = averages.get(me.getKey());
+					if ( avg == null ) {
+						avg = new double[2];
+						averages.put(me.getKey(), avg);
+					}
+					avg[0] += n.doubleValue();
+					avg[1] += 1;
+					if ( !(n instanceof Integer || n instanceof Long || n instanceof Short
+							|| n instanceof Byte) ) {
+						fractional.add(me.getKey());
+					}
+				}
+			}
+			if ( samples.getAccumulating() != null ) {
+				accumulating.putAll(samples.getAccumulating());
+			}
+			if ( samples.getStatus() != null ) {
+				status.putAll(samples.getStatus());
+			}
+			if ( samples.getTags() != null ) {
+				tags.addAll(samples.getTags());
+			}
+		}
+
+		private GeneralEdgeDatum getDatum() {
+			GeneralEdgeDatumSamples samples = new GeneralEdgeDatumSamples();
+			if ( !averages.isEmpty() ) {
+				Map<String, Number> instantaneous = new LinkedHashMap<String, Number>(
+						averages.size() * 2);
+				for ( Map.Entry<String, double[]> me : averages.entrySet() ) {
+					double avg = me.getValue()[0] / me.getValue()[1];
+					Number n;
+					if ( fractional.contains(me.getKey()) ) {
+						n = Double.valueOf(avg);
+					} else {
+						long l = Math.round(avg);
+						n = (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE
+								? (Number) Integer.valueOf((int) l) : (Number) Long.valueOf(l));
+					}
+					instantaneous.put(me.getKey(), n);
+				}
+				samples.setInstantaneous(instantaneous);
+			}
+			if ( !accumulating.isEmpty() ) {
+				samples.setAccumulating(accumulating);
+			}
+			if ( !status.isEmpty() ) {
+				samples.setStatus(status);
+			}
+			if ( !tags.isEmpty() ) {
+				samples.setTags(tags);
+			}
+			GeneralEdgeDatum datum = new GeneralEdgeDatum();
+			datum.setCreated(new Date(date));
+			datum.setSourceId(sourceId);
+			datum.setSamples(samples);
+			return datum;
+		}
+	}
+
 	private RowMapper<GeneralEdgeDatum> rowMapper() {
 		return new RowMapper<GeneralEdgeDatum>() {
 
@@ -120,7 +512,14 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 				datum.setSourceId(rs.getString(++col));
 
 				String jdata = rs.getString(++col);
-				if ( jdata != null ) {
+				byte[] jdataBin = rs.getBytes(++col);
+				if ( jdataBin != null ) {
+					try {
+						datum.setSamples(new BinarySamplesCodec().decode(jdataBin));
+					} catch ( IllegalArgumentException e ) {
+						log.error("Error decoding binary GeneralEdgeDatumSamples: {}", e.getMessage());
+					}
+				} else if ( jdata != null ) {
 					GeneralEdgeDatumSamples s;
 					try {
 						s = objectMapper.readValue(jdata, GeneralEdgeDatumSamples.class);
@@ -141,6 +540,60 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 		return findDatumNotUploaded(rowMapper());
 	}
 
+	@Override
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	public BatchResult batchProcessDatumNotUploaded(String destination,
+			BatchCallback<GeneralEdgeDatum> callback, BatchOptions options) {
+		return batchProcessDatumNotUploaded(rowMapper(), callback, options);
+	}
+
+	/**
+	 * Process the datum not uploaded, passing on their stored samples JSON.
+	 * 
+	 * @since 1.9
+	 */
+	@Override
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	public BatchResult batchProcessRawDatumNotUploaded(String destination,
+			final RawJsonCallback<GeneralEdgeDatum> callback, BatchOptions options) {
+		// each row is handed to the callback right after it is mapped
+		final String[] json = new String[1];
+		final RowMapper<GeneralEdgeDatum> mapper = new RowMapper<GeneralEdgeDatum>() {
+
+			@Override
+			public GeneralEdgeDatum mapRow(ResultSet rs, int rowNum) throws SQLException {
+				GeneralEdgeDatum datum = new GeneralEdgeDatum();
+				int col = 0;
+				datum.setCreated(rs.getTimestamp(++col));
+				datum.setSourceId(rs.getString(++col));
+
+				String jdata = rs.getString(++col);
+				if ( jdata == null ) {
+					byte[] jdataBin = rs.getBytes(++col);
+					if ( jdataBin != null ) {
+						try {
+							datum.setSamples(new BinarySamplesCodec().decode(jdataBin));
+						} catch ( IllegalArgumentException e ) {
+							log.error("Error decoding binary GeneralEdgeDatumSamples: {}",
+									e.getMessage());
+						}
+					}
+					jdata = jsonForSamples(datum);
+					datum.setSamples(null);
+				}
+				json[0] = jdata;
+				return datum;
+			}
+		};
+		return batchProcessDatumNotUploaded(mapper, new BatchCallback<GeneralEdgeDatum>() {
+
+			@Override
+			public BatchCallbackResult handle(GeneralEdgeDatum datum) {
+				return callback.handle(datum, json[0]);
+			}
+		}, options);
+	}
+
 	private String jsonForSamples(GeneralEdgeDatum datum) {
 		String json;
 		try {
@@ -161,8 +614,54 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 						.getCreated().getTime()));
 		ps.setString(++col, datum.getSourceId() == null ? "" : datum.getSourceId());
 
-		String json = jsonForSamples(datum);
-		ps.setString(++col, json);
+		if ( sampleEncoding == SampleEncoding.Binary ) {
+			byte[] data = binaryForSamples(datum);
+			ps.setBytes(++col, data);
+			ps.setLong(++col, hashForBinary(data));
+		} else {
+			String json = jsonForSamples(datum);
+			ps.setString(++col, json);
+			ps.setLong(++col, hashForSamples(datum));
+		}
+	}
+
+	private byte[] binaryForSamples(GeneralEdgeDatum datum) {
+		return new BinarySamplesCodec().encode(datum.getSamples());
+	}
+
+	/**
+	 * Compute a hash of the sample data of a datum.
+	 * 
+	 * <p>
+	 * The hash is stored alongside the sample data so changes can be detected
+	 * without having to parse the stored data. It is computed from the
+	 * {@link BinarySamplesCodec} encoding of the samples, whatever encoding
+	 * they are stored in, because that encoding does not depend on the order
+	 * of the sample maps, so equal samples always have the same hash.
+	 * </p>
+	 * 
+	 * @param datum
+	 *        the datum to hash the samples of
+	 * @return the hash
+	 */
+	private long hashForSamples(GeneralEdgeDatum datum) {
+		return hashForBinary(binaryForSamples(datum));
+	}
+
+	/**
+	 * Compute a 64-bit FNV-1a hash of binary sample data.
+	 * 
+	 * @param data
+	 *        the data to hash
+	 * @return the hash
+	 */
+	private static long hashForBinary(byte[] data) {
+		long hash = 0xcbf29ce484222325L;
+		for ( byte b : data ) {
+			hash ^= (b & 0xFF);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
 	}
 
 	public ObjectMapper getObjectMapper() {
@@ -173,4 +672,29 @@ public class JdbcGeneralEdgeDatumDao extends AbstractJdbcDatumDao<GeneralEdgeDat
 		this.objectMapper = objectMapper;
 	}
 
+	/**
+	 * Get the sample data encoding.
+	 * 
+	 * @return the encoding
+	 * @since 1.7
+	 */
+	public SampleEncoding getSampleEncoding() {
+		return sampleEncoding;
+	}
+
+	/**
+	 * Set the encoding to store sample data with.
+	 * 
+	 * <p>
+	 * Defaults to {@link SampleEncoding#Json}.
+	 * </p>
+	 * 
+	 * @param sampleEncoding
+	 *        the encoding to use
+	 * @since 1.7
+	 */
+	public void setSampleEncoding(SampleEncoding sampleEncoding) {
+		this.sampleEncoding = (sampleEncoding == null ? SampleEncoding.Json : sampleEncoding);
+	}
+
 }
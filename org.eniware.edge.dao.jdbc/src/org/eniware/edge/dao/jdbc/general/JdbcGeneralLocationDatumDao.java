@@ -7,18 +7,21 @@
 package org.eniware.edge.dao.jdbc.general;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
 import org.eniware.edge.dao.jdbc.AbstractJdbcDatumDao;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.dao.DuplicateKeyException;
-import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,12 +34,12 @@ import org.eniware.edge.domain.GeneralLocationDatum;
  * JDBC-based implementation of {@link org.eniware.edge.dao.DatumDao} for
  * {@link GeneralLocationDatum} domain objects.
  * 
- * @version 1.2
+ * @version 1.7
  */
 public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLocationDatum> {
 
 	/** The default tables version. */
-	public static final int DEFAULT_TABLES_VERSION = 1;
+	public static final int DEFAULT_TABLES_VERSION = 2;
 
 	/** The table name for {@link GeneralLocationDatum} data. */
 	public static final String TABLE_GENERAL_LOC_DATUM = "sn_general_loc_datum";
@@ -74,18 +77,32 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 		try {
 			storeDomainObject(datum);
 		} catch ( DuplicateKeyException e ) {
-			List<GeneralLocationDatum> existing = findDatum(SQL_RESOURCE_FIND_FOR_PRIMARY_KEY,
-					preparedStatementSetterForPrimaryKey(datum.getCreated(), datum.getSourceId()),
-					rowMapper());
-			if ( existing.size() > 0 ) {
-				// only update if the samples have changed
-				GeneralDatumSamples existingSamples = existing.get(0).getSamples();
-				GeneralDatumSamples newSamples = datum.getSamples();
-				if ( !newSamples.equals(existingSamples) ) {
-					updateDomainObject(datum, getSqlResource(SQL_RESOURCE_UPDATE_DATA));
-				} else {
-					log.debug("Datum unchanged; not persisted: {}", datum);
-				}
+			updateDuplicateDatum(datum);
+		}
+	}
+
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED, noRollbackFor = DuplicateKeyException.class)
+	public void storeDatums(Collection<GeneralLocationDatum> datums) {
+		List<GeneralLocationDatum> duplicates = storeDomainObjects(datums);
+		for ( GeneralLocationDatum datum : duplicates ) {
+			updateDuplicateDatum(datum);
+		}
+	}
+
+	private void updateDuplicateDatum(GeneralLocationDatum datum) {
+		List<GeneralLocationDatum> existing = findDatum(SQL_RESOURCE_FIND_FOR_PRIMARY_KEY,
+				preparedStatementSetterForPrimaryKey(datum.getCreated(), datum.getSourceId()),
+				rowMapper());
+		if ( existing.size() > 0 ) {
+			// only update if the samples have changed
+			GeneralDatumSamples existingSamples = existing.get(0).getSamples();
+			GeneralDatumSamples newSamples = datum.getSamples();
+			if ( !newSamples.equals(existingSamples) ) {
+				updateDomainObject(datum,
+						getSqlResource(SQL_RESOURCE_UPDATE_DATA, datum.getCreated(), false));
+			} else {
+				log.debug("Datum unchanged; not persisted: {}", datum);
 			}
 		}
 	}
@@ -100,28 +117,31 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 	}
 
 	@Override
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	public void setDatumUploaded(final GeneralLocationDatum datum, Date date, String destination,
 			String trackingId) {
-		final long timestamp = (date == null ? System.currentTimeMillis() : date.getTime());
-		getJdbcTemplate().update(new PreparedStatementCreator() {
+		updateDatumUploads(Collections.singletonList(datum),
+				date == null ? System.currentTimeMillis() : date.getTime());
+	}
 
-			@Override
-			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-				PreparedStatement ps = con
-						.prepareStatement(getSqlResource(SQL_RESOURCE_UPDATE_UPLOADED));
-				int col = 1;
-				ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
-				ps.setTimestamp(col++, new java.sql.Timestamp(datum.getCreated().getTime()));
-				ps.setObject(col++, datum.getLocationId());
-				ps.setObject(col++, datum.getSourceId());
-				return ps;
-			}
-		});
+	@Override
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	public void setDatumUploaded(Collection<GeneralLocationDatum> datums, Date date, String destination) {
+		updateDatumUploads(datums, date == null ? System.currentTimeMillis() : date.getTime());
+	}
+
+	@Override
+	protected void setUpdateUploadStatementValues(GeneralLocationDatum datum, long timestamp,
+			PreparedStatement ps) throws SQLException {
+		int col = 1;
+		ps.setTimestamp(col++, new java.sql.Timestamp(timestamp));
+		ps.setTimestamp(col++, new java.sql.Timestamp(datum.getCreated().getTime()));
+		ps.setObject(col++, datum.getLocationId());
+		ps.setObject(col++, datum.getSourceId());
 	}
 
 	@Override
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Transactional(readOnly = false, propagation = Propagation.NOT_SUPPORTED)
 	public int deleteUploadedDataOlderThan(int hours) {
 		return deleteUploadedDataOlderThanHours(hours);
 	}
@@ -162,6 +182,13 @@ public class JdbcGeneralLocationDatumDao extends AbstractJdbcDatumDao<GeneralLoc
 		return findDatumNotUploaded(rowMapper());
 	}
 
+	@Override
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	public BatchResult batchProcessDatumNotUploaded(String destination,
+			BatchCallback<GeneralLocationDatum> callback, BatchOptions options) {
+		return batchProcessDatumNotUploaded(rowMapper(), callback, options);
+	}
+
 	private String jsonForSamples(GeneralLocationDatum datum) {
 		String json;
 		try {
@@ -0,0 +1,2 @@
+DELETE FROM eniwareedge.sn_general_Edge_datum
+WHERE created >= ? AND created < ?
@@ -0,0 +1,5 @@
+ALTER TABLE eniwareedge.sn_general_Edge_datum
+ADD COLUMN jdata_hash BIGINT;
+
+UPDATE eniwareedge.sn_settings SET svalue = '2'
+WHERE skey = 'eniwareedge.sn_general_Edge_datum.version';
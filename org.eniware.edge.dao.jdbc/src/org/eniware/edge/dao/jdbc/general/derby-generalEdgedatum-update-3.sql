@@ -0,0 +1,5 @@
+CREATE INDEX eniwareedge.sn_general_Edge_datum_upload_idx
+ON eniwareedge.sn_general_Edge_datum (uploaded, created, source_id);
+
+UPDATE eniwareedge.sn_settings SET svalue = '3'
+WHERE skey = 'eniwareedge.sn_general_Edge_datum.version';
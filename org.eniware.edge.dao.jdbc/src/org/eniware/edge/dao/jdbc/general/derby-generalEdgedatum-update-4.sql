@@ -0,0 +1,8 @@
+ALTER TABLE eniwareedge.sn_general_Edge_datum
+ADD COLUMN jdata_bin BLOB(64K);
+
+ALTER TABLE eniwareedge.sn_general_Edge_datum
+ALTER COLUMN jdata NULL;
+
+UPDATE eniwareedge.sn_settings SET svalue = '4'
+WHERE skey = 'eniwareedge.sn_general_Edge_datum.version';
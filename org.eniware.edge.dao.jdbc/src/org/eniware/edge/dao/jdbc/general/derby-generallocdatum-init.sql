@@ -7,5 +7,8 @@ CREATE TABLE eniwareedge.sn_general_loc_datum (
 	PRIMARY KEY (created, source_id)
 );
 
+CREATE INDEX eniwareedge.sn_general_loc_datum_upload_idx
+ON eniwareedge.sn_general_loc_datum (uploaded, created, loc_id, source_id);
+
 INSERT INTO eniwareedge.sn_settings (skey, svalue) 
-VALUES ('eniwareedge.sn_general_loc_datum.version', '1');
+VALUES ('eniwareedge.sn_general_loc_datum.version', '2');
@@ -0,0 +1,5 @@
+CREATE INDEX eniwareedge.sn_general_loc_datum_upload_idx
+ON eniwareedge.sn_general_loc_datum (uploaded, created, loc_id, source_id);
+
+UPDATE eniwareedge.sn_settings SET svalue = '2'
+WHERE skey = 'eniwareedge.sn_general_loc_datum.version';
@@ -0,0 +1,8 @@
+SELECT 
+	created,
+	source_id,
+	jdata,
+	jdata_bin
+FROM eniwareedge.sn_general_Edge_datum
+WHERE created >= ? AND created < ? AND uploaded IS NULL
+ORDER BY source_id, created
@@ -1,7 +1,8 @@
 SELECT 
 	created,
 	source_id,
-	jdata
+	jdata,
+	jdata_bin
 FROM eniwareedge.sn_general_Edge_datum
 WHERE uploaded IS NULL
 ORDER BY created, source_id
@@ -0,0 +1,3 @@
+DELETE FROM eniwareedge.sn_general_loc_datum
+WHERE uploaded IS NOT NULL AND uploaded < ?
+	AND (uploaded < ? OR (uploaded = ? AND created <= ?))
@@ -0,0 +1,3 @@
+SELECT uploaded, created FROM eniwareedge.sn_general_loc_datum
+WHERE uploaded IS NOT NULL AND uploaded < ?
+ORDER BY uploaded, created
@@ -0,0 +1,11 @@
+CREATE TABLE {table} (
+	created			TIMESTAMP NOT NULL WITH DEFAULT CURRENT_TIMESTAMP,
+	loc_id			BIGINT NOT NULL,
+	source_id 		VARCHAR(32) NOT NULL,
+	uploaded		TIMESTAMP,
+	jdata			VARCHAR(512) NOT NULL,
+	PRIMARY KEY (created, source_id)
+);
+
+CREATE INDEX {table}_upload_idx
+ON {table} (uploaded, created, loc_id, source_id);
@@ -0,0 +1,15 @@
+CREATE TABLE eniwareedge.sn_general_Edge_datum (
+	created			TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	source_id 		VARCHAR(32) NOT NULL,
+	uploaded		TIMESTAMP,
+	jdata			VARCHAR(512),
+	jdata_hash		BIGINT,
+	jdata_bin		BLOB,
+	PRIMARY KEY (created, source_id)
+);
+
+CREATE INDEX eniwareedge.sn_general_Edge_datum_upload_idx
+ON eniwareedge.sn_general_Edge_datum (uploaded, created, source_id);
+
+INSERT INTO eniwareedge.sn_settings (skey, svalue) 
+VALUES ('eniwareedge.sn_general_Edge_datum.version', '4');
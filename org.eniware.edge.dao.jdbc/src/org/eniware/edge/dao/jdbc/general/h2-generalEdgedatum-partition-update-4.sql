@@ -0,0 +1,5 @@
+ALTER TABLE {table}
+ADD COLUMN jdata_bin BLOB;
+
+ALTER TABLE {table}
+ALTER COLUMN jdata SET NULL;
@@ -0,0 +1,8 @@
+ALTER TABLE eniwareedge.sn_general_Edge_datum
+ADD COLUMN jdata_bin BLOB;
+
+ALTER TABLE eniwareedge.sn_general_Edge_datum
+ALTER COLUMN jdata SET NULL;
+
+UPDATE eniwareedge.sn_settings SET svalue = '4'
+WHERE skey = 'eniwareedge.sn_general_Edge_datum.version';
@@ -0,0 +1,6 @@
+MERGE INTO eniwareedge.sn_general_Edge_datum d
+USING (VALUES (1)) s(x) ON d.created = ? AND d.source_id = ?
+WHEN MATCHED AND (d.jdata_hash <> ? OR (d.jdata_hash IS NULL AND d.jdata <> ?)) THEN 
+	UPDATE SET uploaded = NULL, jdata = ?, jdata_bin = NULL, jdata_hash = ?
+WHEN NOT MATCHED THEN 
+	INSERT (created, source_id, jdata, jdata_hash) VALUES (?,?,?,?)
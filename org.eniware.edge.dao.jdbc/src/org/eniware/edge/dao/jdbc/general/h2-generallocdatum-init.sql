@@ -0,0 +1,14 @@
+CREATE TABLE eniwareedge.sn_general_loc_datum (
+	created			TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	loc_id			BIGINT NOT NULL,
+	source_id 		VARCHAR(32) NOT NULL,
+	uploaded		TIMESTAMP,
+	jdata			VARCHAR(512) NOT NULL,
+	PRIMARY KEY (created, source_id)
+);
+
+CREATE INDEX eniwareedge.sn_general_loc_datum_upload_idx
+ON eniwareedge.sn_general_loc_datum (uploaded, created, loc_id, source_id);
+
+INSERT INTO eniwareedge.sn_settings (skey, svalue) 
+VALUES ('eniwareedge.sn_general_loc_datum.version', '2');
@@ -0,0 +1,3 @@
+INSERT INTO eniwareedge.sn_general_Edge_datum
+			(created, source_id, jdata_bin, jdata_hash)
+VALUES (?,?,?,?)
@@ -1,3 +1,3 @@
 INSERT INTO eniwareedge.sn_general_Edge_datum
-			(created, source_id, jdata)
-VALUES (?,?,?)
+			(created, source_id, jdata, jdata_hash)
+VALUES (?,?,?,?)
@@ -0,0 +1,12 @@
+CREATE TABLE {table} (
+	created			TIMESTAMP NOT NULL WITH DEFAULT CURRENT_TIMESTAMP,
+	source_id 		VARCHAR(32) NOT NULL,
+	uploaded		TIMESTAMP,
+	jdata			VARCHAR(512),
+	jdata_hash		BIGINT,
+	jdata_bin		BLOB(64K),
+	PRIMARY KEY (created, source_id)
+);
+
+CREATE INDEX {table}_upload_idx
+ON {table} (uploaded, created, source_id);
@@ -0,0 +1,5 @@
+ALTER TABLE {table}
+ADD COLUMN jdata_bin BLOB(64K);
+
+ALTER TABLE {table}
+ALTER COLUMN jdata NULL;
@@ -0,0 +1,3 @@
+UPDATE eniwareedge.sn_general_Edge_datum
+SET uploaded = NULL, jdata = NULL, jdata_bin = ?, jdata_hash = ? 
+WHERE created = ? AND source_id = ?
@@ -1,3 +1,3 @@
 UPDATE eniwareedge.sn_general_Edge_datum
-SET uploaded = NULL, jdata = ? 
+SET uploaded = NULL, jdata = ?, jdata_bin = NULL, jdata_hash = ? 
 WHERE created = ? AND source_id = ?
@@ -0,0 +1,6 @@
+MERGE INTO eniwareedge.sn_general_Edge_datum d
+USING SYSIBM.SYSDUMMY1 ON d.created = ? AND d.source_id = ?
+WHEN MATCHED AND (d.jdata_hash IS NULL OR d.jdata_hash <> ?) THEN 
+	UPDATE SET uploaded = NULL, jdata = NULL, jdata_bin = ?, jdata_hash = ?
+WHEN NOT MATCHED THEN 
+	INSERT (created, source_id, jdata_bin, jdata_hash) VALUES (?,?,?,?)
@@ -0,0 +1,17 @@
+CREATE TABLE eniwareedge.sn_settings (
+	skey	  VARCHAR(255) NOT NULL,
+	tkey	  VARCHAR(255) DEFAULT '' NOT NULL,
+	svalue	  VARCHAR(255) NOT NULL,
+	flags     INTEGER DEFAULT 0 NOT NULL,
+	modified  TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	PRIMARY KEY (skey, tkey)
+);
+
+CREATE INDEX eniwareedge.sn_settings_tkey_idx
+ON eniwareedge.sn_settings (tkey, skey);
+
+INSERT INTO eniwareedge.sn_settings (skey, svalue) 
+VALUES ('eniwareedge.sn_settings.version', '6');
+
+INSERT INTO eniwareedge.sn_settings (skey, svalue) 
+VALUES ('eniwareedge.db.create.time', CAST(CURRENT_TIMESTAMP AS VARCHAR(255)));
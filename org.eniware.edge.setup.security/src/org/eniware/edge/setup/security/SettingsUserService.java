@@ -29,13 +29,22 @@ import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
 import org.eniware.edge.dao.SettingDao;
 import org.eniware.edge.setup.UserProfile;
 import org.eniware.edge.setup.UserService;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
 /**
  * {@link UserDetailsService} that uses {@link SettingDao} for users and roles.
  * 
- * @version 1.0
+ * <p>
+ * The result of {@link #someUserExists()} is cached, and cleared when a
+ * {@link SettingDao#EVENT_TOPIC_SETTING_CHANGED} event for a user setting is
+ * handled, so this class should be registered as an {@link EventHandler} for
+ * that topic.
+ * </p>
+ * 
+ * @version 1.1
  */
-public class SettingsUserService implements UserService, UserDetailsService {
+public class SettingsUserService implements UserService, UserDetailsService, EventHandler {
 
 	public static final String SETTING_TYPE_USER = "eniwareedge.user";
 	public static final String SETTING_TYPE_ROLE = "eniwareedge.role";
@@ -45,6 +54,9 @@ public class SettingsUserService implements UserService, UserDetailsService {
 	private final IdentityService identityService;
 	private final PasswordEncoder passwordEncoder;
 
+	private volatile Boolean userExists;
+	private int userExistsGeneration;
+
 	/**
 	 * Constructor.
 	 * 
@@ -95,19 +107,52 @@ public class SettingsUserService implements UserService, UserDetailsService {
 
 	@Override
 	public boolean someUserExists() {
-		final AtomicBoolean result = new AtomicBoolean(false);
-		settingDao.batchProcess(new BatchCallback<Setting>() {
-
-			@Override
-			public BatchCallbackResult handle(Setting domainObject) {
-				if ( domainObject.getType().equals(SETTING_TYPE_USER) ) {
-					result.set(true);
-					return BatchCallbackResult.STOP;
+		Boolean result = userExists;
+		if ( result == null ) {
+			final int generation;
+			synchronized ( this ) {
+				generation = userExistsGeneration;
+			}
+			result = !settingDao.getSettingsForType(SETTING_TYPE_USER).isEmpty();
+			synchronized ( this ) {
+				// don't cache a result the settings may have changed since
+				if ( generation == userExistsGeneration ) {
+					userExists = result;
 				}
-				return BatchCallbackResult.CONTINUE;
 			}
-		}, new BasicBatchOptions("FindUser"));
-		return result.get();
+		}
+		return result;
+	}
+
+	/**
+	 * Clear the cached {@link #someUserExists()} result when user settings
+	 * change.
+	 * 
+	 * <p>
+	 * Events without a {@link SettingDao#SETTING_TYPE} property, such as those
+	 * posted for a group of changed settings, also clear the cached result.
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	@Override
+	public void handleEvent(Event event) {
+		if ( !SettingDao.EVENT_TOPIC_SETTING_CHANGED.equals(event.getTopic()) ) {
+			return;
+		}
+		Object type = event.getProperty(SettingDao.SETTING_TYPE);
+		if ( type == null || SETTING_TYPE_USER.equals(type) ) {
+			clearUserExists();
+		}
+	}
+
+	/**
+	 * Clear the cached {@link #someUserExists()} result, so that a query
+	 * already in progress does not cache its result either.
+	 */
+	private synchronized void clearUserExists() {
+		userExistsGeneration++;
+		userExists = null;
 	}
 
 	/**
@@ -161,6 +206,7 @@ public class SettingsUserService implements UserService, UserDetailsService {
 		}
 		settingDao.storeSetting(dbUser.getUsername(), SETTING_TYPE_USER, password);
 		settingDao.storeSetting(dbUser.getUsername(), SETTING_TYPE_ROLE, GRANTED_AUTH_USER);
+		clearUserExists();
 	}
 
 	@Override
@@ -200,6 +246,7 @@ public class SettingsUserService implements UserService, UserDetailsService {
 				return BatchCallbackResult.CONTINUE;
 			}
 		}, new BasicBatchOptions("UpdateUser", BasicBatchOptions.DEFAULT_BATCH_SIZE, true, null));
+		clearUserExists();
 		if ( !updatedUsername.get() ) {
 			// no username exists, treat as a legacy Edge whose password was "eniware"
 			UserProfile newProfile = new UserProfile();
@@ -233,6 +280,7 @@ public class SettingsUserService implements UserService, UserDetailsService {
 		}
 		settingDao.storeSetting(profile.getUsername(), SETTING_TYPE_USER, password);
 		settingDao.storeSetting(profile.getUsername(), SETTING_TYPE_ROLE, GRANTED_AUTH_USER);
+		clearUserExists();
 	}
 
 	/**
@@ -0,0 +1,85 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * API for posting local EniwareEdge data to a remote server in bulk, writing
+ * the datum directly into the request as they are read from storage.
+ *
+ * <p>
+ * Instead of a collection of datum, the caller provides a
+ * {@link DatumJsonWriter} that is asked to write the datum into the request
+ * body while the request is being sent, so the datum of an upload never need
+ * to be held in memory at once. Each datum is written as a JSON object of the
+ * form:
+ * </p>
+ *
+ * <pre>
+ * {"created":1234567890123,"sourceId":"S1","samples":{...}}
+ * </pre>
+ *
+ * <p>
+ * where {@code created} is the datum date as milliseconds since the epoch and
+ * {@code samples} is the datum's samples JSON object, as stored.
+ * </p>
+ *
+ * <p>
+ * HTTP based implementations can send the request with
+ * {@link org.eniware.edge.support.JsonHttpClientSupport#doStreamingJson(String, String, DatumJsonWriter)},
+ * which writes the enclosing array.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.24
+ */
+public interface StreamingBulkUploadService extends BulkUploadService {
+
+	/**
+	 * API for writing the datum of a streaming upload.
+	 */
+	interface DatumJsonWriter {
+
+		/**
+		 * Write the datum to upload.
+		 *
+		 * <p>
+		 * The generator is positioned within a JSON array; this method must
+		 * write one JSON object per datum, and nothing else.
+		 * </p>
+		 *
+		 * @param generator
+		 *        the generator to write to
+		 * @return the number of datum written
+		 * @throws IOException
+		 *         if any IO error occurs
+		 */
+		int writeDatum(JsonGenerator generator) throws IOException;
+
+	}
+
+	/**
+	 * Upload datum in bulk, streaming them into the request body.
+	 *
+	 * <p>
+	 * The returned list contains the tracking ID of each datum, in the order
+	 * the datum were written by {@code writer}. A {@literal null} element, or a
+	 * list shorter than the number of datum written, means the corresponding
+	 * datum were not accepted and should not be considered uploaded.
+	 * </p>
+	 *
+	 * @param writer
+	 *        the writer of the datum to upload
+	 * @return the tracking IDs, never {@literal null}
+	 */
+	List<String> uploadBulkDatumStream(DatumJsonWriter writer);
+
+}
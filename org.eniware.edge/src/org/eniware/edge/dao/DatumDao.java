@@ -6,15 +6,19 @@
 
 package org.eniware.edge.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
 import org.eniware.edge.domain.Datum;
 
 /**
  * Data Access Object (DAO) API for {@link Datum} objects.
  * 
- * @version 1.2
+ * @version 1.5
  * @param <T>
  *        the type of Datum this DAO supports
  */
@@ -52,6 +56,24 @@ public interface DatumDao<T extends Datum> {
 	 */
 	void storeDatum(T datum);
 
+	/**
+	 * Store (create or update) a collection of datum.
+	 * 
+	 * <p>
+	 * This is functionally equivalent to calling {@link #storeDatum(Datum)} for
+	 * each element of {@code datums}, but implementations are encouraged to
+	 * persist the entire collection as a single batch within a single
+	 * transaction. Datum that already exist must be handled in the same way
+	 * {@link #storeDatum(Datum)} handles them, without preventing the other
+	 * datum in the collection from being persisted.
+	 * </p>
+	 * 
+	 * @param datums
+	 *        the datum to persist
+	 * @since 1.3
+	 */
+	void storeDatums(Collection<T> datums);
+
 	/**
 	 * Get a List of Datum instances that have not been uploaded yet to a
 	 * specific destination.
@@ -68,6 +90,43 @@ public interface DatumDao<T extends Datum> {
 	 */
 	List<T> getDatumNotUploaded(String destination);
 
+	/**
+	 * Process all Datum instances that have not been uploaded yet to a specific
+	 * destination, one at a time.
+	 * 
+	 * <p>
+	 * Unlike {@link #getDatumNotUploaded(String)} this method does not limit
+	 * the number of datum processed, nor does it hold them all in memory.
+	 * Instead, datum are streamed in the same order
+	 * {@link #getDatumNotUploaded(String)} would return them from a
+	 * forward-only cursor and passed to {@code callback} as they are read. The
+	 * {@link BatchOptions#getBatchSize()} value is used as a fetch size hint.
+	 * Processing stops when the callback returns
+	 * {@link BatchableDao.BatchCallbackResult#STOP} or
+	 * {@link BatchableDao.BatchCallbackResult#UPDATE_STOP}; all other results
+	 * simply continue to the next datum.
+	 * </p>
+	 * 
+	 * <p>
+	 * The callback may call {@link #setDatumUploaded(Collection, Date, String)}
+	 * on this DAO to mark processed datum as uploaded while the batch is in
+	 * progress. Implementations must not hold a single transaction open for
+	 * the whole batch: datum marked as uploaded this way are committed right
+	 * away, and remain marked even if processing later fails.
+	 * </p>
+	 * 
+	 * @param destination
+	 *        the destination to check
+	 * @param callback
+	 *        the callback to handle each datum with
+	 * @param options
+	 *        the batch options
+	 * @return the batch result
+	 * @since 1.5
+	 */
+	BatchResult batchProcessDatumNotUploaded(String destination, BatchCallback<T> callback,
+			BatchOptions options);
+
 	/**
 	 * Persist a {@link DatumUpload} instance.
 	 * 
@@ -82,6 +141,26 @@ public interface DatumDao<T extends Datum> {
 	 */
 	void setDatumUploaded(T datum, Date date, String destination, String trackingId);
 
+	/**
+	 * Mark a collection of datum as uploaded.
+	 * 
+	 * <p>
+	 * This is functionally equivalent to calling
+	 * {@link #setDatumUploaded(Datum, Date, String, String)} for each element of
+	 * {@code datums}, but implementations are encouraged to update the entire
+	 * collection as a single batch within a single transaction.
+	 * </p>
+	 * 
+	 * @param datums
+	 *        the datum that have been uploaded successfully
+	 * @param date
+	 *        the date they were uploaded
+	 * @param destination
+	 *        the destination the datum were uploaded to
+	 * @since 1.4
+	 */
+	void setDatumUploaded(Collection<T> datums, Date date, String destination);
+
 	/**
 	 * Delete both Datum and DatumUpload objects that have been successfully
 	 * uploaded to at least one destination and are older than the specified
@@ -0,0 +1,69 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao;
+
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
+import org.eniware.edge.domain.Datum;
+
+/**
+ * Extension of {@link DatumDao} for DAOs that store datum samples as JSON and
+ * can provide that JSON without parsing it.
+ *
+ * @param <T>
+ *        the type of Datum this DAO supports
+ * @version 1.0
+ * @since 1.14
+ */
+public interface RawJsonDatumDao<T extends Datum> extends DatumDao<T> {
+
+	/**
+	 * Callback API for datum and their stored samples JSON.
+	 *
+	 * @param <T>
+	 *        the type of Datum
+	 */
+	interface RawJsonCallback<T> {
+
+		/**
+		 * Handle one datum.
+		 *
+		 * @param datum
+		 *        the datum, with its created date and source ID populated but
+		 *        not necessarily its samples; it can be passed to
+		 *        {@link DatumDao#setDatumUploaded(java.util.Collection, java.util.Date, String)}
+		 * @param samplesJson
+		 *        the datum's samples, as a JSON object
+		 * @return the callback result
+		 */
+		BatchCallbackResult handle(T datum, String samplesJson);
+
+	}
+
+	/**
+	 * Process the datum not uploaded to a destination, providing the stored
+	 * samples JSON of each.
+	 *
+	 * <p>
+	 * This behaves like
+	 * {@link DatumDao#batchProcessDatumNotUploaded(String, org.eniware.edge.dao.BatchableDao.BatchCallback, BatchOptions)},
+	 * except the samples are not parsed into the datum.
+	 * </p>
+	 *
+	 * @param destination
+	 *        the destination to process the datum not uploaded to
+	 * @param callback
+	 *        the callback to handle each datum
+	 * @param options
+	 *        the batch options
+	 * @return the batch result
+	 */
+	BatchResult batchProcessRawDatumNotUploaded(String destination, RawJsonCallback<T> callback,
+			BatchOptions options);
+
+}
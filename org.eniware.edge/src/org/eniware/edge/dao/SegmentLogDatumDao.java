@@ -0,0 +1,816 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.eniware.domain.GeneralEdgeDatumSamples;
+import org.eniware.edge.Constants;
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
+import org.eniware.edge.domain.GeneralEdgeDatum;
+import org.eniware.util.OptionalService;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link DatumDao} that appends {@link GeneralEdgeDatum} to memory-mapped,
+ * fixed-size segment files instead of a database.
+ *
+ * <p>
+ * Each stored datum is appended as a record to the current segment file; when
+ * a record does not fit, a new segment is started. A separate cursor file
+ * holds the position of the first record not yet uploaded.
+ * {@link #getDatumNotUploaded(String)} reads records starting at the cursor,
+ * and {@link #setDatumUploaded(GeneralEdgeDatum, Date, String, String)}
+ * advances the cursor past all records uploaded so far without gaps. Records
+ * uploaded out of order are remembered until the cursor reaches them, but
+ * only the cursor itself survives a restart, so those may be uploaded again.
+ * {@link #deleteUploadedDataOlderThan(int)} deletes whole segments that lie
+ * entirely before the cursor and were finished more than the given number of
+ * hours ago.
+ * </p>
+ *
+ * <p>
+ * Records carry a CRC so a record only partly written when the process
+ * stopped is ignored when the log is opened again. Datum are only appended,
+ * so storing a datum with the same date and source ID as an existing one
+ * does not replace it; both are uploaded.
+ * </p>
+ *
+ * <p>
+ * When {@code enabled} is {@literal false}, or the log cannot be opened, all
+ * calls are passed directly to the delegate DAO. When enabled, datum the
+ * delegate had not uploaded are still returned for upload first, until the
+ * delegate has none left, so no data is lost switching storage. The
+ * {@link #init()} method must be called to open the log, and
+ * {@link #shutdown()} to close it.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.13
+ */
+public class SegmentLogDatumDao implements DatumDao<GeneralEdgeDatum> {
+
+	/** The default value for the {@code segmentSize} property. */
+	public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+	/** The default value for the {@code maxFetchForUpload} property. */
+	public static final int DEFAULT_MAX_FETCH_FOR_UPLOAD = 240;
+
+	/** The name of the cursor file within the log directory. */
+	public static final String CURSOR_FILE_NAME = "cursor";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+	private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+	/** The record header: the payload length and the payload CRC. */
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	/** The size of the zero length that marks the end of a segment. */
+	private static final int RECORD_END_LENGTH = 4;
+
+	private final DatumDao<GeneralEdgeDatum> delegate;
+	private ObjectMapper objectMapper;
+	private OptionalService<EventAdmin> eventAdmin;
+	private boolean enabled = false;
+	private File directory = edgeHomeFile("var/datum-log");
+	private int segmentSize = DEFAULT_SEGMENT_SIZE;
+	private int maxFetchForUpload = DEFAULT_MAX_FETCH_FOR_UPLOAD;
+	private boolean syncWrites = false;
+
+	private final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+	private final Map<String, LinkedList<long[]>> positions = new HashMap<String, LinkedList<long[]>>();
+	private final TreeMap<Long, Long> uploadedAhead = new TreeMap<Long, Long>();
+	private boolean open;
+	private boolean delegateDrained;
+	private long writeSegment;
+	private int writeOffset;
+	private MappedByteBuffer writeBuffer;
+	private long readSegment = -1;
+	private ByteBuffer readBuffer;
+	private MappedByteBuffer cursorBuffer;
+	private long cursor;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *        the DAO to use when the log is not enabled
+	 */
+	public SegmentLogDatumDao(DatumDao<GeneralEdgeDatum> delegate) {
+		super();
+		if ( delegate == null ) {
+			throw new IllegalArgumentException("The delegate DatumDao must be provided");
+		}
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Open the log, if enabled.
+	 */
+	public synchronized void init() {
+		if ( !enabled || open ) {
+			return;
+		}
+		try {
+			openLog();
+			open = true;
+			log.info("Opened datum segment log {} with {} segments, cursor at {}:{}", directory,
+					segments.size(), segmentOf(cursor), offsetOf(cursor));
+		} catch ( IOException e ) {
+			log.error("Unable to open datum segment log {}; using {} instead", directory,
+					delegate.getClass().getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Write all changes to disk and close the log.
+	 */
+	public synchronized void shutdown() {
+		if ( !open ) {
+			return;
+		}
+		writeBuffer.force();
+		cursorBuffer.force();
+		open = false;
+		writeBuffer = null;
+		readBuffer = null;
+		readSegment = -1;
+		cursorBuffer = null;
+		segments.clear();
+		positions.clear();
+		uploadedAhead.clear();
+	}
+
+	private void openLog() throws IOException {
+		if ( !directory.isDirectory() && !directory.mkdirs() ) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+		segments.clear();
+		File[] files = directory.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				String name = f.getName();
+				if ( name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX) ) {
+					try {
+						segments.put(Long.valueOf(name.substring(SEGMENT_FILE_PREFIX.length(),
+								name.length() - SEGMENT_FILE_SUFFIX.length()), 16), f);
+					} catch ( NumberFormatException e ) {
+						log.warn("Ignoring unexpected file {} in datum segment log", f);
+					}
+				}
+			}
+		}
+		cursorBuffer = map(new File(directory, CURSOR_FILE_NAME), 8, true);
+		cursor = cursorBuffer.getLong(0);
+		if ( segments.isEmpty() ) {
+			writeSegment = segmentOf(cursor) + (offsetOf(cursor) > 0 ? 1 : 0);
+			writeBuffer = createSegment(writeSegment);
+			writeOffset = 0;
+		} else {
+			writeSegment = segments.lastKey();
+			writeBuffer = map(segments.get(writeSegment), 0, true);
+			int offset = 0;
+			byte[] payload;
+			while ( (payload = readPayload(writeBuffer, offset)) != null ) {
+				offset += RECORD_HEADER_LENGTH + payload.length;
+			}
+			writeOffset = offset;
+			// discard any partly written record
+			if ( writeOffset + RECORD_END_LENGTH <= writeBuffer.capacity() ) {
+				writeBuffer.putInt(writeOffset, 0);
+			}
+		}
+		long first = position(segments.firstKey(), 0);
+		if ( cursor < first ) {
+			setCursor(first);
+		}
+		readSegment = -1;
+		readBuffer = null;
+		positions.clear();
+		uploadedAhead.clear();
+		delegateDrained = false;
+	}
+
+	private static File edgeHomeFile(String path) {
+		String home = System.getProperty(Constants.SYSTEM_PROP_Edge_HOME);
+		return (home == null ? new File(path) : new File(home, path));
+	}
+
+	private static long position(long segment, int offset) {
+		return (segment << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	private static long segmentOf(long position) {
+		return (position >>> 32);
+	}
+
+	private static int offsetOf(long position) {
+		return (int) position;
+	}
+
+	private static MappedByteBuffer map(File file, int size, boolean writable) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			if ( writable && raf.length() < size ) {
+				raf.setLength(size);
+			}
+			return raf.getChannel().map(
+					writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0,
+					raf.length());
+		} finally {
+			raf.close();
+		}
+	}
+
+	private MappedByteBuffer createSegment(long segment) throws IOException {
+		File f = new File(directory,
+				String.format("%s%016x%s", SEGMENT_FILE_PREFIX, segment, SEGMENT_FILE_SUFFIX));
+		MappedByteBuffer buf = map(f, segmentSize, true);
+		segments.put(segment, f);
+		log.debug("Created datum segment {}", f);
+		return buf;
+	}
+
+	private void rollSegment() throws IOException {
+		writeBuffer.force();
+		File sealed = segments.get(writeSegment);
+		if ( sealed != null ) {
+			sealed.setLastModified(System.currentTimeMillis());
+		}
+		writeSegment++;
+		writeBuffer = createSegment(writeSegment);
+		writeOffset = 0;
+	}
+
+	private ByteBuffer segmentBuffer(long segment) throws IOException {
+		if ( segment == writeSegment ) {
+			return writeBuffer;
+		}
+		if ( segment != readSegment ) {
+			File f = segments.get(segment);
+			if ( f == null ) {
+				return null;
+			}
+			readBuffer = map(f, 0, false);
+			readSegment = segment;
+		}
+		return readBuffer;
+	}
+
+	/**
+	 * Read the payload of the record at a given offset.
+	 *
+	 * @return the payload, or {@literal null} if there is no complete record
+	 *         at {@code offset}
+	 */
+	private static byte[] readPayload(ByteBuffer buf, int offset) {
+		if ( offset < 0 || offset > buf.capacity() - RECORD_HEADER_LENGTH ) {
+			return null;
+		}
+		final int len = buf.getInt(offset);
+		if ( len < 1 || len > buf.capacity() - offset - RECORD_HEADER_LENGTH ) {
+			return null;
+		}
+		final int crc = buf.getInt(offset + 4);
+		byte[] payload = new byte[len];
+		ByteBuffer b = buf.duplicate();
+		b.position(offset + RECORD_HEADER_LENGTH);
+		b.get(payload);
+		CRC32 check = new CRC32();
+		check.update(payload);
+		return ((int) check.getValue() == crc ? payload : null);
+	}
+
+	private void append(GeneralEdgeDatum datum) throws IOException {
+		final byte[] payload = encode(datum);
+		final int len = RECORD_HEADER_LENGTH + payload.length;
+		if ( len + RECORD_END_LENGTH > segmentSize ) {
+			throw new IllegalArgumentException("Datum " + datum + " needs " + len
+					+ " bytes, more than the " + segmentSize + " byte segment size");
+		}
+		if ( writeOffset + len > writeBuffer.capacity() ) {
+			rollSegment();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer b = writeBuffer.duplicate();
+		b.position(writeOffset + 4);
+		b.putInt((int) crc.getValue());
+		b.put(payload);
+		if ( writeOffset + len + RECORD_END_LENGTH <= writeBuffer.capacity() ) {
+			b.putInt(0);
+		}
+		// write the length last, so a partly written record is never seen
+		writeBuffer.putInt(writeOffset, payload.length);
+		writeOffset += len;
+	}
+
+	private byte[] encode(GeneralEdgeDatum datum) throws IOException {
+		ByteArrayOutputStream byos = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(byos);
+		out.writeLong(datum.getCreated() == null ? System.currentTimeMillis()
+				: datum.getCreated().getTime());
+		out.writeUTF(datum.getSourceId() == null ? "" : datum.getSourceId());
+		out.write(objectMapper.writeValueAsBytes(datum.getSamples()));
+		out.flush();
+		return byos.toByteArray();
+	}
+
+	private GeneralEdgeDatum decode(byte[] payload) {
+		GeneralEdgeDatum datum = new GeneralEdgeDatum();
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			datum.setCreated(new Date(in.readLong()));
+			datum.setSourceId(in.readUTF());
+			int jsonLength = in.available();
+			datum.setSamples(objectMapper.readValue(payload, payload.length - jsonLength, jsonLength,
+					GeneralEdgeDatumSamples.class));
+		} catch ( IOException e ) {
+			log.error("Error decoding datum segment log record: {}", e.getMessage());
+			return null;
+		}
+		return datum;
+	}
+
+	private static String key(GeneralEdgeDatum datum) {
+		return (datum.getCreated() == null ? "" : String.valueOf(datum.getCreated().getTime())) + ';'
+				+ datum.getSourceId();
+	}
+
+	private interface RecordHandler {
+
+		boolean handle(GeneralEdgeDatum datum);
+
+	}
+
+	/**
+	 * Read the records not uploaded yet, starting from a given position.
+	 *
+	 * <p>
+	 * The position of each record read is remembered so it can later be
+	 * marked as uploaded.
+	 * </p>
+	 *
+	 * @param pos
+	 *        the position to start reading from
+	 * @param max
+	 *        the maximum number of datum to read, or {@literal 0} for all
+	 * @param handler
+	 *        the handler, which returns {@literal false} to stop reading
+	 * @return the position following the last record read
+	 */
+	private long readNotUploaded(long pos, int max, RecordHandler handler) throws IOException {
+		int count = 0;
+		while ( max < 1 || count < max ) {
+			final long segment = segmentOf(pos);
+			ByteBuffer buf = segmentBuffer(segment);
+			if ( buf == null ) {
+				break;
+			}
+			byte[] payload = readPayload(buf, offsetOf(pos));
+			if ( payload == null ) {
+				Long next = segments.higherKey(segment);
+				if ( next == null ) {
+					break;
+				}
+				pos = position(next, 0);
+				continue;
+			}
+			final long start = pos;
+			pos += RECORD_HEADER_LENGTH + payload.length;
+			if ( uploadedAhead.containsKey(start) ) {
+				continue;
+			}
+			GeneralEdgeDatum datum = decode(payload);
+			if ( datum == null ) {
+				// skip it for good, so it does not hold back the cursor
+				markUploaded(start, pos);
+				continue;
+			}
+			count++;
+			String key = key(datum);
+			LinkedList<long[]> list = positions.get(key);
+			if ( list == null ) {
+				list = new LinkedList<long[]>();
+				positions.put(key, list);
+			}
+			list.add(new long[] { start, pos });
+			if ( !handler.handle(datum) ) {
+				break;
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Get the position of the first record at or after a given position.
+	 */
+	private long nextRecordPosition(long pos) throws IOException {
+		while ( true ) {
+			final long segment = segmentOf(pos);
+			ByteBuffer buf = segmentBuffer(segment);
+			if ( buf == null || readPayload(buf, offsetOf(pos)) != null ) {
+				return pos;
+			}
+			Long next = segments.higherKey(segment);
+			if ( next == null ) {
+				return pos;
+			}
+			pos = position(next, 0);
+		}
+	}
+
+	private void markUploaded(long start, long next) throws IOException {
+		long c = nextRecordPosition(cursor);
+		if ( start != c ) {
+			uploadedAhead.put(start, next);
+			return;
+		}
+		c = next;
+		while ( !uploadedAhead.isEmpty() ) {
+			c = nextRecordPosition(c);
+			Long ahead = uploadedAhead.remove(c);
+			if ( ahead == null ) {
+				break;
+			}
+			c = ahead;
+		}
+		// anything left behind the cursor can no longer be reached
+		uploadedAhead.headMap(c).clear();
+		setCursor(c);
+	}
+
+	private void setCursor(long pos) {
+		cursor = pos;
+		cursorBuffer.putLong(0, pos);
+		if ( syncWrites ) {
+			cursorBuffer.force();
+		}
+	}
+
+	private void postDatumStoredEvent(GeneralEdgeDatum datum) {
+		EventAdmin ea = (eventAdmin == null ? null : eventAdmin.service());
+		if ( ea == null ) {
+			return;
+		}
+		ea.postEvent(new Event(EVENT_TOPIC_DATUM_STORED, datum.asSimpleMap()));
+	}
+
+	@Override
+	public Class<? extends GeneralEdgeDatum> getDatumType() {
+		return GeneralEdgeDatum.class;
+	}
+
+	@Override
+	public void storeDatum(GeneralEdgeDatum datum) {
+		if ( datum == null ) {
+			return;
+		}
+		List<GeneralEdgeDatum> list = new ArrayList<GeneralEdgeDatum>(1);
+		list.add(datum);
+		storeDatums(list);
+	}
+
+	@Override
+	public void storeDatums(Collection<GeneralEdgeDatum> datums) {
+		if ( datums == null ) {
+			return;
+		}
+		synchronized ( this ) {
+			if ( !open ) {
+				delegate.storeDatums(datums);
+				return;
+			}
+			try {
+				for ( GeneralEdgeDatum datum : datums ) {
+					append(datum);
+				}
+			} catch ( IOException e ) {
+				throw new RuntimeException("Error appending to datum segment log " + directory, e);
+			} finally {
+				if ( syncWrites ) {
+					writeBuffer.force();
+				}
+			}
+		}
+		for ( GeneralEdgeDatum datum : datums ) {
+			postDatumStoredEvent(datum);
+		}
+	}
+
+	@Override
+	public synchronized List<GeneralEdgeDatum> getDatumNotUploaded(String destination) {
+		if ( !open ) {
+			return delegate.getDatumNotUploaded(destination);
+		}
+		if ( !delegateDrained ) {
+			List<GeneralEdgeDatum> result = delegate.getDatumNotUploaded(destination);
+			if ( result != null && !result.isEmpty() ) {
+				return result;
+			}
+			delegateDrained = true;
+		}
+		final List<GeneralEdgeDatum> result = new ArrayList<GeneralEdgeDatum>(maxFetchForUpload);
+		try {
+			positions.clear();
+			readNotUploaded(cursor, maxFetchForUpload, new RecordHandler() {
+
+				@Override
+				public boolean handle(GeneralEdgeDatum datum) {
+					result.add(datum);
+					return true;
+				}
+			});
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error reading datum segment log " + directory, e);
+		}
+		return result;
+	}
+
+	/**
+	 * Process the datum not uploaded.
+	 *
+	 * <p>
+	 * Records are copied out of the log in chunks of up to
+	 * {@link BatchOptions#getBatchSize()} datum (or {@code maxFetchForUpload}
+	 * if not positive) while holding this DAO's lock, and then passed to
+	 * {@code callback} after the lock is released, so datum can be stored
+	 * while they are being uploaded.
+	 * </p>
+	 */
+	@Override
+	public BatchResult batchProcessDatumNotUploaded(String destination,
+			final BatchCallback<GeneralEdgeDatum> callback, BatchOptions options) {
+		final boolean useLog;
+		final boolean drained;
+		synchronized ( this ) {
+			useLog = open;
+			drained = delegateDrained;
+		}
+		if ( !useLog ) {
+			return delegate.batchProcessDatumNotUploaded(destination, callback, options);
+		}
+		if ( !drained ) {
+			BatchResult result = delegate.batchProcessDatumNotUploaded(destination, callback, options);
+			if ( result != null && result.numProcessed() > 0 ) {
+				return result;
+			}
+			synchronized ( this ) {
+				delegateDrained = true;
+			}
+		}
+		final int batchSize = (options != null && options.getBatchSize() > 0 ? options.getBatchSize()
+				: maxFetchForUpload);
+		final List<GeneralEdgeDatum> batch = new ArrayList<GeneralEdgeDatum>(batchSize);
+		final RecordHandler handler = new RecordHandler() {
+
+			@Override
+			public boolean handle(GeneralEdgeDatum datum) {
+				batch.add(datum);
+				return true;
+			}
+		};
+		int count = 0;
+		long pos;
+		synchronized ( this ) {
+			positions.clear();
+			pos = cursor;
+		}
+		boolean stop = false;
+		while ( !stop ) {
+			batch.clear();
+			synchronized ( this ) {
+				if ( !open ) {
+					break;
+				}
+				try {
+					pos = readNotUploaded(pos, batchSize, handler);
+				} catch ( IOException e ) {
+					throw new RuntimeException("Error reading datum segment log " + directory, e);
+				}
+			}
+			if ( batch.isEmpty() ) {
+				break;
+			}
+			for ( GeneralEdgeDatum datum : batch ) {
+				count++;
+				BatchCallbackResult result = callback.handle(datum);
+				if ( result == BatchCallbackResult.STOP
+						|| result == BatchCallbackResult.UPDATE_STOP ) {
+					stop = true;
+					break;
+				}
+			}
+		}
+		log.debug("Processed {} datum not uploaded from segment log", count);
+		return new BasicBatchResult(count);
+	}
+
+	@Override
+	public synchronized void setDatumUploaded(GeneralEdgeDatum datum, Date date, String destination,
+			String trackingId) {
+		if ( !open ) {
+			delegate.setDatumUploaded(datum, date, destination, trackingId);
+			return;
+		}
+		LinkedList<long[]> list = positions.get(key(datum));
+		long[] pos = (list == null ? null : list.poll());
+		if ( pos == null ) {
+			if ( !delegateDrained ) {
+				delegate.setDatumUploaded(datum, date, destination, trackingId);
+			} else {
+				log.debug("Datum {} not found in segment log; ignoring upload", datum);
+			}
+			return;
+		}
+		try {
+			markUploaded(pos[0], pos[1]);
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error updating datum segment log cursor " + directory, e);
+		}
+	}
+
+	@Override
+	public synchronized void setDatumUploaded(Collection<GeneralEdgeDatum> datums, Date date,
+			String destination) {
+		if ( !open ) {
+			delegate.setDatumUploaded(datums, date, destination);
+			return;
+		}
+		if ( datums == null ) {
+			return;
+		}
+		for ( GeneralEdgeDatum datum : datums ) {
+			setDatumUploaded(datum, date, destination, null);
+		}
+	}
+
+	@Override
+	public synchronized int deleteUploadedDataOlderThan(int hours) {
+		int result = delegate.deleteUploadedDataOlderThan(hours);
+		if ( !open ) {
+			return result;
+		}
+		final long cutoff = System.currentTimeMillis() - (hours * 60L * 60L * 1000L);
+		try {
+			final long cursorSegment = segmentOf(nextRecordPosition(cursor));
+			List<Long> uploaded = new ArrayList<Long>(segments.headMap(cursorSegment).keySet());
+			for ( Long segment : uploaded ) {
+				File f = segments.get(segment);
+				if ( f.lastModified() >= cutoff ) {
+					continue;
+				}
+				int count = 0;
+				ByteBuffer buf = segmentBuffer(segment);
+				int offset = 0;
+				byte[] payload;
+				while ( (payload = readPayload(buf, offset)) != null ) {
+					offset += RECORD_HEADER_LENGTH + payload.length;
+					count++;
+				}
+				readSegment = -1;
+				readBuffer = null;
+				if ( f.delete() ) {
+					segments.remove(segment);
+					result += count;
+					log.debug("Deleted datum segment {} with {} uploaded datum", f, count);
+				} else {
+					log.warn("Unable to delete uploaded datum segment {}", f);
+				}
+			}
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error deleting from datum segment log " + directory, e);
+		}
+		return result;
+	}
+
+	/**
+	 * Set the enabled flag.
+	 *
+	 * <p>
+	 * When disabled, all calls are passed directly to the delegate. Must be
+	 * configured before {@link #init()} is called. Defaults to
+	 * {@literal false}.
+	 * </p>
+	 *
+	 * @param enabled
+	 *        {@literal true} to store datum in the segment log
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Set the directory to store the segment and cursor files in.
+	 *
+	 * <p>
+	 * A relative directory is resolved against the
+	 * {@link org.eniware.edge.Constants#SYSTEM_PROP_Edge_HOME} directory. Must
+	 * be configured before {@link #init()} is called. Defaults to
+	 * {@literal var/datum-log}.
+	 * </p>
+	 *
+	 * @param directory
+	 *        the directory
+	 */
+	public void setDirectory(File directory) {
+		this.directory = (directory.isAbsolute() ? directory : edgeHomeFile(directory.getPath()));
+	}
+
+	/**
+	 * Set the size of new segment files.
+	 *
+	 * <p>
+	 * Existing segments keep their size. Defaults to
+	 * {@link #DEFAULT_SEGMENT_SIZE}.
+	 * </p>
+	 *
+	 * @param segmentSize
+	 *        the segment size, in bytes
+	 */
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set the maximum number of datum returned by
+	 * {@link #getDatumNotUploaded(String)}.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_FETCH_FOR_UPLOAD}.
+	 * </p>
+	 *
+	 * @param maxFetchForUpload
+	 *        the maximum number of datum
+	 */
+	public void setMaxFetchForUpload(int maxFetchForUpload) {
+		this.maxFetchForUpload = maxFetchForUpload;
+	}
+
+	/**
+	 * Set the flag to force writes to disk after every change.
+	 *
+	 * <p>
+	 * Without this, the operating system decides when changes are written,
+	 * which survives the process stopping but not a power loss. Defaults to
+	 * {@literal false}.
+	 * </p>
+	 *
+	 * @param syncWrites
+	 *        {@literal true} to force writes to disk
+	 */
+	public void setSyncWrites(boolean syncWrites) {
+		this.syncWrites = syncWrites;
+	}
+
+	/**
+	 * Set the object mapper to serialize datum samples with.
+	 *
+	 * @param objectMapper
+	 *        the object mapper
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Set the {@link EventAdmin} service to post datum stored events with.
+	 *
+	 * @param eventAdmin
+	 *        the event admin
+	 */
+	public void setEventAdmin(OptionalService<EventAdmin> eventAdmin) {
+		this.eventAdmin = eventAdmin;
+	}
+
+}
@@ -6,6 +6,7 @@
 
 package org.eniware.edge.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -26,7 +27,7 @@ import org.eniware.edge.support.KeyValuePair;
  * and namespace to prevent key collisions across different packages.
  * </p>
  * 
- * @version 1.2
+ * @version 1.4
  */
 public interface SettingDao extends BatchableDao<Setting> {
 
@@ -34,6 +35,14 @@ public interface SettingDao extends BatchableDao<Setting> {
 	 * Event topic for when a non-volatile setting has been changed, by either
 	 * adding new, updating an existing, or deleting. The various
 	 * {@code SETTING_*} properties will be provided as event properties.
+	 * 
+	 * <p>
+	 * When a set of settings is stored via {@link #storeSettings(Collection)}
+	 * a single event may be posted for all of them, with only the
+	 * {@link #SETTING_COUNT} property provided. Listeners that filter on the
+	 * setting key or type must treat such an event as a change to any
+	 * setting.
+	 * </p>
 	 */
 	String EVENT_TOPIC_SETTING_CHANGED = "net/eniwarenetwork/Edge/dao/SETTING_CHANGED";
 
@@ -46,6 +55,16 @@ public interface SettingDao extends BatchableDao<Setting> {
 	/** Event property key for the setting value. */
 	String SETTING_VALUE = "Value";
 
+	/**
+	 * Event property key for the number of settings changed, when a single
+	 * event is posted for a set of changed settings. In that case the
+	 * {@link #SETTING_KEY}, {@link #SETTING_TYPE}, and {@link #SETTING_VALUE}
+	 * properties are not provided.
+	 * 
+	 * @since 1.3
+	 */
+	String SETTING_COUNT = "Count";
+
 	/**
 	 * Persist a new key/value pair, or update an existing key.
 	 * 
@@ -80,6 +99,25 @@ public interface SettingDao extends BatchableDao<Setting> {
 	 */
 	void storeSetting(Setting setting);
 
+	/**
+	 * Persist a collection of Setting objects, adding new settings and
+	 * updating existing ones.
+	 * 
+	 * <p>
+	 * This is functionally equivalent to calling {@link #storeSetting(Setting)}
+	 * for each element of {@code settings}, but implementations are
+	 * encouraged to persist the entire collection within a single transaction
+	 * and post a single {@link #EVENT_TOPIC_SETTING_CHANGED} event with a
+	 * {@link #SETTING_COUNT} property when more than one setting changed.
+	 * </p>
+	 * 
+	 * @param settings
+	 *        the settings to persist
+	 * @return the number of settings added or updated
+	 * @since 1.3
+	 */
+	int storeSettings(Collection<Setting> settings);
+
 	/**
 	 * Get a Setting object for a given setting key+type.
 	 * 
@@ -110,6 +148,16 @@ public interface SettingDao extends BatchableDao<Setting> {
 	 */
 	List<KeyValuePair> getSettings(String key);
 
+	/**
+	 * Get all settings for a specific type.
+	 * 
+	 * @param type
+	 *        the type to get the settings for
+	 * @return the settings, ordered by key; never <em>null</em>
+	 * @since 1.4
+	 */
+	List<Setting> getSettingsForType(String type);
+
 	/**
 	 * Get the value for a key+type.
 	 * 
@@ -0,0 +1,393 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchResult;
+import org.eniware.edge.domain.Datum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DatumDao} that buffers stored datum in memory and writes them to a
+ * delegate {@link DatumDao} in groups on a dedicated writer thread.
+ *
+ * <p>
+ * Calls to {@link #storeDatum(Datum)} and {@link #storeDatums(Collection)}
+ * only add datum to a bounded queue, so callers are not blocked by the
+ * latency of the underlying storage. The writer thread passes queued datum to
+ * {@link DatumDao#storeDatums(Collection)} once {@code flushSize} datum are
+ * queued or {@code flushDelayMs} has passed since the first datum of a group
+ * was queued. When the queue is full, callers wait up to
+ * {@code offerTimeoutMs} for space, and then store the datum directly on the
+ * delegate, so the slower storage throttles producers instead of losing data.
+ * All other methods are passed directly to the delegate; note that datum still
+ * in the queue are not returned by queries such as
+ * {@link #getDatumNotUploaded(String)}.
+ * </p>
+ *
+ * <p>
+ * When {@code enabled} is {@literal false} no writer thread is started and all
+ * calls are passed directly to the delegate. The {@link #init()} method must be
+ * called to start the writer thread, and {@link #shutdown()} to write all
+ * queued datum and stop it.
+ * </p>
+ *
+ * @param <T>
+ *        the type of Datum this DAO supports
+ * @version 1.0
+ * @since 1.10
+ */
+public class WriteBehindDatumDao<T extends Datum> implements DatumDao<T> {
+
+	/** The default value for the {@code queueCapacity} property. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/** The default value for the {@code flushSize} property. */
+	public static final int DEFAULT_FLUSH_SIZE = 50;
+
+	/** The default value for the {@code flushDelayMs} property. */
+	public static final long DEFAULT_FLUSH_DELAY_MS = 2000L;
+
+	/** The default value for the {@code offerTimeoutMs} property. */
+	public static final long DEFAULT_OFFER_TIMEOUT_MS = 5000L;
+
+	/** The default value for the {@code shutdownTimeoutMs} property. */
+	public static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 30000L;
+
+	private final DatumDao<T> delegate;
+	private boolean enabled = false;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int flushSize = DEFAULT_FLUSH_SIZE;
+	private long flushDelayMs = DEFAULT_FLUSH_DELAY_MS;
+	private long offerTimeoutMs = DEFAULT_OFFER_TIMEOUT_MS;
+	private long shutdownTimeoutMs = DEFAULT_SHUTDOWN_TIMEOUT_MS;
+
+	private BlockingQueue<T> queue;
+	private Thread writer;
+	private volatile boolean running;
+
+	// held for reading while queuing, so shutdown cannot miss a queued datum
+	private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *        the DAO to write datum to
+	 */
+	public WriteBehindDatumDao(DatumDao<T> delegate) {
+		super();
+		if ( delegate == null ) {
+			throw new IllegalArgumentException("The delegate DatumDao must be provided");
+		}
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Start the writer thread, if enabled.
+	 */
+	public synchronized void init() {
+		if ( !enabled || writer != null ) {
+			return;
+		}
+		queue = new ArrayBlockingQueue<T>(queueCapacity);
+		running = true;
+		writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				writeQueuedDatum();
+			}
+		}, "DatumDao write-behind " + delegate.getDatumType().getSimpleName());
+		writer.setDaemon(true);
+		writer.start();
+		log.info("Started write-behind for {} datum with capacity {}, flush size {}, delay {}ms",
+				delegate.getDatumType().getSimpleName(), queueCapacity, flushSize, flushDelayMs);
+	}
+
+	/**
+	 * Stop the writer thread after writing all queued datum.
+	 *
+	 * <p>
+	 * This waits up to {@code shutdownTimeoutMs} for the writer thread to
+	 * finish. Any datum still queued after that are written on the calling
+	 * thread. Datum stored after this method is called are passed directly
+	 * to the delegate.
+	 * </p>
+	 */
+	public void shutdown() {
+		final Thread t;
+		final BlockingQueue<T> q;
+		synchronized ( this ) {
+			t = writer;
+			q = queue;
+			writer = null;
+			// wait for callers already queuing datum, so none are queued after the drain below
+			runningLock.writeLock().lock();
+			try {
+				running = false;
+			} finally {
+				runningLock.writeLock().unlock();
+			}
+		}
+		if ( t == null ) {
+			return;
+		}
+		try {
+			t.join(shutdownTimeoutMs);
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		List<T> remaining = new ArrayList<T>(q.size());
+		q.drainTo(remaining);
+		if ( !remaining.isEmpty() ) {
+			log.info("Writing {} queued {} datum at shutdown", remaining.size(),
+					delegate.getDatumType().getSimpleName());
+			flush(remaining);
+		}
+	}
+
+	private void writeQueuedDatum() {
+		final List<T> group = new ArrayList<T>(flushSize);
+		long deadline = 0;
+		while ( true ) {
+			final boolean run = running;
+			T datum = null;
+			try {
+				long wait = (group.isEmpty() ? flushDelayMs
+						: Math.max(0, deadline - System.currentTimeMillis()));
+				datum = (run ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll());
+			} catch ( InterruptedException e ) {
+				running = false;
+				continue;
+			}
+			if ( datum != null ) {
+				if ( group.isEmpty() ) {
+					deadline = System.currentTimeMillis() + flushDelayMs;
+				}
+				group.add(datum);
+				queue.drainTo(group, flushSize - group.size());
+			}
+			if ( group.size() >= flushSize || (!group.isEmpty()
+					&& (datum == null || !run || System.currentTimeMillis() >= deadline)) ) {
+				flush(group);
+				group.clear();
+			} else if ( !run && datum == null ) {
+				break;
+			}
+		}
+		log.debug("Write-behind writer for {} datum stopped", delegate.getDatumType().getSimpleName());
+	}
+
+	private void flush(List<T> group) {
+		try {
+			delegate.storeDatums(new ArrayList<T>(group));
+			log.debug("Wrote {} queued {} datum", group.size(),
+					delegate.getDatumType().getSimpleName());
+		} catch ( RuntimeException e ) {
+			log.warn("Error writing {} queued datum as a group, writing individually: {}",
+					group.size(), e.toString());
+			for ( T datum : group ) {
+				try {
+					delegate.storeDatum(datum);
+				} catch ( RuntimeException e2 ) {
+					log.error("Unable to store datum {}", datum, e2);
+				}
+			}
+		}
+	}
+
+	private boolean enqueue(T datum) {
+		runningLock.readLock().lock();
+		try {
+			final BlockingQueue<T> q = queue;
+			if ( !running || q == null ) {
+				return false;
+			}
+			if ( q.offer(datum, offerTimeoutMs, TimeUnit.MILLISECONDS) ) {
+				return true;
+			}
+			log.info("Write-behind queue full for {}ms; storing datum directly", offerTimeoutMs);
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} finally {
+			runningLock.readLock().unlock();
+		}
+		return false;
+	}
+
+	@Override
+	public Class<? extends T> getDatumType() {
+		return delegate.getDatumType();
+	}
+
+	@Override
+	public void storeDatum(T datum) {
+		if ( !enqueue(datum) ) {
+			delegate.storeDatum(datum);
+		}
+	}
+
+	@Override
+	public void storeDatums(Collection<T> datums) {
+		if ( datums == null ) {
+			return;
+		}
+		List<T> direct = null;
+		for ( T datum : datums ) {
+			if ( !enqueue(datum) ) {
+				if ( direct == null ) {
+					direct = new ArrayList<T>(datums.size());
+				}
+				direct.add(datum);
+			}
+		}
+		if ( direct != null ) {
+			delegate.storeDatums(direct);
+		}
+	}
+
+	@Override
+	public List<T> getDatumNotUploaded(String destination) {
+		return delegate.getDatumNotUploaded(destination);
+	}
+
+	@Override
+	public BatchResult batchProcessDatumNotUploaded(String destination, BatchCallback<T> callback,
+			BatchOptions options) {
+		return delegate.batchProcessDatumNotUploaded(destination, callback, options);
+	}
+
+	@Override
+	public void setDatumUploaded(T datum, Date date, String destination, String trackingId) {
+		delegate.setDatumUploaded(datum, date, destination, trackingId);
+	}
+
+	@Override
+	public void setDatumUploaded(Collection<T> datums, Date date, String destination) {
+		delegate.setDatumUploaded(datums, date, destination);
+	}
+
+	@Override
+	public int deleteUploadedDataOlderThan(int hours) {
+		return delegate.deleteUploadedDataOlderThan(hours);
+	}
+
+	/**
+	 * Get the number of datum currently queued.
+	 *
+	 * @return the queued datum count
+	 */
+	public int getQueuedCount() {
+		final BlockingQueue<T> q = queue;
+		return (q == null ? 0 : q.size());
+	}
+
+	/**
+	 * Set the enabled flag.
+	 *
+	 * <p>
+	 * When disabled, all calls are passed directly to the delegate. Must be
+	 * configured before {@link #init()} is called. Defaults to
+	 * {@literal false}.
+	 * </p>
+	 *
+	 * @param enabled
+	 *        {@literal true} to buffer stored datum
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Set the maximum number of datum to queue.
+	 *
+	 * <p>
+	 * Must be configured before {@link #init()} is called. Defaults to
+	 * {@link #DEFAULT_QUEUE_CAPACITY}.
+	 * </p>
+	 *
+	 * @param queueCapacity
+	 *        the queue capacity
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Set the number of queued datum that triggers writing a group.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_FLUSH_SIZE}.
+	 * </p>
+	 *
+	 * @param flushSize
+	 *        the maximum group size
+	 */
+	public void setFlushSize(int flushSize) {
+		this.flushSize = flushSize;
+	}
+
+	/**
+	 * Set the maximum time a datum waits in the queue before its group is
+	 * written.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_FLUSH_DELAY_MS}.
+	 * </p>
+	 *
+	 * @param flushDelayMs
+	 *        the maximum delay, in milliseconds
+	 */
+	public void setFlushDelayMs(long flushDelayMs) {
+		this.flushDelayMs = flushDelayMs;
+	}
+
+	/**
+	 * Set the maximum time to wait for space in a full queue before storing a
+	 * datum directly on the delegate.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_OFFER_TIMEOUT_MS}.
+	 * </p>
+	 *
+	 * @param offerTimeoutMs
+	 *        the maximum wait time, in milliseconds
+	 */
+	public void setOfferTimeoutMs(long offerTimeoutMs) {
+		this.offerTimeoutMs = offerTimeoutMs;
+	}
+
+	/**
+	 * Set the maximum time to wait for the writer thread to finish in
+	 * {@link #shutdown()}.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_SHUTDOWN_TIMEOUT_MS}.
+	 * </p>
+	 *
+	 * @param shutdownTimeoutMs
+	 *        the maximum wait time, in milliseconds
+	 */
+	public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+		this.shutdownTimeoutMs = shutdownTimeoutMs;
+	}
+
+}
@@ -0,0 +1,394 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.job;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Adjust the number of datum to upload at once from the observed results of
+ * previous uploads.
+ *
+ * <p>
+ * The size is adjusted using additive increase, multiplicative decrease:
+ * </p>
+ *
+ * <ul>
+ * <li>after an upload of a full batch that completes within
+ * {@code targetLatencyMs}, the size grows by {@code additiveIncrease};</li>
+ * <li>after an upload that takes longer than {@code targetLatencyMs}, the size
+ * shrinks in proportion to how far the target was exceeded, but never by more
+ * than {@code decreaseFactor};</li>
+ * <li>after a failed upload, the size shrinks by {@code decreaseFactor}.</li>
+ * </ul>
+ *
+ * <p>
+ * If {@code maxBatchBytes} is configured, the size is also limited so the
+ * average payload size observed so far multiplied by the size stays within
+ * that many bytes. The size always stays between {@code minBatchSize} and
+ * {@code maxBatchSize}.
+ * </p>
+ *
+ * <p>
+ * The most recent measurements are kept so they can be inspected via
+ * {@link #getHistory()}. This class is thread safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.14
+ */
+public class AdaptiveBatchSizer {
+
+	/** The default value for the {@code minBatchSize} property. */
+	public static final int DEFAULT_MIN_BATCH_SIZE = 10;
+
+	/** The default value for the {@code maxBatchSize} property. */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+	/** The default initial batch size. */
+	public static final int DEFAULT_INITIAL_BATCH_SIZE = 60;
+
+	/** The default value for the {@code targetLatencyMs} property. */
+	public static final long DEFAULT_TARGET_LATENCY_MS = 5000L;
+
+	/** The default value for the {@code additiveIncrease} property. */
+	public static final int DEFAULT_ADDITIVE_INCREASE = 20;
+
+	/** The default value for the {@code decreaseFactor} property. */
+	public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+	/** The default value for the {@code historySize} property. */
+	public static final int DEFAULT_HISTORY_SIZE = 20;
+
+	private int minBatchSize = DEFAULT_MIN_BATCH_SIZE;
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private long targetLatencyMs = DEFAULT_TARGET_LATENCY_MS;
+	private int additiveIncrease = DEFAULT_ADDITIVE_INCREASE;
+	private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+	private long maxBatchBytes = 0;
+	private int historySize = DEFAULT_HISTORY_SIZE;
+
+	private int batchSize = DEFAULT_INITIAL_BATCH_SIZE;
+	private long successCount = 0;
+	private long failureCount = 0;
+	private long totalDatum = 0;
+	private long totalBytes = 0;
+	private final LinkedList<Measurement> history = new LinkedList<Measurement>();
+
+	/**
+	 * The result of one upload.
+	 */
+	public static final class Measurement {
+
+		private final long date;
+		private final int batchSize;
+		private final int count;
+		private final long millis;
+		private final long bytes;
+		private final boolean success;
+
+		private Measurement(long date, int batchSize, int count, long millis, long bytes,
+				boolean success) {
+			super();
+			this.date = date;
+			this.batchSize = batchSize;
+			this.count = count;
+			this.millis = millis;
+			this.bytes = bytes;
+			this.success = success;
+		}
+
+		/**
+		 * Get the date of the upload.
+		 *
+		 * @return the date, as milliseconds since the epoch
+		 */
+		public long getDate() {
+			return date;
+		}
+
+		/**
+		 * Get the batch size in effect for the upload.
+		 *
+		 * @return the batch size
+		 */
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		/**
+		 * Get the number of datum uploaded.
+		 *
+		 * @return the count
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Get the time the upload took.
+		 *
+		 * @return the time, in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * Get the estimated payload size of the upload.
+		 *
+		 * @return the size, in bytes, or {@literal -1} if not known
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Get the success flag.
+		 *
+		 * @return {@literal true} if the upload succeeded
+		 */
+		public boolean isSuccess() {
+			return success;
+		}
+
+		@Override
+		public String toString() {
+			return "Measurement{batchSize=" + batchSize + ",count=" + count + ",millis=" + millis
+					+ ",bytes=" + bytes + ",success=" + success + "}";
+		}
+	}
+
+	/**
+	 * Get the number of datum to upload in the next batch.
+	 *
+	 * @return the batch size
+	 */
+	public synchronized int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Record a successful upload.
+	 *
+	 * @param count
+	 *        the number of datum uploaded
+	 * @param millis
+	 *        the time the upload took, in milliseconds
+	 * @param bytes
+	 *        the estimated payload size, in bytes, or {@literal -1} if not
+	 *        known
+	 */
+	public synchronized void recordSuccess(int count, long millis, long bytes) {
+		addHistory(new Measurement(System.currentTimeMillis(), batchSize, count, millis, bytes, true));
+		successCount++;
+		if ( bytes > 0 && count > 0 ) {
+			totalDatum += count;
+			totalBytes += bytes;
+		}
+		int size = batchSize;
+		if ( millis > targetLatencyMs ) {
+			double factor = Math.max(decreaseFactor, (double) targetLatencyMs / millis);
+			size = (int) (size * factor);
+		} else if ( count >= batchSize ) {
+			// only grow when the batch was full, i.e. the size was the limit
+			size += additiveIncrease;
+		}
+		setSize(size);
+	}
+
+	/**
+	 * Record a failed upload.
+	 *
+	 * @param count
+	 *        the number of datum that failed to upload
+	 * @param millis
+	 *        the time until the upload failed, in milliseconds
+	 */
+	public synchronized void recordFailure(int count, long millis) {
+		addHistory(new Measurement(System.currentTimeMillis(), batchSize, count, millis, -1, false));
+		failureCount++;
+		setSize((int) (batchSize * decreaseFactor));
+	}
+
+	private void setSize(int size) {
+		if ( maxBatchBytes > 0 && totalDatum > 0 ) {
+			long bytesPerDatum = Math.max(1, totalBytes / totalDatum);
+			size = (int) Math.min(size, maxBatchBytes / bytesPerDatum);
+		}
+		batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, size));
+	}
+
+	private void addHistory(Measurement m) {
+		history.add(m);
+		while ( history.size() > historySize ) {
+			history.removeFirst();
+		}
+	}
+
+	/**
+	 * Get the most recent measurements, oldest first.
+	 *
+	 * @return the measurements, never {@literal null}
+	 */
+	public synchronized List<Measurement> getHistory() {
+		return new ArrayList<Measurement>(history);
+	}
+
+	/**
+	 * Get the number of successful uploads recorded.
+	 *
+	 * @return the count
+	 */
+	public synchronized long getSuccessCount() {
+		return successCount;
+	}
+
+	/**
+	 * Get the number of failed uploads recorded.
+	 *
+	 * @return the count
+	 */
+	public synchronized long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * Get the average estimated payload size per datum observed so far.
+	 *
+	 * @return the average size, in bytes, or {@literal 0} if not known
+	 */
+	public synchronized long getAverageDatumBytes() {
+		return (totalDatum > 0 ? totalBytes / totalDatum : 0);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AdaptiveBatchSizer{batchSize=" + batchSize + ",successCount=" + successCount
+				+ ",failureCount=" + failureCount + ",averageDatumBytes=" + getAverageDatumBytes()
+				+ "}";
+	}
+
+	/**
+	 * Set the minimum batch size.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MIN_BATCH_SIZE}.
+	 * </p>
+	 *
+	 * @param minBatchSize
+	 *        the minimum size
+	 */
+	public synchronized void setMinBatchSize(int minBatchSize) {
+		this.minBatchSize = Math.max(1, minBatchSize);
+		setSize(batchSize);
+	}
+
+	/**
+	 * Set the maximum batch size.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_BATCH_SIZE}.
+	 * </p>
+	 *
+	 * @param maxBatchSize
+	 *        the maximum size
+	 */
+	public synchronized void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		setSize(batchSize);
+	}
+
+	/**
+	 * Set the batch size to start with.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_INITIAL_BATCH_SIZE}.
+	 * </p>
+	 *
+	 * @param initialBatchSize
+	 *        the initial size
+	 */
+	public synchronized void setInitialBatchSize(int initialBatchSize) {
+		setSize(initialBatchSize);
+	}
+
+	/**
+	 * Set the upload time to stay within.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_TARGET_LATENCY_MS}.
+	 * </p>
+	 *
+	 * @param targetLatencyMs
+	 *        the target time, in milliseconds
+	 */
+	public synchronized void setTargetLatencyMs(long targetLatencyMs) {
+		this.targetLatencyMs = targetLatencyMs;
+	}
+
+	/**
+	 * Set the amount to grow the batch size by after a fast upload.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_ADDITIVE_INCREASE}.
+	 * </p>
+	 *
+	 * @param additiveIncrease
+	 *        the increase
+	 */
+	public synchronized void setAdditiveIncrease(int additiveIncrease) {
+		this.additiveIncrease = additiveIncrease;
+	}
+
+	/**
+	 * Set the factor to shrink the batch size by after a failed upload.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_DECREASE_FACTOR}.
+	 * </p>
+	 *
+	 * @param decreaseFactor
+	 *        the factor, between {@literal 0} and {@literal 1}
+	 */
+	public synchronized void setDecreaseFactor(double decreaseFactor) {
+		this.decreaseFactor = decreaseFactor;
+	}
+
+	/**
+	 * Set the maximum estimated payload size to allow.
+	 *
+	 * <p>
+	 * Defaults to {@literal 0}, for no limit.
+	 * </p>
+	 *
+	 * @param maxBatchBytes
+	 *        the maximum size, in bytes
+	 */
+	public synchronized void setMaxBatchBytes(long maxBatchBytes) {
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * Set the number of measurements to keep.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_HISTORY_SIZE}.
+	 * </p>
+	 *
+	 * @param historySize
+	 *        the number of measurements
+	 */
+	public synchronized void setHistorySize(int historySize) {
+		this.historySize = Math.max(0, historySize);
+		while ( history.size() > this.historySize ) {
+			history.removeFirst();
+		}
+	}
+
+}
@@ -16,12 +16,24 @@ import java.util.Map;
 
 import org.eniware.edge.BulkUploadResult;
 import org.eniware.edge.BulkUploadService;
+import org.eniware.edge.StreamingBulkUploadService;
+import org.eniware.edge.StreamingBulkUploadService.DatumJsonWriter;
+import org.eniware.edge.dao.BasicBatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
 import org.eniware.edge.dao.DatumDao;
+import org.eniware.edge.dao.RawJsonDatumDao;
+import org.eniware.edge.dao.RawJsonDatumDao.RawJsonCallback;
 import org.eniware.edge.domain.Datum;
 import org.eniware.edge.setup.SetupException;
 import org.quartz.DisallowConcurrentExecution;
+import org.quartz.InterruptableJob;
 import org.quartz.JobExecutionContext;
 import org.quartz.PersistJobDataAfterExecution;
+import org.quartz.UnableToInterruptJobException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * Job to query a collection of {@link DatumDao} instances for data to upload
@@ -32,9 +44,25 @@ import org.quartz.PersistJobDataAfterExecution;
  * configured {@link DatumDao} and combine them into a single collection to pass
  * to {@link BulkUploadService#uploadBulkDatum(java.util.Collection)}. For each
  * non-null {@link BulkUploadResult#getId()} tracking ID returned, the
- * associated {@link BulkUploadResult#getDatum()} will be passed to the
- * appropriate {@link DatumDao} instance's
- * {@link DatumDao#storeDatumUpload(Datum, String, Long)} method.
+ * associated {@link BulkUploadResult#getDatum()} will be collected and then
+ * passed as a group to the appropriate {@link DatumDao} instance's
+ * {@link DatumDao#setDatumUploaded(Collection, Date, String)} method.
+ * </p>
+ * 
+ * <p>
+ * This is repeated, one chunk at a time, until there are no more datum to
+ * upload, an error occurs, some datum of a chunk are not accepted, or the
+ * {@code maxExecutionSeconds} or {@code maxUploadCount} limit is reached. The
+ * job can also be stopped between chunks via {@link #interrupt()}.
+ * </p>
+ * 
+ * <p>
+ * If the {@code uploadService} is a {@link StreamingBulkUploadService}, the
+ * datum of DAOs that are {@link RawJsonDatumDao} instances are instead written
+ * into the upload request as they are read from the DAO, with their stored
+ * samples JSON passed through as-is, so a chunk is never held in memory. The
+ * datum are matched to the returned tracking IDs by the order they were
+ * written in. Datum of other DAOs are uploaded as a collection as usual.
  * </p>
  * 
  * <p>
@@ -48,25 +76,205 @@ import org.quartz.PersistJobDataAfterExecution;
  * 
  * <dt>uploadService</dt>
  * <dd>The {@link BulkUploadService} to upload the data with.</dd>
+ * 
+ * <dt>maxExecutionSeconds</dt>
+ * <dd>The maximum number of seconds to keep uploading chunks for during one
+ * execution, or {@literal 0} to upload a single chunk. Defaults to
+ * {@link #DEFAULT_MAX_EXECUTION_SECONDS}.</dd>
+ * 
+ * <dt>maxUploadCount</dt>
+ * <dd>The maximum number of datum to upload during one execution, or
+ * {@literal 0} for no limit. Defaults to {@literal 0}.</dd>
+ * 
+ * <dt>batchSizer</dt>
+ * <dd>An optional {@link AdaptiveBatchSizer} to adjust the number of datum
+ * uploaded per chunk from the observed upload times, failures, and payload
+ * sizes, instead of each DAO's fixed fetch size.</dd>
+ * 
+ * <dt>circuitBreaker</dt>
+ * <dd>An optional {@link UploadCircuitBreaker} shared with other jobs
+ * uploading to the same destination. While it refuses uploads the job returns
+ * without querying any datum, and when it allows a probe the first chunk holds
+ * a single datum.</dd>
+ * 
+ * <dt>streamChunkSize</dt>
+ * <dd>The maximum number of datum to write in one streaming upload when no
+ * {@code batchSizer} is configured. Defaults to
+ * {@link #DEFAULT_STREAM_CHUNK_SIZE}.</dd>
  * </dl>
  * 
- * @version 2.0
+ * @version 2.5
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
-public class DatumDaoBulkUploadJob extends AbstractJob {
+public class DatumDaoBulkUploadJob extends AbstractJob implements InterruptableJob {
+
+	/**
+	 * The default value for the {@code maxExecutionSeconds} property.
+	 * 
+	 * @since 2.2
+	 */
+	public static final int DEFAULT_MAX_EXECUTION_SECONDS = 50;
+
+	/**
+	 * The default value for the {@code streamChunkSize} property.
+	 * 
+	 * @since 2.5
+	 */
+	public static final int DEFAULT_STREAM_CHUNK_SIZE = 1000;
 
 	private Collection<DatumDao<Datum>> daos;
 	private BulkUploadService uploadService;
+	private int maxExecutionSeconds = DEFAULT_MAX_EXECUTION_SECONDS;
+	private int maxUploadCount = 0;
+	private AdaptiveBatchSizer batchSizer;
+	private UploadCircuitBreaker circuitBreaker;
+	private int streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+	private volatile boolean interrupted = false;
 
 	@Override
 	protected void executeInternal(JobExecutionContext jobContext) throws Exception {
-		Map<Class<? extends Datum>, DatumDao<Datum>> daoMapping = new LinkedHashMap<Class<? extends Datum>, DatumDao<Datum>>(
-				daos.size());
+		final UploadCircuitBreaker breaker = circuitBreaker;
+		final UploadCircuitBreaker.Permit permit = (breaker != null ? breaker.allowRequest() : null);
+		if ( permit != null && !permit.isAllowed() ) {
+			log.debug("Not uploading to [{}] while it is unavailable: {}", uploadService.getKey(),
+					breaker);
+			return;
+		}
+		boolean probe = (permit != null && permit.isProbe());
+		boolean reported = false;
+		final long deadline = (maxExecutionSeconds > 0
+				? System.currentTimeMillis() + (maxExecutionSeconds * 1000L)
+				: 0);
+		int total = 0;
+		int chunks = 0;
+		try {
+			while ( !interrupted ) {
+				final int[] counts = uploadChunk(probe);
+				if ( counts == null ) {
+					// error already logged; try again on next execution
+					if ( breaker != null ) {
+						breaker.recordFailure(permit);
+						reported = true;
+					}
+					break;
+				}
+				if ( breaker != null && counts[0] > 0 && !reported ) {
+					breaker.recordSuccess(permit);
+					reported = true;
+				}
+				chunks++;
+				total += counts[1];
+				if ( counts[0] < 1 || counts[1] < counts[0] ) {
+					// backlog empty, or some datum not accepted so don't keep retrying them
+					break;
+				}
+				if ( deadline < 1 && !probe ) {
+					break;
+				}
+				probe = false;
+				if ( deadline > 0 && System.currentTimeMillis() > deadline ) {
+					log.info("Bulk upload time limit of {}s reached; will resume on next execution",
+							maxExecutionSeconds);
+					break;
+				}
+				if ( maxUploadCount > 0 && total >= maxUploadCount ) {
+					log.info("Bulk upload limit of {} datum reached; will resume on next execution",
+							maxUploadCount);
+					break;
+				}
+			}
+		} finally {
+			if ( breaker != null && !reported ) {
+				breaker.recordNoAttempt(permit);
+			}
+		}
+		if ( interrupted ) {
+			log.info("Bulk upload interrupted; will resume on next execution");
+		}
+		if ( chunks > 1 && log.isInfoEnabled() ) {
+			log.info("Bulk uploaded {} objects in {} chunks to [{}]", total, chunks,
+					uploadService.getKey());
+		}
+	}
 
-		List<Datum> uploadList = new ArrayList<Datum>();
+	/**
+	 * Request the job stop uploading.
+	 * 
+	 * <p>
+	 * Any chunk being uploaded is allowed to complete, after which the job
+	 * returns.
+	 * </p>
+	 * 
+	 * @since 2.2
+	 */
+	@Override
+	public void interrupt() throws UnableToInterruptJobException {
+		interrupted = true;
+	}
 
+	/**
+	 * Collect the datum not uploaded from all DAOs and upload them.
+	 * 
+	 * @param probe
+	 *        {@literal true} to upload a single datum, as a probe of the
+	 *        destination
+	 * @return the number of datum collected and the number uploaded, or
+	 *         {@literal null} if the upload failed
+	 */
+	private int[] uploadChunk(final boolean probe) {
+		final AdaptiveBatchSizer sizer = (probe ? null : batchSizer);
+		final int limit = (probe ? 1 : sizer != null ? sizer.getBatchSize() : 0);
+		if ( !(uploadService instanceof StreamingBulkUploadService) ) {
+			return uploadListChunk(daos, limit, sizer);
+		}
+
+		List<RawJsonDatumDao<Datum>> rawDaos = new ArrayList<RawJsonDatumDao<Datum>>(daos.size());
+		List<DatumDao<Datum>> otherDaos = new ArrayList<DatumDao<Datum>>(daos.size());
 		for ( DatumDao<Datum> datumDao : daos ) {
+			if ( datumDao instanceof RawJsonDatumDao ) {
+				rawDaos.add((RawJsonDatumDao<Datum>) datumDao);
+			} else {
+				otherDaos.add(datumDao);
+			}
+		}
+		if ( rawDaos.isEmpty() ) {
+			return uploadListChunk(otherDaos, limit, sizer);
+		}
+		int[] counts = uploadStreamingChunk((StreamingBulkUploadService) uploadService, rawDaos,
+				(limit > 0 ? limit : Math.max(1, streamChunkSize)), sizer);
+		if ( counts == null || otherDaos.isEmpty() || (limit > 0 && counts[0] >= limit) ) {
+			return counts;
+		}
+		int[] otherCounts = uploadListChunk(otherDaos, (limit > 0 ? limit - counts[0] : 0), sizer);
+		if ( otherCounts == null ) {
+			return null;
+		}
+		return new int[] { counts[0] + otherCounts[0], counts[1] + otherCounts[1] };
+	}
+
+	/**
+	 * Collect the datum not uploaded from a set of DAOs and upload them in one
+	 * bulk upload.
+	 * 
+	 * @param daoList
+	 *        the DAOs to collect from
+	 * @param limit
+	 *        the maximum number of datum to collect, or {@literal 0} for each
+	 *        DAO's default
+	 * @param sizer
+	 *        the batch sizer to record the upload with, or {@literal null}
+	 * @return the number of datum collected and the number uploaded, or
+	 *         {@literal null} if the upload failed
+	 */
+	private int[] uploadListChunk(final Collection<DatumDao<Datum>> daoList, final int limit,
+			final AdaptiveBatchSizer sizer) {
+		Map<Class<? extends Datum>, DatumDao<Datum>> daoMapping = new LinkedHashMap<Class<? extends Datum>, DatumDao<Datum>>(
+				daoList.size());
+
+		final List<Datum> uploadList = new ArrayList<Datum>();
+
+		for ( DatumDao<Datum> datumDao : daoList ) {
 			if ( log.isDebugEnabled() ) {
 				log.debug("Collecting [{}] data to bulk upload to [{}]",
 						datumDao.getDatumType().getSimpleName(), uploadService.getKey());
@@ -74,7 +282,13 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 
 			daoMapping.put(datumDao.getDatumType(), datumDao);
 
-			List<Datum> toUpload = datumDao.getDatumNotUploaded(uploadService.getKey());
+			if ( limit > 0 && uploadList.size() >= limit ) {
+				continue;
+			}
+
+			List<Datum> toUpload = (limit > 0
+					? collectDatumNotUploaded(datumDao, limit - uploadList.size())
+					: datumDao.getDatumNotUploaded(uploadService.getKey()));
 
 			if ( log.isDebugEnabled() ) {
 				log.debug("Found " + toUpload.size() + " [" + datumDao.getDatumType().getSimpleName()
@@ -87,10 +301,29 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 			log.info("Collected {} datum to bulk upload to [{}]", uploadList.size(),
 					uploadService.getKey());
 		}
+		if ( uploadList.isEmpty() ) {
+			return new int[] { 0, 0 };
+		}
 		final Date uploadDate = new Date();
+		final long start = System.currentTimeMillis();
 		try {
 			int count = 0;
-			List<BulkUploadResult> results = uploadService.uploadBulkDatum(uploadList);
+			Map<DatumDao<Datum>, List<Datum>> uploaded = new LinkedHashMap<DatumDao<Datum>, List<Datum>>(
+					daoMapping.size());
+			List<BulkUploadResult> results;
+			try {
+				results = uploadService.uploadBulkDatum(uploadList);
+			} catch ( RuntimeException e ) {
+				if ( sizer != null ) {
+					sizer.recordFailure(uploadList.size(), System.currentTimeMillis() - start);
+				}
+				throw e;
+			}
+			if ( sizer != null ) {
+				sizer.recordSuccess(uploadList.size(), System.currentTimeMillis() - start,
+						estimatedSize(uploadList));
+				log.debug("Bulk upload batch size now {}", sizer);
+			}
 			if ( results != null ) {
 				for ( BulkUploadResult result : results ) {
 					String tid = result.getId();
@@ -104,33 +337,253 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 
 					if ( tid != null ) {
 						DatumDao<Datum> datumDao = daoMapping.get(result.getDatum().getClass());
-						datumDao.setDatumUploaded(result.getDatum(), uploadDate, uploadService.getKey(),
-								tid);
+						List<Datum> daoUploaded = uploaded.get(datumDao);
+						if ( daoUploaded == null ) {
+							daoUploaded = new ArrayList<Datum>(results.size());
+							uploaded.put(datumDao, daoUploaded);
+						}
+						daoUploaded.add(result.getDatum());
 						count++;
 					}
 				}
 			}
+			for ( Map.Entry<DatumDao<Datum>, List<Datum>> me : uploaded.entrySet() ) {
+				me.getKey().setDatumUploaded(me.getValue(), uploadDate, uploadService.getKey());
+			}
 			if ( log.isInfoEnabled() ) {
 				log.info("Bulk uploaded {} objects to [{}]", count, uploadService.getKey());
 			}
+			return new int[] { uploadList.size(), count };
 		} catch ( RuntimeException e ) {
-			Throwable root = e;
-			while ( root.getCause() != null ) {
-				root = root.getCause();
-			}
-			if ( root instanceof IOException ) {
-				if ( log.isWarnEnabled() ) {
-					log.warn("Network problem posting data ({}): {}", root.getClass().getSimpleName(),
-							root.getMessage());
+			logUploadException(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Upload the datum not uploaded from a set of DAOs in one streaming bulk
+	 * upload.
+	 * 
+	 * @param service
+	 *        the service to upload with
+	 * @param rawDaos
+	 *        the DAOs to read from
+	 * @param limit
+	 *        the maximum number of datum to upload
+	 * @param sizer
+	 *        the batch sizer to record the upload with, or {@literal null}
+	 * @return the number of datum written and the number uploaded, or
+	 *         {@literal null} if the upload failed
+	 */
+	private int[] uploadStreamingChunk(final StreamingBulkUploadService service,
+			final List<RawJsonDatumDao<Datum>> rawDaos, final int limit,
+			final AdaptiveBatchSizer sizer) {
+		final String destination = service.getKey();
+		if ( !hasDatumNotUploaded(rawDaos, destination) ) {
+			log.debug("No datum to stream to [{}]", destination);
+			return new int[] { 0, 0 };
+		}
+		final List<Datum> written = new ArrayList<Datum>(Math.min(limit, 1024));
+		final List<DatumDao<Datum>> writtenDaos = new ArrayList<DatumDao<Datum>>(
+				Math.min(limit, 1024));
+		final long[] bytes = new long[1];
+		final DatumJsonWriter writer = new DatumJsonWriter() {
+
+			@Override
+			public int writeDatum(final JsonGenerator generator) throws IOException {
+				// start over if the service writes the request again, e.g. on retry
+				written.clear();
+				writtenDaos.clear();
+				bytes[0] = 0;
+				final IOException[] error = new IOException[1];
+				for ( final RawJsonDatumDao<Datum> dao : rawDaos ) {
+					if ( written.size() >= limit ) {
+						break;
+					}
+					dao.batchProcessRawDatumNotUploaded(destination, new RawJsonCallback<Datum>() {
+
+						@Override
+						public BatchCallbackResult handle(Datum datum, String samplesJson) {
+							try {
+								generator.writeStartObject();
+								generator.writeNumberField("created", datum.getCreated().getTime());
+								generator.writeStringField("sourceId", datum.getSourceId());
+								generator.writeFieldName("samples");
+								generator.writeRawValue(samplesJson);
+								generator.writeEndObject();
+							} catch ( IOException e ) {
+								error[0] = e;
+								return BatchCallbackResult.STOP;
+							}
+							written.add(datum);
+							writtenDaos.add(dao);
+							// the samples plus the created and sourceId fields
+							bytes[0] += samplesJson.length() + datum.getSourceId().length() + 48;
+							return (written.size() < limit ? BatchCallbackResult.CONTINUE
+									: BatchCallbackResult.STOP);
+						}
+					}, new BasicBatchOptions("Bulk upload " + destination, limit - written.size(),
+							false, null));
+					if ( error[0] != null ) {
+						throw error[0];
+					}
 				}
-			} else if ( root instanceof SetupException ) {
-				log.warn("Unable to post data: {}", root.getMessage());
-			} else {
-				if ( log.isErrorEnabled() ) {
-					log.error("Exception posting data", root);
+				return written.size();
+			}
+		};
+
+		final Date uploadDate = new Date();
+		final long start = System.currentTimeMillis();
+		try {
+			List<String> ids;
+			try {
+				ids = service.uploadBulkDatumStream(writer);
+			} catch ( RuntimeException e ) {
+				if ( sizer != null ) {
+					sizer.recordFailure(written.size(), System.currentTimeMillis() - start);
 				}
+				throw e;
+			}
+			if ( sizer != null ) {
+				sizer.recordSuccess(written.size(), System.currentTimeMillis() - start, bytes[0]);
+				log.debug("Bulk upload batch size now {}", sizer);
+			}
+			int count = 0;
+			Map<DatumDao<Datum>, List<Datum>> uploaded = new LinkedHashMap<DatumDao<Datum>, List<Datum>>(
+					rawDaos.size());
+			for ( int i = 0, len = written.size(); i < len; i++ ) {
+				String tid = (ids != null && i < ids.size() ? ids.get(i) : null);
+				Datum datum = written.get(i);
+				if ( log.isTraceEnabled() ) {
+					log.trace("Bulk streamed [{} {}] [{}] and received tid [{}]",
+							new Object[] { datum.getClass().getSimpleName(),
+									datum.getCreated().getTime(), datum.getSourceId(), tid });
+				}
+				if ( tid != null ) {
+					DatumDao<Datum> datumDao = writtenDaos.get(i);
+					List<Datum> daoUploaded = uploaded.get(datumDao);
+					if ( daoUploaded == null ) {
+						daoUploaded = new ArrayList<Datum>(len);
+						uploaded.put(datumDao, daoUploaded);
+					}
+					daoUploaded.add(datum);
+					count++;
+				}
+			}
+			for ( Map.Entry<DatumDao<Datum>, List<Datum>> me : uploaded.entrySet() ) {
+				me.getKey().setDatumUploaded(me.getValue(), uploadDate, destination);
+			}
+			if ( log.isInfoEnabled() ) {
+				log.info("Bulk streamed {} of {} objects to [{}]", count, written.size(),
+						destination);
+			}
+			return new int[] { written.size(), count };
+		} catch ( RuntimeException e ) {
+			logUploadException(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Test if any of a set of DAOs has datum not uploaded.
+	 * 
+	 * <p>
+	 * This avoids making a streaming upload request with nothing to upload.
+	 * </p>
+	 * 
+	 * @param rawDaos
+	 *        the DAOs to test
+	 * @param destination
+	 *        the upload destination
+	 * @return {@literal true} if at least one datum has not been uploaded
+	 */
+	private boolean hasDatumNotUploaded(List<RawJsonDatumDao<Datum>> rawDaos, String destination) {
+		final boolean[] found = new boolean[1];
+		final RawJsonCallback<Datum> callback = new RawJsonCallback<Datum>() {
+
+			@Override
+			public BatchCallbackResult handle(Datum datum, String samplesJson) {
+				found[0] = true;
+				return BatchCallbackResult.STOP;
+			}
+		};
+		for ( RawJsonDatumDao<Datum> dao : rawDaos ) {
+			dao.batchProcessRawDatumNotUploaded(destination, callback,
+					new BasicBatchOptions("Bulk upload " + destination, 1, false, null));
+			if ( found[0] ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Log a failed upload.
+	 * 
+	 * @param e
+	 *        the upload exception
+	 */
+	private void logUploadException(RuntimeException e) {
+		Throwable root = e;
+		while ( root.getCause() != null ) {
+			root = root.getCause();
+		}
+		if ( root instanceof IOException ) {
+			if ( log.isWarnEnabled() ) {
+				log.warn("Network problem posting data ({}): {}", root.getClass().getSimpleName(),
+						root.getMessage());
+			}
+		} else if ( root instanceof SetupException ) {
+			log.warn("Unable to post data: {}", root.getMessage());
+		} else {
+			if ( log.isErrorEnabled() ) {
+				log.error("Exception posting data", root);
+			}
+		}
+	}
+
+	/**
+	 * Collect up to a maximum number of datum not uploaded from a DAO.
+	 * 
+	 * @param datumDao
+	 *        the DAO to collect from
+	 * @param max
+	 *        the maximum number of datum to collect
+	 * @return the datum
+	 */
+	private List<Datum> collectDatumNotUploaded(DatumDao<Datum> datumDao, final int max) {
+		final List<Datum> result = new ArrayList<Datum>(Math.min(max, 1024));
+		final String destination = uploadService.getKey();
+		datumDao.batchProcessDatumNotUploaded(destination, new BatchCallback<Datum>() {
+
+			@Override
+			public BatchCallbackResult handle(Datum datum) {
+				result.add(datum);
+				return (result.size() < max ? BatchCallbackResult.CONTINUE
+						: BatchCallbackResult.STOP);
 			}
+		}, new BasicBatchOptions("Bulk upload " + destination, max, false, null));
+		return result;
+	}
+
+	/**
+	 * Estimate the payload size of a collection of datum.
+	 * 
+	 * <p>
+	 * This uses the length of the string form of each datum's simple map,
+	 * which is close to the size of its JSON form.
+	 * </p>
+	 * 
+	 * @param datums
+	 *        the datum
+	 * @return the estimated size, in bytes
+	 */
+	private static long estimatedSize(Collection<Datum> datums) {
+		long size = 0;
+		for ( Datum datum : datums ) {
+			size += String.valueOf(datum.asSimpleMap()).length();
 		}
+		return size;
 	}
 
 	public void setDaos(Collection<DatumDao<Datum>> daos) {
@@ -141,4 +594,87 @@ public class DatumDaoBulkUploadJob extends AbstractJob {
 		this.uploadService = uploadService;
 	}
 
+	/**
+	 * Set the maximum number of seconds to keep uploading for during a single
+	 * execution of this job.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_EXECUTION_SECONDS}.
+	 * </p>
+	 * 
+	 * @param maxExecutionSeconds
+	 *        the maximum number of seconds, or {@literal 0} to upload only one
+	 *        chunk per execution
+	 * @since 2.2
+	 */
+	public void setMaxExecutionSeconds(int maxExecutionSeconds) {
+		this.maxExecutionSeconds = maxExecutionSeconds;
+	}
+
+	/**
+	 * Set the maximum number of datum to upload during a single execution of
+	 * this job.
+	 * 
+	 * <p>
+	 * The chunk that reaches this limit is uploaded completely, so slightly
+	 * more datum can be uploaded. Defaults to {@literal 0}, for no limit.
+	 * </p>
+	 * 
+	 * @param maxUploadCount
+	 *        the maximum number of datum, or {@literal 0} for no limit
+	 * @since 2.2
+	 */
+	public void setMaxUploadCount(int maxUploadCount) {
+		this.maxUploadCount = maxUploadCount;
+	}
+
+	/**
+	 * Set a controller of the number of datum to upload at once.
+	 * 
+	 * <p>
+	 * When configured, each chunk is collected via
+	 * {@link DatumDao#batchProcessDatumNotUploaded(String, BatchCallback, BatchOptions)}
+	 * up to the controller's current batch size, and the outcome of each upload
+	 * is recorded with the controller. The controller must be shared across
+	 * executions of this job, for example as a service reference in the job
+	 * data. Defaults to {@literal null}, to collect chunks via
+	 * {@link DatumDao#getDatumNotUploaded(String)}.
+	 * </p>
+	 * 
+	 * @param batchSizer
+	 *        the controller to use
+	 * @since 2.3
+	 */
+	public void setBatchSizer(AdaptiveBatchSizer batchSizer) {
+		this.batchSizer = batchSizer;
+	}
+
+	/**
+	 * Set a circuit breaker to skip uploading while the destination is
+	 * unavailable.
+	 * 
+	 * @param circuitBreaker
+	 *        the circuit breaker, or {@literal null} to always upload
+	 * @since 2.4
+	 */
+	public void setCircuitBreaker(UploadCircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Set the maximum number of datum to write in one streaming upload.
+	 * 
+	 * <p>
+	 * This applies only when no {@code batchSizer} is configured. Defaults to
+	 * {@link #DEFAULT_STREAM_CHUNK_SIZE}.
+	 * </p>
+	 * 
+	 * @param streamChunkSize
+	 *        the maximum number of datum
+	 * @since 2.5
+	 */
+	public void setStreamChunkSize(int streamChunkSize) {
+		this.streamChunkSize = streamChunkSize;
+	}
+
 }
@@ -6,11 +6,18 @@
 package org.eniware.edge.job;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eniware.edge.UploadService;
+import org.eniware.edge.dao.BasicBatchOptions;
+import org.eniware.edge.dao.BatchableDao.BatchCallback;
+import org.eniware.edge.dao.BatchableDao.BatchCallbackResult;
+import org.eniware.edge.dao.BatchableDao.BatchOptions;
 import org.eniware.edge.dao.DatumDao;
 import org.eniware.edge.domain.Datum;
 import org.quartz.DisallowConcurrentExecution;
@@ -22,10 +29,14 @@ import org.quartz.PersistJobDataAfterExecution;
  * {@link UploadService}.
  * 
  * <p>
- * This job will call {@link DatumDao#getDatumNotUploaded(String)} and for each
- * {@link Datum} returned pass that to {@link UploadService#uploadDatum(Datum)}.
- * If that returns a non-null tracking ID, then that will be passed to
- * {@link DatumDao#storeDatumUpload(Datum, String, Long)}.
+ * This job will call
+ * {@link DatumDao#batchProcessDatumNotUploaded(String, BatchCallback, BatchOptions)}
+ * and for each {@link Datum} streamed pass that to
+ * {@link UploadService#uploadDatum(Datum)}. Each {@link Datum} for which that
+ * returns a non-null tracking ID is then passed in groups to
+ * {@link DatumDao#setDatumUploaded(Collection, Date, String)}. The job keeps
+ * uploading until there are no more datum to upload, an error occurs, or the
+ * {@code maxExecutionSeconds} time limit is reached.
  * </p>
  * 
  * <p>
@@ -39,75 +50,260 @@ import org.quartz.PersistJobDataAfterExecution;
  * <dt>uploadService</dt>
  * <dd>The {@link UploadService} implementation to use to upload the datum
  * to.</dd>
+ * 
+ * <dt>maxExecutionSeconds</dt>
+ * <dd>The maximum number of seconds to keep uploading for during one
+ * execution. Defaults to {@link #DEFAULT_MAX_EXECUTION_SECONDS}.</dd>
+ * 
+ * <dt>batchSize</dt>
+ * <dd>The number of datum to fetch at one time, and to mark as uploaded at one
+ * time. Defaults to {@link #DEFAULT_BATCH_SIZE}.</dd>
+ * 
+ * <dt>maxInFlight</dt>
+ * <dd>The maximum number of datum to upload at the same time. When greater
+ * than {@literal 1} a {@link PipelinedDatumUploader} is used, so datum of
+ * different sources are uploaded concurrently while the datum of each source
+ * are still uploaded in order, and uploaded datum are marked as uploaded as
+ * their uploads complete. The {@code uploadService} must then support
+ * concurrent calls. Defaults to {@link #DEFAULT_MAX_IN_FLIGHT}.</dd>
+ * 
+ * <dt>circuitBreaker</dt>
+ * <dd>An optional {@link UploadCircuitBreaker} shared with other jobs
+ * uploading to the same destination. While it refuses uploads the job returns
+ * without querying any datum, and when it allows a probe the datum are
+ * uploaded one at a time so the first failure stops the job.</dd>
  * </dl>
  * 
  * @param <T>
  *        the Datum type for this job
- * @version 2.0
+ * @version 2.4
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
 public class DatumDaoUploadJob<T extends Datum> extends AbstractJob {
 
+	/** The default value for the {@code maxExecutionSeconds} property. */
+	public static final int DEFAULT_MAX_EXECUTION_SECONDS = 50;
+
+	/** The default value for the {@code batchSize} property. */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * The default value for the {@code maxInFlight} property.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1;
+
 	private Collection<DatumDao<Datum>> daos;
 	private UploadService uploadService = null;
+	private int maxExecutionSeconds = DEFAULT_MAX_EXECUTION_SECONDS;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private UploadCircuitBreaker circuitBreaker;
 
 	@Override
 	protected void executeInternal(JobExecutionContext jobContext) throws Exception {
-		for ( DatumDao<Datum> datumDao : daos ) {
-			if ( log.isInfoEnabled() ) {
-				log.info("Collecting [" + datumDao.getDatumType().getSimpleName()
-						+ "] data to bulk upload to [" + uploadService.getKey() + ']');
+		final UploadCircuitBreaker breaker = circuitBreaker;
+		final UploadCircuitBreaker.Permit permit = (breaker != null ? breaker.allowRequest() : null);
+		if ( permit != null && !permit.isAllowed() ) {
+			log.debug("Not uploading to [{}] while it is unavailable: {}", uploadService.getKey(),
+					breaker);
+			return;
+		}
+		final boolean probe = (permit != null && permit.isProbe());
+		final long deadline = System.currentTimeMillis() + (maxExecutionSeconds * 1000L);
+		int total = 0;
+		boolean failed = false;
+		try {
+			for ( DatumDao<Datum> datumDao : daos ) {
+				if ( log.isInfoEnabled() ) {
+					log.info("Uploading [" + datumDao.getDatumType().getSimpleName() + "] data to ["
+							+ uploadService.getKey() + ']');
+				}
+				int count = uploadDatum(datumDao, deadline, probe);
+				if ( log.isInfoEnabled() ) {
+					log.info("Uploaded " + count + " [" + datumDao.getDatumType().getSimpleName()
+							+ "] objects to [" + uploadService.getKey() + ']');
+				}
+				if ( count < 0 ) {
+					failed = true;
+					break;
+				}
+				total += count;
+				if ( System.currentTimeMillis() > deadline ) {
+					break;
+				}
 			}
-
-			if ( log.isInfoEnabled() ) {
-				log.info("Uploading [" + datumDao.getDatumType().getSimpleName() + "] data to ["
-						+ uploadService.getKey() + ']');
+		} finally {
+			if ( breaker != null ) {
+				if ( failed ) {
+					breaker.recordFailure(permit);
+				} else if ( total > 0 ) {
+					breaker.recordSuccess(permit);
+				} else {
+					breaker.recordNoAttempt(permit);
+				}
 			}
+		}
+	}
 
-			List<Datum> toUpload = datumDao.getDatumNotUploaded(uploadService.getKey());
-			int count = 0;
-
-			if ( log.isDebugEnabled() ) {
-				log.debug("Uploading " + toUpload.size() + " [" + datumDao.getDatumType().getSimpleName()
-						+ "] data to [" + uploadService.getKey() + ']');
-			}
-			final Date uploadDate = new Date();
-			try {
-				for ( Datum datum : toUpload ) {
-					String tid = uploadService.uploadDatum(datum);
-					if ( log.isTraceEnabled() ) {
-						log.trace("Just uploaded [" + datumDao.getDatumType().getSimpleName() + "] ["
-								+ datum.getCreated().getTime() + " " + datum.getSourceId()
-								+ "] and received tid [" + tid + "]");
-					}
+	/**
+	 * Stream the datum not uploaded from a DAO to the upload service.
+	 * 
+	 * <p>
+	 * Uploaded datum are marked as uploaded in groups of {@code batchSize}
+	 * while the stream is processed.
+	 * </p>
+	 * 
+	 * @param datumDao
+	 *        the DAO to upload from
+	 * @param deadline
+	 *        the date after which no further datum should be uploaded
+	 * @param probe
+	 *        {@literal true} to upload one datum at a time, as a probe of the
+	 *        destination
+	 * @return the number of uploaded datum, or {@literal -1} if an error
+	 *         prevented further uploads
+	 */
+	private int uploadDatum(final DatumDao<Datum> datumDao, final long deadline,
+			final boolean probe) {
+		if ( maxInFlight > 1 && !probe ) {
+			return uploadDatumPipelined(datumDao, deadline);
+		}
+		final String destination = uploadService.getKey();
+		final Date uploadDate = new Date();
+		final List<Datum> uploaded = new ArrayList<Datum>(batchSize);
+		final AtomicInteger count = new AtomicInteger(0);
+		final AtomicReference<RuntimeException> error = new AtomicReference<RuntimeException>();
+		final BatchOptions options = new BasicBatchOptions("Upload " + destination, batchSize, false,
+				null);
+		datumDao.batchProcessDatumNotUploaded(destination, new BatchCallback<Datum>() {
 
-					if ( tid != null ) {
-						datumDao.setDatumUploaded(datum, uploadDate, uploadService.getKey(), tid);
-						count++;
+			@Override
+			public BatchCallbackResult handle(Datum datum) {
+				String tid;
+				try {
+					tid = uploadService.uploadDatum(datum);
+				} catch ( RuntimeException e ) {
+					error.set(e);
+					return BatchCallbackResult.STOP;
+				}
+				if ( log.isTraceEnabled() ) {
+					log.trace("Just uploaded [" + datumDao.getDatumType().getSimpleName() + "] ["
+							+ datum.getCreated().getTime() + " " + datum.getSourceId()
+							+ "] and received tid [" + tid + "]");
+				}
+				if ( tid != null ) {
+					uploaded.add(datum);
+					if ( uploaded.size() >= batchSize ) {
+						datumDao.setDatumUploaded(uploaded, uploadDate, destination);
+						count.addAndGet(uploaded.size());
+						uploaded.clear();
 					}
 				}
-			} catch ( RuntimeException e ) {
-				Throwable root = e;
-				while ( root.getCause() != null ) {
-					root = root.getCause();
+				if ( System.currentTimeMillis() > deadline ) {
+					log.info("Upload time limit of {}s reached; will resume on next execution",
+							maxExecutionSeconds);
+					return BatchCallbackResult.STOP;
 				}
-				if ( root instanceof IOException ) {
-					if ( log.isWarnEnabled() ) {
-						log.warn("Network problem posting data: " + root.getMessage());
+				return BatchCallbackResult.CONTINUE;
+			}
+		}, options);
+		if ( !uploaded.isEmpty() ) {
+			datumDao.setDatumUploaded(uploaded, uploadDate, destination);
+			count.addAndGet(uploaded.size());
+		}
+		return handleUploadResult(error.get(), count.get());
+	}
+
+	/**
+	 * Stream the datum not uploaded from a DAO to a
+	 * {@link PipelinedDatumUploader}.
+	 * 
+	 * <p>
+	 * Datum acknowledged by the upload service are marked as uploaded in groups
+	 * of {@code batchSize} while the stream is processed, and once all uploads
+	 * have completed.
+	 * </p>
+	 * 
+	 * @param datumDao
+	 *        the DAO to upload from
+	 * @param deadline
+	 *        the date after which no further datum should be uploaded
+	 * @return the number of uploaded datum, or {@literal -1} if an error
+	 *         prevented further uploads
+	 */
+	private int uploadDatumPipelined(final DatumDao<Datum> datumDao, final long deadline) {
+		final String destination = uploadService.getKey();
+		final Date uploadDate = new Date();
+		final List<Datum> uploaded = new ArrayList<Datum>(batchSize);
+		final AtomicInteger count = new AtomicInteger(0);
+		final PipelinedDatumUploader uploader = new PipelinedDatumUploader(uploadService,
+				maxInFlight);
+		final BatchOptions options = new BasicBatchOptions("Upload " + destination, batchSize, false,
+				null);
+		try {
+			datumDao.batchProcessDatumNotUploaded(destination, new BatchCallback<Datum>() {
+
+				@Override
+				public BatchCallbackResult handle(Datum datum) {
+					try {
+						if ( !uploader.submit(datum) ) {
+							return BatchCallbackResult.STOP;
+						}
+					} catch ( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+						return BatchCallbackResult.STOP;
 					}
-				} else {
-					if ( log.isErrorEnabled() ) {
-						log.error("Exception posting data", root);
+					uploader.drainUploaded(uploaded);
+					if ( uploaded.size() >= batchSize ) {
+						datumDao.setDatumUploaded(uploaded, uploadDate, destination);
+						count.addAndGet(uploaded.size());
+						uploaded.clear();
+					}
+					if ( System.currentTimeMillis() > deadline ) {
+						log.info("Upload time limit of {}s reached; will resume on next execution",
+								maxExecutionSeconds);
+						return BatchCallbackResult.STOP;
 					}
+					return BatchCallbackResult.CONTINUE;
 				}
+			}, options);
+			try {
+				uploader.awaitIdle();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
 			}
-			if ( log.isInfoEnabled() ) {
-				log.info("Uploaded " + count + " [" + datumDao.getDatumType().getSimpleName()
-						+ "] objects to [" + uploadService.getKey() + ']');
-			}
+		} finally {
+			uploader.shutdown();
 		}
+		uploader.drainUploaded(uploaded);
+		if ( !uploaded.isEmpty() ) {
+			datumDao.setDatumUploaded(uploaded, uploadDate, destination);
+			count.addAndGet(uploaded.size());
+		}
+		return handleUploadResult(uploader.getError(), count.get());
+	}
 
+	private int handleUploadResult(RuntimeException e, int count) {
+		if ( e != null ) {
+			Throwable root = e;
+			while ( root.getCause() != null ) {
+				root = root.getCause();
+			}
+			if ( root instanceof IOException ) {
+				if ( log.isWarnEnabled() ) {
+					log.warn("Network problem posting data: " + root.getMessage());
+				}
+			} else {
+				if ( log.isErrorEnabled() ) {
+					log.error("Exception posting data", root);
+				}
+			}
+			return -1;
+		}
+		return count;
 	}
 
 	/**
@@ -126,4 +322,64 @@ public class DatumDaoUploadJob<T extends Datum> extends AbstractJob {
 		this.uploadService = uploadService;
 	}
 
+	/**
+	 * Set the maximum number of seconds to spend uploading during a single
+	 * execution of this job.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_EXECUTION_SECONDS}.
+	 * </p>
+	 * 
+	 * @param maxExecutionSeconds
+	 *        the maximum number of seconds
+	 * @since 2.2
+	 */
+	public void setMaxExecutionSeconds(int maxExecutionSeconds) {
+		this.maxExecutionSeconds = maxExecutionSeconds;
+	}
+
+	/**
+	 * Set the number of datum to fetch from the database at one time, and to
+	 * mark as uploaded at one time.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_BATCH_SIZE}.
+	 * </p>
+	 * 
+	 * @param batchSize
+	 *        the batch size
+	 * @since 2.2
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the maximum number of datum to upload at the same time.
+	 * 
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_IN_FLIGHT}, which uploads one datum at a
+	 * time.
+	 * </p>
+	 * 
+	 * @param maxInFlight
+	 *        the maximum number of concurrent uploads
+	 * @since 2.3
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Set a circuit breaker to skip uploading while the destination is
+	 * unavailable.
+	 * 
+	 * @param circuitBreaker
+	 *        the circuit breaker, or {@literal null} to always upload
+	 * @since 2.4
+	 */
+	public void setCircuitBreaker(UploadCircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
 }
@@ -26,7 +26,8 @@ import org.springframework.dao.DuplicateKeyException;
  * 
  * <p>
  * This job simply calls {@link DatumDataSource#readCurrentDatum()} and if that
- * returns a non-null object, passes that to {@link DatumDao#storeDatum(Datum)}.
+ * returns a non-null object, passes that to
+ * {@link DatumDao#storeDatums(Collection)}.
  * In essence, this job is for reading the current data available on some device
  * and then persisting it to a (probably local) database.
  * </p>
@@ -39,7 +40,9 @@ import org.springframework.dao.DuplicateKeyException;
  * {@link MultiDatumDataSource#readMultipleDatum()} will be called instead of
  * {@link DatumDataSource#readCurrentDatum()}. Each {@code Datum} returned in
  * the resulting Collection will be persisted to the configured {@link DatumDao}
- * .
+ * in a single call to {@link DatumDao#storeDatums(Collection)}. If that
+ * fails, each {@code Datum} is persisted with {@link DatumDao#storeDatum(Datum)}
+ * instead, skipping any that already exist.
  * </p>
  * 
  * <p>
@@ -54,14 +57,14 @@ import org.springframework.dao.DuplicateKeyException;
  * 
  * <dt>datumDao</dt>
  * <dd>The {@link DatumDao} to persist the collected data to. The
- * {@link DatumDao#storeDatum(Datum)} method will be called with the
+ * {@link DatumDao#storeDatums(Collection)} method will be called with the
  * {@link Datum} returned by {@link DatumDataSource#readCurrentDatum()}, if it
  * is non-null.</dd>
  * </dl>
  * 
  * @param <T>
  *        the Datum type for this job
- * @version 2.0
+ * @version 2.2
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
@@ -102,14 +105,22 @@ public class DatumDataSourceLoggerJob<T extends Datum> extends AbstractJob {
 							(datumList.size() == 1 ? datumList.iterator().next().toString()
 									: datumList.toString()));
 				}
-				for ( T datum : datumList ) {
-					try {
-						datumDao.storeDatum(datum);
-						log.debug("Persisted Datum {}", datum);
-					} catch ( DuplicateKeyException e ) {
-						// we ignore duplicate key exceptions, as we sometimes collect the same 
-						// datum multiple times for redundancy
-						log.info("Duplicate datum {}; not persisting", datum);
+				try {
+					datumDao.storeDatums(datumList);
+					log.debug("Persisted {} Datum", datumList.size());
+				} catch ( RuntimeException e ) {
+					// store each datum on its own, so one that fails does not drop the others
+					log.debug("Error persisting {} Datum as a batch, persisting individually: {}",
+							datumList.size(), e.toString());
+					for ( T datum : datumList ) {
+						try {
+							datumDao.storeDatum(datum);
+							log.debug("Persisted Datum {}", datum);
+						} catch ( DuplicateKeyException e2 ) {
+							// we ignore duplicate key exceptions, as we sometimes collect the same 
+							// datum multiple times for redundancy
+							log.info("Duplicate datum {}; not persisting", datum);
+						}
 					}
 				}
 			} catch ( Throwable e ) {
@@ -35,7 +35,7 @@ import org.eniware.util.OptionalService;
  * to the configured {@link #getDatumDataSource()}.
  * </p>
  *
- * @version 2.0
+ * @version 2.2
  */
 @PersistJobDataAfterExecution
 @DisallowConcurrentExecution
@@ -98,14 +98,22 @@ public class DatumDataSourceManagedLoggerJob<T extends Datum> extends AbstractJo
 			log.info("No DatumDao available to persist {}, not saving", datumList);
 			return;
 		}
-		for ( T datum : datumList ) {
-			try {
-				dao.storeDatum(datum);
-				log.debug("Persisted Datum {}", datum);
-			} catch ( DuplicateKeyException e ) {
-				// we ignore duplicate key exceptions, as we sometimes collect the same 
-				// datum multiple times for redundancy
-				log.info("Duplicate datum {}; not persisting", datum);
+		try {
+			dao.storeDatums(datumList);
+			log.debug("Persisted {} Datum", datumList.size());
+		} catch ( RuntimeException e ) {
+			// store each datum on its own, so one that fails does not drop the others
+			log.debug("Error persisting {} Datum as a batch, persisting individually: {}",
+					datumList.size(), e.toString());
+			for ( T datum : datumList ) {
+				try {
+					dao.storeDatum(datum);
+					log.debug("Persisted Datum {}", datum);
+				} catch ( DuplicateKeyException e2 ) {
+					// we ignore duplicate key exceptions, as we sometimes collect the same 
+					// datum multiple times for redundancy
+					log.info("Duplicate datum {}; not persisting", datum);
+				}
 			}
 		}
 	}
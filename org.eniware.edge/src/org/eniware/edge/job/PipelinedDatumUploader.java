@@ -0,0 +1,225 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.job;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eniware.edge.UploadService;
+import org.eniware.edge.domain.Datum;
+
+/**
+ * Upload datum with several uploads in flight at once.
+ *
+ * <p>
+ * Datum passed to {@link #submit(Datum)} are uploaded by a pool of
+ * {@code maxInFlight} threads, so up to that many uploads can be waiting on
+ * the network at the same time. Datum of the same source are uploaded one at a
+ * time in the order they were submitted, so only datum of different sources
+ * are uploaded concurrently. {@link #submit(Datum)} blocks while
+ * {@code maxInFlight} datum are submitted but not yet uploaded.
+ * </p>
+ *
+ * <p>
+ * Datum for which the {@link UploadService} returns a tracking ID are collected
+ * as they are uploaded, and can be taken with {@link #drainUploaded(Collection)}.
+ * Once an upload fails no further datum are uploaded: datum already waiting
+ * behind the failed one are discarded, so a later datum of a source is never
+ * uploaded before an earlier one. The failure is then available via
+ * {@link #getError()}.
+ * </p>
+ *
+ * <p>
+ * The {@link UploadService} must support being called from several threads at
+ * once. {@link #shutdown()} must be called once the uploader is no longer
+ * needed, to release the upload threads.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.14
+ */
+public class PipelinedDatumUploader {
+
+	private final UploadService uploadService;
+	private final int maxInFlight;
+	private final Semaphore permits;
+	private final ExecutorService executor;
+	private final Map<String, Lane> lanes = new HashMap<String, Lane>(16);
+	private final Queue<Datum> uploaded = new ConcurrentLinkedQueue<Datum>();
+	private RuntimeException error;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param uploadService
+	 *        the service to upload with
+	 * @param maxInFlight
+	 *        the maximum number of datum to have submitted but not yet
+	 *        uploaded at one time
+	 */
+	public PipelinedDatumUploader(UploadService uploadService, int maxInFlight) {
+		super();
+		if ( uploadService == null ) {
+			throw new IllegalArgumentException("The uploadService must be provided");
+		}
+		this.uploadService = uploadService;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.permits = new Semaphore(this.maxInFlight);
+		final String name = "Datum upload " + uploadService.getKey() + " ";
+		this.executor = Executors.newFixedThreadPool(this.maxInFlight, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Submit a datum to upload.
+	 *
+	 * <p>
+	 * This method blocks while the maximum number of datum are in flight.
+	 * </p>
+	 *
+	 * @param datum
+	 *        the datum to upload
+	 * @return {@literal true} if the datum was submitted, {@literal false} if
+	 *         an upload has failed and no more datum are accepted
+	 * @throws InterruptedException
+	 *         if interrupted while waiting for an upload to complete
+	 */
+	public boolean submit(Datum datum) throws InterruptedException {
+		permits.acquire();
+		final String sourceId = (datum.getSourceId() == null ? "" : datum.getSourceId());
+		synchronized ( lanes ) {
+			if ( error != null ) {
+				permits.release();
+				return false;
+			}
+			Lane lane = lanes.get(sourceId);
+			if ( lane == null ) {
+				lane = new Lane(sourceId);
+				lanes.put(sourceId, lane);
+				lane.queue.add(datum);
+				executor.execute(lane);
+			} else {
+				lane.queue.add(datum);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Move the datum uploaded so far into a collection.
+	 *
+	 * @param dest
+	 *        the collection to add the uploaded datum to
+	 * @return the number of datum added to {@code dest}
+	 */
+	public int drainUploaded(Collection<Datum> dest) {
+		int count = 0;
+		Datum d;
+		while ( (d = uploaded.poll()) != null ) {
+			dest.add(d);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Wait for all submitted datum to be uploaded or discarded.
+	 *
+	 * @throws InterruptedException
+	 *         if interrupted while waiting
+	 */
+	public void awaitIdle() throws InterruptedException {
+		permits.acquire(maxInFlight);
+		permits.release(maxInFlight);
+	}
+
+	/**
+	 * Get the first upload failure.
+	 *
+	 * @return the failure, or {@literal null} if no upload has failed
+	 */
+	public RuntimeException getError() {
+		synchronized ( lanes ) {
+			return error;
+		}
+	}
+
+	/**
+	 * Stop the upload threads.
+	 *
+	 * <p>
+	 * Uploads already in progress are allowed to complete.
+	 * </p>
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * The datum of one source waiting to be uploaded, uploaded in order by a
+	 * single thread at a time.
+	 */
+	private final class Lane implements Runnable {
+
+		private final String sourceId;
+		private final Queue<Datum> queue = new ArrayDeque<Datum>(4);
+
+		private Lane(String sourceId) {
+			super();
+			this.sourceId = sourceId;
+		}
+
+		@Override
+		public void run() {
+			while ( true ) {
+				Datum datum;
+				synchronized ( lanes ) {
+					if ( error != null ) {
+						permits.release(queue.size());
+						queue.clear();
+					}
+					datum = queue.poll();
+					if ( datum == null ) {
+						lanes.remove(sourceId);
+						return;
+					}
+				}
+				try {
+					if ( uploadService.uploadDatum(datum) != null ) {
+						uploaded.add(datum);
+					}
+				} catch ( RuntimeException e ) {
+					synchronized ( lanes ) {
+						if ( error == null ) {
+							error = e;
+						}
+					}
+				} finally {
+					permits.release();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,338 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.edge.job;
+
+import java.util.Random;
+
+/**
+ * Track the health of an upload destination so upload jobs can skip their
+ * work while it is unavailable.
+ *
+ * <p>
+ * The breaker starts {@link State#Closed}, allowing all uploads. After
+ * {@code failureThreshold} consecutive failed uploads it becomes
+ * {@link State#Open} for a backoff period, during which
+ * {@link #allowRequest()} refuses uploads so jobs can return without querying
+ * or serializing any datum. The backoff starts at
+ * {@code initialBackoffMs} and doubles each time the breaker opens again
+ * without an upload succeeding in between, up to {@code maxBackoffMs}; a
+ * random reduction of up to {@code jitter} of the backoff is applied so that
+ * several edges do not retry at the same moment.
+ * </p>
+ *
+ * <p>
+ * Once the backoff period has passed, the next caller of
+ * {@link #allowRequest()} is allowed through as a probe and the breaker
+ * becomes {@link State#HalfOpen}, refusing other callers until the probe
+ * reports its outcome. Callers are expected to keep a probe cheap, for example
+ * by uploading a single datum. A successful probe closes the breaker, a failed
+ * one opens it again.
+ * </p>
+ *
+ * <p>
+ * Each outcome is reported with the {@link Permit} returned by
+ * {@link #allowRequest()}, so only the caller that was handed the probe
+ * permit can change the state of a half open breaker. Outcomes reported by
+ * callers allowed through while the breaker was closed only count towards
+ * opening it while it is still closed.
+ * </p>
+ *
+ * <p>
+ * A breaker is meant to be shared by all jobs uploading to the same
+ * destination. This class is thread safe.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.14
+ */
+public class UploadCircuitBreaker {
+
+	/**
+	 * The decision returned by {@link UploadCircuitBreaker#allowRequest()}.
+	 */
+	public static final class Permit {
+
+		private static final Permit REFUSED = new Permit(false, 0);
+		private static final Permit ALLOWED = new Permit(true, 0);
+
+		private final boolean allowed;
+		private final long probeId;
+
+		private Permit(boolean allowed, long probeId) {
+			super();
+			this.allowed = allowed;
+			this.probeId = probeId;
+		}
+
+		/**
+		 * Test if an upload should be attempted.
+		 *
+		 * @return {@literal true} if an upload should be attempted
+		 */
+		public boolean isAllowed() {
+			return allowed;
+		}
+
+		/**
+		 * Test if the upload is a probe of a half open breaker.
+		 *
+		 * @return {@literal true} if the upload is a probe
+		 */
+		public boolean isProbe() {
+			return (probeId != 0);
+		}
+
+		@Override
+		public String toString() {
+			return (isProbe() ? "Probe" : allowed ? "Allowed" : "Refused");
+		}
+
+	}
+
+	/** The breaker states. */
+	public enum State {
+
+		/** Uploads are allowed. */
+		Closed,
+
+		/** Uploads are refused until the backoff period has passed. */
+		Open,
+
+		/** A single probe upload is in progress. */
+		HalfOpen;
+
+	}
+
+	/** The default value for the {@code failureThreshold} property. */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 1;
+
+	/** The default value for the {@code initialBackoffMs} property. */
+	public static final long DEFAULT_INITIAL_BACKOFF_MS = 60000L;
+
+	/** The default value for the {@code maxBackoffMs} property. */
+	public static final long DEFAULT_MAX_BACKOFF_MS = 3600000L;
+
+	/** The default value for the {@code jitter} property. */
+	public static final double DEFAULT_JITTER = 0.2;
+
+	private final Random random = new Random();
+
+	private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	private long initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+	private long maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+	private double jitter = DEFAULT_JITTER;
+
+	private State state = State.Closed;
+	private int consecutiveFailures = 0;
+	private int openCount = 0;
+	private long openUntil = 0;
+	private long probeStarted = 0;
+	private long probeId = 0;
+
+	/**
+	 * Decide if an upload should be attempted.
+	 *
+	 * <p>
+	 * When the returned permit is allowed the caller must report the outcome
+	 * by passing the permit to {@link #recordSuccess(Permit)},
+	 * {@link #recordFailure(Permit)}, or {@link #recordNoAttempt(Permit)}. A
+	 * probe that does not report its outcome within {@code maxBackoffMs} is
+	 * assumed to have been abandoned, and its permit no longer has any effect.
+	 * </p>
+	 *
+	 * @return the permit, never {@literal null}
+	 */
+	public synchronized Permit allowRequest() {
+		final long now = System.currentTimeMillis();
+		switch (state) {
+			case Closed:
+				return Permit.ALLOWED;
+
+			case Open:
+				if ( now < openUntil ) {
+					return Permit.REFUSED;
+				}
+				break;
+
+			case HalfOpen:
+				if ( now < probeStarted + maxBackoffMs ) {
+					return Permit.REFUSED;
+				}
+				break;
+		}
+		state = State.HalfOpen;
+		probeStarted = now;
+		probeId++;
+		return new Permit(true, probeId);
+	}
+
+	private boolean isCurrentProbe(Permit permit) {
+		return (permit != null && permit.isProbe() && state == State.HalfOpen
+				&& permit.probeId == probeId);
+	}
+
+	/**
+	 * Record a successful upload.
+	 *
+	 * <p>
+	 * A successful probe closes the breaker.
+	 * </p>
+	 *
+	 * @param permit
+	 *        the permit the upload was made with
+	 */
+	public synchronized void recordSuccess(Permit permit) {
+		if ( isCurrentProbe(permit) ) {
+			state = State.Closed;
+		} else if ( state != State.Closed ) {
+			return;
+		}
+		consecutiveFailures = 0;
+		openCount = 0;
+	}
+
+	/**
+	 * Record a failed upload.
+	 *
+	 * <p>
+	 * The breaker opens if the upload was the probe of a half open breaker, or
+	 * if the breaker is closed and {@code failureThreshold} consecutive
+	 * failures have now been recorded.
+	 * </p>
+	 *
+	 * @param permit
+	 *        the permit the upload was made with
+	 */
+	public synchronized void recordFailure(Permit permit) {
+		final boolean probe = isCurrentProbe(permit);
+		if ( !probe && state != State.Closed ) {
+			return;
+		}
+		consecutiveFailures++;
+		if ( probe || consecutiveFailures >= failureThreshold ) {
+			long backoff = initialBackoffMs;
+			for ( int i = 0; i < openCount && backoff < maxBackoffMs; i++ ) {
+				backoff *= 2;
+			}
+			backoff = Math.min(backoff, maxBackoffMs);
+			backoff -= (long) (backoff * jitter * random.nextDouble());
+			openCount++;
+			openUntil = System.currentTimeMillis() + backoff;
+			state = State.Open;
+		}
+	}
+
+	/**
+	 * Record that no upload was attempted after all, for example because there
+	 * was nothing to upload.
+	 *
+	 * <p>
+	 * If the upload was the probe of a half open breaker, the breaker returns
+	 * to open with the backoff period already passed, so the next caller
+	 * becomes the probe.
+	 * </p>
+	 *
+	 * @param permit
+	 *        the permit that was not used
+	 */
+	public synchronized void recordNoAttempt(Permit permit) {
+		if ( isCurrentProbe(permit) ) {
+			state = State.Open;
+			openUntil = 0;
+		}
+	}
+
+	/**
+	 * Get the current state.
+	 *
+	 * @return the state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Get the date the breaker allows a probe, if it is open.
+	 *
+	 * @return the date, as milliseconds since the epoch
+	 */
+	public synchronized long getOpenUntil() {
+		return openUntil;
+	}
+
+	/**
+	 * Get the number of consecutive failures recorded.
+	 *
+	 * @return the count
+	 */
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "UploadCircuitBreaker{state=" + state + ",consecutiveFailures=" + consecutiveFailures
+				+ ",openUntil=" + openUntil + "}";
+	}
+
+	/**
+	 * Set the number of consecutive failures that open the breaker.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_FAILURE_THRESHOLD}.
+	 * </p>
+	 *
+	 * @param failureThreshold
+	 *        the number of failures
+	 */
+	public synchronized void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+	}
+
+	/**
+	 * Set the backoff period the first time the breaker opens.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_INITIAL_BACKOFF_MS}.
+	 * </p>
+	 *
+	 * @param initialBackoffMs
+	 *        the backoff period, in milliseconds
+	 */
+	public synchronized void setInitialBackoffMs(long initialBackoffMs) {
+		this.initialBackoffMs = Math.max(1, initialBackoffMs);
+	}
+
+	/**
+	 * Set the maximum backoff period.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_MAX_BACKOFF_MS}.
+	 * </p>
+	 *
+	 * @param maxBackoffMs
+	 *        the maximum backoff period, in milliseconds
+	 */
+	public synchronized void setMaxBackoffMs(long maxBackoffMs) {
+		this.maxBackoffMs = Math.max(1, maxBackoffMs);
+	}
+
+	/**
+	 * Set the fraction of the backoff period to randomly reduce it by.
+	 *
+	 * <p>
+	 * Defaults to {@link #DEFAULT_JITTER}.
+	 * </p>
+	 *
+	 * @param jitter
+	 *        the fraction, between {@literal 0} and {@literal 1}
+	 */
+	public synchronized void setJitter(double jitter) {
+		this.jitter = Math.max(0, Math.min(1, jitter));
+	}
+
+}
@@ -9,6 +9,7 @@ package org.eniware.edge.support;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -17,7 +18,9 @@ import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 import org.eniware.edge.RemoteServiceException;
+import org.eniware.edge.StreamingBulkUploadService.DatumJsonWriter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -37,7 +40,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * with.</dd>
  * </dl>
  * 
- * @version 1.1
+ * @version 1.2
  */
 public abstract class JsonHttpClientSupport extends HttpClientSupport {
 
@@ -85,6 +88,55 @@ public abstract class JsonHttpClientSupport extends HttpClientSupport {
 		return getInputStreamFromURLConnection(conn);
 	}
 
+	/**
+	 * Perform a JSON HTTP request, streaming a JSON array of datum as the
+	 * request content as it is written.
+	 * 
+	 * <p>
+	 * Unlike {@link #doJson(String, String, Object)} the content is not
+	 * buffered before it is sent: HTTP connections use chunked transfer
+	 * encoding, and the content is compressed as it is written if
+	 * {@code compress} is enabled. The request content is a JSON array holding
+	 * the objects written by {@code writer}.
+	 * </p>
+	 * 
+	 * @param url
+	 *        the URL to make the request to
+	 * @param method
+	 *        the HTTP method, e.g. {@link HttpClientSupport#HTTP_METHOD_POST}
+	 * @param writer
+	 *        the writer of the datum to upload
+	 * @return the InputStream for the HTTP response
+	 * @throws IOException
+	 *         if any IO error occurs
+	 * @since 1.2
+	 */
+	protected final InputStream doStreamingJson(String url, String method, DatumJsonWriter writer)
+			throws IOException {
+		URLConnection conn = getURLConnection(url, method, JSON_MIME_TYPE);
+		conn.setRequestProperty("Content-Type", JSON_MIME_TYPE + ";charset=UTF-8");
+		if ( compress ) {
+			conn.setRequestProperty("Content-Encoding", "gzip");
+		}
+		if ( conn instanceof HttpURLConnection ) {
+			((HttpURLConnection) conn).setChunkedStreamingMode(0);
+		}
+		OutputStream out = conn.getOutputStream();
+		if ( compress ) {
+			out = new GZIPOutputStream(out);
+		}
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+		try {
+			generator.writeStartArray();
+			writer.writeDatum(generator);
+			generator.writeEndArray();
+			generator.flush();
+		} finally {
+			generator.close();
+		}
+		return getInputStreamFromURLConnection(conn);
+	}
+
 	/**
 	 * Perform a JSON GET HTTP request.
 	 * 